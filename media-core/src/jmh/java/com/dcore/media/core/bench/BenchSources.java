@@ -0,0 +1,152 @@
+package com.dcore.media.core.bench;
+
+import com.dcore.media.core.MediaCaster;
+import com.dcore.media.core.MediaSource;
+import com.dcore.media.core.MediaSourceBuckets;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试使用的内存媒体源、分桶和施法者
+ */
+final class BenchSources {
+    static final int STANDARD = 0;
+    static final int SPECIAL = 1;
+
+    // 与 HexMod ADMediaHolder 中的优先级常量相同
+    static final int[] PRIORITIES = { 1000, 900, 800, 600, 400 };
+
+    private BenchSources() {
+    }
+
+    static final class Source implements MediaSource {
+        private final long typeMask;
+        private final int priority;
+        private final long capacity;
+        private long media;
+
+        Source(long typeMask, int priority, long capacity) {
+            this.typeMask = typeMask;
+            this.priority = priority;
+            this.capacity = capacity;
+            this.media = capacity;
+        }
+
+        void refill() {
+            media = capacity;
+        }
+
+        @Override
+        public long typeMask() {
+            return typeMask;
+        }
+
+        @Override
+        public int priority() {
+            return priority;
+        }
+
+        @Override
+        public long simulateWithdraw(long amount) {
+            return Math.min(amount, media);
+        }
+
+        @Override
+        public long withdraw(long amount) {
+            long taken = Math.min(amount, media);
+            media -= taken;
+            return taken;
+        }
+    }
+
+    static final class Buckets implements MediaSourceBuckets {
+        private static final MediaSource[] EMPTY = new MediaSource[0];
+
+        final Source[] all;
+        private final MediaSource[][] byType;
+
+        Buckets(Source[] all, int typeCount) {
+            this.all = all;
+            this.byType = new MediaSource[typeCount][];
+            for (int type = 0; type < typeCount; type++) {
+                List<Source> bucket = new ArrayList<>();
+                for (Source source : all) {
+                    if ((source.typeMask() & (1L << type)) != 0) {
+                        bucket.add(source);
+                    }
+                }
+                bucket.sort(Comparator.comparingInt(Source::priority).reversed());
+                byType[type] = bucket.toArray(EMPTY);
+            }
+        }
+
+        @Override
+        public MediaSource[] sources(int typeIndex) {
+            return typeIndex < byType.length ? byType[typeIndex] : EMPTY;
+        }
+
+        void refillAll() {
+            for (Source source : all) {
+                source.refill();
+            }
+        }
+    }
+
+    static final class Caster implements MediaCaster {
+        private final float maxHealth;
+        private float health;
+
+        Caster(float maxHealth) {
+            this.maxHealth = maxHealth;
+            this.health = maxHealth;
+        }
+
+        void heal() {
+            health = maxHealth;
+        }
+
+        @Override
+        public float getHealth() {
+            return health;
+        }
+
+        @Override
+        public float getMaxHealth() {
+            return maxHealth;
+        }
+
+        @Override
+        public void setHealth(float health) {
+            this.health = health;
+        }
+    }
+
+    /**
+     * 生成一个背包
+     * @param size 媒体源数量
+     * @param mix standard：全部普通媒体；mixed：普通和特殊各半，少量两者都能提供；special_scarce：特殊媒体很少
+     */
+    static Buckets inventory(int size, String mix, long seed) {
+        Random random = new Random(seed);
+        Source[] sources = new Source[size];
+        for (int i = 0; i < size; i++) {
+            long mask;
+            switch (mix) {
+                case "standard" -> mask = 1L << STANDARD;
+                case "mixed" -> {
+                    int roll = random.nextInt(10);
+                    mask = roll == 0 ? (1L << STANDARD) | (1L << SPECIAL) : roll < 5 ? 1L << STANDARD : 1L << SPECIAL;
+                }
+                case "special_scarce" -> mask = random.nextInt(20) == 0 ? 1L << SPECIAL : 1L << STANDARD;
+                default -> throw new IllegalArgumentException("Unknown media mix " + mix);
+            }
+            int priority = PRIORITIES[random.nextInt(PRIORITIES.length)];
+            long capacity = (1 + random.nextInt(64)) * 10000L;
+            sources[i] = new Source(mask, priority, capacity);
+        }
+        return new Buckets(sources, 2);
+    }
+}
@@ -0,0 +1,89 @@
+package com.dcore.media.core.bench;
+
+import com.dcore.media.core.CostVector;
+import com.dcore.media.core.MediaAllocation;
+import com.dcore.media.core.MediaPlanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 媒体提取：不同背包大小和媒体组成下的分配与应用
+ * 配合 gc 分析器运行，稳定状态下 gc.alloc.rate.norm 应为 0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ExtractionBenchmark {
+    private static final double[] HEALTH_RATES = { 10000.0, 100.0 };
+
+    @Param({ "9", "36", "41", "128" })
+    public int inventorySize;
+
+    @Param({ "standard", "mixed", "special_scarce" })
+    public String mediaMix;
+
+    @Param({ "20000", "2000000" })
+    public long cost;
+
+    private BenchSources.Buckets buckets;
+    private BenchSources.Caster caster;
+    private final MediaAllocation allocation = new MediaAllocation();
+    private final CostVector standardOnly = CostVector.anyOf(BenchSources.STANDARD);
+    private final CostVector specialOnly = CostVector.anyOf(BenchSources.SPECIAL);
+    private final CostVector preferSpecial = CostVector.anyOf(BenchSources.SPECIAL, BenchSources.STANDARD);
+    private final CostVector split = CostVector.split(
+        new int[] { BenchSources.SPECIAL, BenchSources.STANDARD },
+        new double[] { 0.6, 0.4 }
+    );
+
+    @Setup
+    public void setup() {
+        buckets = BenchSources.inventory(inventorySize, mediaMix, 42L);
+        caster = new BenchSources.Caster(20.0f);
+    }
+
+    @Benchmark
+    public MediaAllocation planStandard() {
+        MediaPlanner.plan(allocation, standardOnly, cost, buckets, HEALTH_RATES, caster);
+        return allocation;
+    }
+
+    @Benchmark
+    public MediaAllocation planSpecial() {
+        MediaPlanner.plan(allocation, specialOnly, cost, buckets, HEALTH_RATES, caster);
+        return allocation;
+    }
+
+    @Benchmark
+    public MediaAllocation planAnyOf() {
+        MediaPlanner.plan(allocation, preferSpecial, cost, buckets, HEALTH_RATES, caster);
+        return allocation;
+    }
+
+    @Benchmark
+    public MediaAllocation planSplit() {
+        MediaPlanner.plan(allocation, split, cost, buckets, HEALTH_RATES, caster);
+        return allocation;
+    }
+
+    /**
+     * 完整的 simulate + 提交流程；结束后只补满被使用过的媒体源
+     */
+    @Benchmark
+    public long planAndApplySplit() {
+        MediaPlanner.plan(allocation, split, cost, buckets, HEALTH_RATES, caster);
+        long shortfall = MediaPlanner.apply(allocation, caster);
+        for (int i = 0; i < allocation.entryCount(); i++) {
+            ((BenchSources.Source) allocation.source(i)).refill();
+        }
+        return shortfall;
+    }
+}
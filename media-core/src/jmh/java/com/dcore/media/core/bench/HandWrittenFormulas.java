@@ -0,0 +1,107 @@
+package com.dcore.media.core.bench;
+
+import com.dcore.media.core.HealthConversion;
+
+/**
+ * 各动作默认伤害和消耗公式的手写版本，只作为 OpFormulaBenchmark 的对照
+ * 动作实际使用的是可配置的 ActionFormula，公式以 FormulaKind 的默认表达式为准；
+ * 这里的代码不参与施法，修改默认表达式时不需要同步修改
+ */
+final class HandWrittenFormulas {
+    /**
+     * 与 HexMod 的 MediaConstants.DUST_UNIT 相同
+     */
+    static final long DUST_UNIT = 10000L;
+
+    /**
+     * 造成伤害 / 造成伤害（列表）的基础伤害
+     */
+    static final float BASE_DAMAGE = 100.0f;
+
+    // 1.2^n 的预计算表（n < 256），每一项仍由 Math.pow 计算，与直接计算的结果完全相同
+    private static final float[] NEGATIVE_EFFECT_DAMAGE = new float[256];
+
+    static {
+        for (int n = 0; n < NEGATIVE_EFFECT_DAMAGE.length; n++) {
+            NEGATIVE_EFFECT_DAMAGE[n] = (float) Math.max(0, Math.pow(1.2, n));
+        }
+    }
+
+    private HandWrittenFormulas() {
+    }
+
+    /**
+     * 强度参数的默认处理：非正数按 1 计算
+     */
+    static double normalizeStrength(double strength) {
+        return strength <= 0 ? 1.0 : strength;
+    }
+
+    /**
+     * 造成伤害：伤害 = 基础伤害 × 强度
+     */
+    static float strengthDamage(double strength) {
+        return (float) (BASE_DAMAGE * strength);
+    }
+
+    /**
+     * 造成伤害：消耗 = 基础消耗 × 强度的平方
+     */
+    static long strengthCost(long baseCost, double strength) {
+        return (long) (baseCost * strength * strength);
+    }
+
+    /**
+     * 造成伤害（列表）：消耗 = 实体数量的平方 × 基础消耗 × 强度的平方，没有实体时按单体计算
+     */
+    static long entityListCost(long baseCost, int entityCount, double strength) {
+        return entityCount > 0
+            ? (long) (entityCount * entityCount * baseCost * strength * strength)
+            : (long) (baseCost * strength * strength);
+    }
+
+    /**
+     * 速度伤害：伤害 = 当前血量 × (速度 / 10)，上限为最大血量的 10 倍
+     */
+    static float velocityDamage(float currentHealth, float maxHealth, double speed) {
+        double damageValue = currentHealth * (speed / 10.0);
+        damageValue = Math.min(damageValue, maxHealth * 10.0);
+        return (float) Math.max(0, damageValue);
+    }
+
+    /**
+     * 负面效果伤害：伤害 = 1.2^负面效果等级总和（没有负面效果时为 1.0）
+     * 常见的等级总和直接查表，超出表范围时才调用 Math.pow
+     */
+    static float negativeEffectDamage(int totalNegativeLevel) {
+        if (totalNegativeLevel <= 0) {
+            return 1.0f;
+        }
+        if (totalNegativeLevel < NEGATIVE_EFFECT_DAMAGE.length) {
+            return NEGATIVE_EFFECT_DAMAGE[totalNegativeLevel];
+        }
+        return (float) Math.max(0, Math.pow(1.2, totalNegativeLevel));
+    }
+
+    /**
+     * 负面效果伤害：消耗 = 基础消耗 × 负面效果等级的连乘（没有负面效果时为基础消耗）
+     */
+    static long negativeEffectCost(long baseCost, long negativeLevelProduct, boolean hasNegativeEffect) {
+        return hasNegativeEffect ? baseCost * negativeLevelProduct : baseCost;
+    }
+
+    /**
+     * 消耗所有媒体：某种媒体造成的伤害 = 消耗量 / 该类型的血量扣除比例
+     */
+    static float consumedMediaDamage(long consumed, double healthRate) {
+        return (float) HealthConversion.toHealth(consumed, healthRate);
+    }
+
+    /**
+     * 消耗所有媒体（列表）：总伤害除以 10 后平均分配给所有实体
+     * 以 double 计算后再转换，与编译后的公式结果一致
+     */
+    static float consumedMediaDamagePerEntity(float totalDamage, int entityCount) {
+        return (float) (totalDamage / 10.0 / entityCount);
+    }
+}
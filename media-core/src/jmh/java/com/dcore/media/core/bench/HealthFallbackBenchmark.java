@@ -0,0 +1,65 @@
+package com.dcore.media.core.bench;
+
+import com.dcore.media.core.CostVector;
+import com.dcore.media.core.HealthConversion;
+import com.dcore.media.core.MediaAllocation;
+import com.dcore.media.core.MediaPlanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 媒体源不足时的血量扣除：全部由血量支付、部分由血量支付和超过最大生命值（取消）
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HealthFallbackBenchmark {
+    private static final double[] HEALTH_RATES = { 10000.0, 100.0 };
+
+    @Param({ "500", "5000", "50000" })
+    public long cost;
+
+    private final MediaAllocation allocation = new MediaAllocation();
+    private final BenchSources.Caster caster = new BenchSources.Caster(20.0f);
+    private final CostVector special = CostVector.anyOf(BenchSources.SPECIAL);
+    private final CostVector split = CostVector.split(
+        new int[] { BenchSources.SPECIAL, BenchSources.STANDARD },
+        new double[] { 0.6, 0.4 }
+    );
+    private BenchSources.Buckets scarce;
+
+    @Setup
+    public void setup() {
+        scarce = BenchSources.inventory(36, "special_scarce", 7L);
+    }
+
+    @Benchmark
+    public MediaAllocation planHealthOnly() {
+        MediaPlanner.plan(allocation, special, cost, null, HEALTH_RATES, caster);
+        return allocation;
+    }
+
+    @Benchmark
+    public MediaAllocation planSplitWithFallback() {
+        MediaPlanner.plan(allocation, split, cost * 100, scarce, HEALTH_RATES, caster);
+        return allocation;
+    }
+
+    @Benchmark
+    public long planAndDeduct() {
+        MediaPlanner.plan(allocation, special, cost, null, HEALTH_RATES, caster);
+        long extracted = allocation.cancel()
+            ? HealthConversion.drainAll(caster, allocation.healthRate())
+            : HealthConversion.deduct(caster, allocation.healthCost(), allocation.healthRate());
+        caster.heal();
+        return extracted;
+    }
+}
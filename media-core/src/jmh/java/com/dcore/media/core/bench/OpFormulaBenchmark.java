@@ -0,0 +1,91 @@
+package com.dcore.media.core.bench;
+
+import com.dcore.media.core.ActionFormula;
+import com.dcore.media.core.ActionFormulaTable;
+import com.dcore.media.core.FormulaKind;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * com.dcore.hex 中各动作的伤害和消耗公式
+ * compiled* 使用默认表达式编译出的公式，其余为 HandWrittenFormulas 中的手写对照
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OpFormulaBenchmark {
+    private static final long BASE_COST = HandWrittenFormulas.DUST_UNIT * 2;
+
+    private static final ActionFormulaTable TABLE = new ActionFormulaTable();
+    private static final ActionFormula STRENGTH_DAMAGE = TABLE.register("bench", "damage", FormulaKind.STRENGTH_DAMAGE);
+    private static final ActionFormula LIST_COST = TABLE.register("bench", "list_cost", FormulaKind.ENTITY_LIST_COST);
+    private static final ActionFormula VELOCITY_DAMAGE = TABLE.register("bench", "velocity_damage", FormulaKind.VELOCITY_DAMAGE);
+    private static final ActionFormula NEGATIVE_EFFECT_DAMAGE = TABLE.register("bench", "negative_effect_damage", FormulaKind.NEGATIVE_EFFECT_DAMAGE);
+
+    // 非 final，避免被 JIT 当作常量折叠
+    public double strength = 2.5;
+    public int entityCount = 12;
+    public float health = 18.0f;
+    public float maxHealth = 20.0f;
+    public double speed = 3.7;
+    public int negativeLevels = 9;
+    public long negativeProduct = 24;
+    public long consumed = 1_234_567;
+    public double healthRate = 100.0;
+
+    @Benchmark
+    public void damageEntity(Blackhole bh) {
+        double s = HandWrittenFormulas.normalizeStrength(strength);
+        bh.consume(HandWrittenFormulas.strengthCost(BASE_COST, s));
+        bh.consume(HandWrittenFormulas.strengthDamage(s));
+    }
+
+    @Benchmark
+    public void damageEntityList(Blackhole bh) {
+        double s = HandWrittenFormulas.normalizeStrength(strength);
+        bh.consume(HandWrittenFormulas.entityListCost(BASE_COST, entityCount, s));
+        bh.consume(HandWrittenFormulas.strengthDamage(s));
+    }
+
+    @Benchmark
+    public float velocityDamage() {
+        return HandWrittenFormulas.velocityDamage(health, maxHealth, speed);
+    }
+
+    @Benchmark
+    public void negativeEffectDamage(Blackhole bh) {
+        bh.consume(HandWrittenFormulas.negativeEffectDamage(negativeLevels));
+        bh.consume(HandWrittenFormulas.negativeEffectCost(BASE_COST, negativeProduct, true));
+    }
+
+    @Benchmark
+    public void consumeAllMedia(Blackhole bh) {
+        float total = HandWrittenFormulas.consumedMediaDamage(consumed, healthRate);
+        bh.consume(total);
+        bh.consume(HandWrittenFormulas.consumedMediaDamagePerEntity(total, entityCount));
+    }
+
+    @Benchmark
+    public void compiledDamageEntityList(Blackhole bh) {
+        double s = HandWrittenFormulas.normalizeStrength(strength);
+        bh.consume((long) LIST_COST.eval(BASE_COST, entityCount, s));
+        bh.consume((float) STRENGTH_DAMAGE.eval(s));
+    }
+
+    @Benchmark
+    public float compiledVelocityDamage() {
+        return (float) VELOCITY_DAMAGE.eval(health, maxHealth, speed);
+    }
+
+    @Benchmark
+    public float compiledNegativeEffectDamage() {
+        return (float) NEGATIVE_EFFECT_DAMAGE.evalTabulated(negativeLevels);
+    }
+}
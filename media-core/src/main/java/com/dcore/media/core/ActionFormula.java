@@ -0,0 +1,115 @@
+package com.dcore.media.core;
+
+/**
+ * 某个动作的一条公式（例如 d-core:damage_entity 的 cost）
+ * 实例在动作类加载时创建并一直保留，配置重新加载时只替换编译结果，调用方可以放心地缓存在静态字段中
+ *
+ * 编译结果通过一个 volatile 引用整体发布；结果小于 0 或为 NaN 时按 0 计算
+ */
+public final class ActionFormula {
+    private final String action;
+    private final String name;
+    private final FormulaKind kind;
+    private final Compiled defaults;
+    private volatile Compiled compiled;
+
+    ActionFormula(String action, String name, FormulaKind kind) {
+        this.action = action;
+        this.name = name;
+        this.kind = kind;
+        this.defaults = compile(kind, kind.defaultSource());
+        this.compiled = defaults;
+    }
+
+    public String action() {
+        return action;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public FormulaKind kind() {
+        return kind;
+    }
+
+    /**
+     * 当前使用的表达式
+     */
+    public String source() {
+        return compiled.source;
+    }
+
+    public boolean isDefault() {
+        return compiled == defaults;
+    }
+
+    public double eval(double a) {
+        return compiled.formula.eval(a, 0, 0);
+    }
+
+    public double eval(double a, double b) {
+        return compiled.formula.eval(a, b, 0);
+    }
+
+    public double eval(double a, double b, double c) {
+        return compiled.formula.eval(a, b, c);
+    }
+
+    /**
+     * 以整数为唯一变量求值，在预计算表范围内直接查表
+     */
+    public double evalTabulated(int a) {
+        Compiled current = compiled;
+        double[] table = current.table;
+        if (a >= 0 && a < table.length) {
+            return table[a];
+        }
+        return current.formula.eval(a, 0, 0);
+    }
+
+    /**
+     * 编译并替换表达式
+     * @throws FormulaException 表达式无效，此时保留原来的表达式
+     */
+    void set(String source) {
+        compiled = compile(kind, source);
+    }
+
+    /**
+     * 恢复默认表达式
+     */
+    void reset() {
+        compiled = defaults;
+    }
+
+    private static Compiled compile(FormulaKind kind, String source) {
+        Formula raw = kind.compile(source);
+        Formula formula = (a, b, c) -> {
+            double value = raw.eval(a, b, c);
+            return value > 0 ? value : 0;
+        };
+        double[] table = new double[kind.tableSize()];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = formula.eval(i, 0, 0);
+        }
+        return new Compiled(source, formula, table);
+    }
+
+    @Override
+    public String toString() {
+        return action + "/" + name + " = " + compiled.source;
+    }
+
+    private static final class Compiled {
+        final String source;
+        final Formula formula;
+        final double[] table;
+
+        Compiled(String source, Formula formula, double[] table) {
+            this.source = source;
+            this.formula = formula;
+            this.table = table;
+        }
+    }
+}
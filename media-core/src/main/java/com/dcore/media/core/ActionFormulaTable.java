@@ -0,0 +1,89 @@
+package com.dcore.media.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * 动作公式表
+ * 动作在类加载时登记自己的公式，配置加载时按 动作 ID → 公式名 → 表达式 整体应用
+ */
+public final class ActionFormulaTable {
+    private final Map<String, Map<String, ActionFormula>> byAction = new LinkedHashMap<>();
+
+    /**
+     * 登记公式，同一动作的同名公式只登记一次
+     * @throws IllegalStateException 同名公式已经以其他种类登记
+     */
+    public synchronized ActionFormula register(String action, String name, FormulaKind kind) {
+        Map<String, ActionFormula> formulas = byAction.computeIfAbsent(action, key -> new LinkedHashMap<>());
+        ActionFormula existing = formulas.get(name);
+        if (existing != null) {
+            if (existing.kind() != kind) {
+                throw new IllegalStateException("Formula " + action + "/" + name + " already registered as " + existing.kind());
+            }
+            return existing;
+        }
+        ActionFormula formula = new ActionFormula(action, name, kind);
+        formulas.put(name, formula);
+        return formula;
+    }
+
+    /**
+     * 所有已登记的公式（按登记顺序）
+     */
+    public synchronized List<ActionFormula> all() {
+        List<ActionFormula> all = new ArrayList<>();
+        for (Map<String, ActionFormula> formulas : byAction.values()) {
+            all.addAll(formulas.values());
+        }
+        return all;
+    }
+
+    /**
+     * 应用配置：配置中给出的表达式替换对应的公式，没有给出的公式恢复默认
+     * 先编译全部表达式再统一替换；编译失败的公式保持默认并通过 warnings 报告
+     * @param config 动作 ID → (公式名 → 表达式)
+     * @param warnings 参数为出错的位置（动作 ID/公式名）和原因
+     * @return 使用配置表达式的公式数量
+     */
+    public synchronized int apply(Map<String, Map<String, String>> config, BiConsumer<String, String> warnings) {
+        Map<ActionFormula, String> accepted = new HashMap<>();
+        for (Map.Entry<String, Map<String, String>> action : config.entrySet()) {
+            Map<String, ActionFormula> formulas = byAction.get(action.getKey());
+            if (formulas == null) {
+                warnings.accept(action.getKey(), "没有可配置公式的动作");
+                continue;
+            }
+            for (Map.Entry<String, String> entry : action.getValue().entrySet()) {
+                String where = action.getKey() + "/" + entry.getKey();
+                ActionFormula formula = formulas.get(entry.getKey());
+                if (formula == null) {
+                    warnings.accept(where, "未知的公式名，可用: " + String.join(", ", formulas.keySet()));
+                    continue;
+                }
+                try {
+                    formula.kind().compile(entry.getValue());
+                    accepted.put(formula, entry.getValue());
+                } catch (FormulaException e) {
+                    warnings.accept(where, e.getMessage());
+                }
+            }
+        }
+
+        for (Map<String, ActionFormula> formulas : byAction.values()) {
+            for (ActionFormula formula : formulas.values()) {
+                String source = accepted.get(formula);
+                if (source == null) {
+                    formula.reset();
+                } else {
+                    formula.set(source);
+                }
+            }
+        }
+        return accepted.size();
+    }
+}
@@ -0,0 +1,53 @@
+package com.dcore.media.core;
+
+/**
+ * 执行期间缓存的一个容器媒体量（见 MediaLedger）
+ * 缓存值与容器中保存的值不同时为脏，由使用者在合适的时候写回
+ */
+public class CachedMedia {
+    private long media;
+    private long checkpoint;
+    private boolean dirty;
+
+    public CachedMedia(long media) {
+        this.media = media;
+        this.checkpoint = media;
+    }
+
+    public long media() {
+        return media;
+    }
+
+    public void setMedia(long media) {
+        this.media = media;
+        dirty = true;
+    }
+
+    /**
+     * 上次检查点的值，恢复时回到这里
+     */
+    public long checkpoint() {
+        return checkpoint;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * 缓存值已经写回容器
+     */
+    public void markClean() {
+        dirty = false;
+    }
+
+    void commit() {
+        checkpoint = media;
+    }
+
+    void restore() {
+        if (media != checkpoint) {
+            setMedia(checkpoint);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.dcore.media.core;
+
+/**
+ * 固定媒体量消耗品的整数换算（每个物品的媒体量相同，提取时按整个物品消耗）
+ * 全部按 long 计算，不经过浮点数
+ */
+public final class ConsumableMedia {
+    private ConsumableMedia() {
+    }
+
+    /**
+     * 一堆物品的媒体量，溢出时取 Long.MAX_VALUE
+     * @param worth 单个物品的媒体量（正数）
+     */
+    public static long media(long worth, int count) {
+        if (count <= 0) {
+            return 0;
+        }
+        return count > Long.MAX_VALUE / worth ? Long.MAX_VALUE : worth * count;
+    }
+
+    /**
+     * 提取 cost 需要消耗的物品数：⌈cost / worth⌉，不超过 count
+     * @param worth 单个物品的媒体量（正数）
+     */
+    public static int itemsFor(long worth, long cost, int count) {
+        if (cost <= 0 || count <= 0) {
+            return 0;
+        }
+        long items = cost / worth;
+        if (items * worth != cost) {
+            items++;
+        }
+        return items < count ? (int) items : count;
+    }
+}
@@ -0,0 +1,116 @@
+package com.dcore.media.core;
+
+import java.util.Arrays;
+
+/**
+ * 成本向量
+ * 由若干个媒体类型分量组成（以类型编号表示），分两种模式：
+ * - SPLIT：按权重拆分成本，每个分量只能由对应类型支付
+ * - ANY_OF：按偏好顺序使用任一类型，前一个类型不足的部分由下一个类型补足
+ *
+ * 实例不可变
+ */
+public final class CostVector {
+    public enum Mode {
+        SPLIT,
+        ANY_OF
+    }
+
+    private final Mode mode;
+    private final int[] typeIndices;
+    private final double[] weights;
+    private final double totalWeight;
+    private final long mask;
+
+    private CostVector(Mode mode, int[] typeIndices, double[] weights) {
+        if (typeIndices.length == 0) {
+            throw new IllegalArgumentException("Cost vector must have at least one type");
+        }
+        if (typeIndices.length != weights.length) {
+            throw new IllegalArgumentException("Media types and weights must have the same length");
+        }
+        double total = 0;
+        long combined = 0L;
+        for (int i = 0; i < typeIndices.length; i++) {
+            int index = typeIndices[i];
+            if (index < 0 || index >= Long.SIZE) {
+                throw new IllegalArgumentException("Invalid media type index " + index);
+            }
+            if (weights[i] < 0 || Double.isNaN(weights[i])) {
+                throw new IllegalArgumentException("Invalid weight " + weights[i] + " for media type index " + index);
+            }
+            if ((combined & (1L << index)) != 0) {
+                throw new IllegalArgumentException("Duplicate media type index " + index + " in cost vector");
+            }
+            total += weights[i];
+            combined |= 1L << index;
+        }
+        if (mode == Mode.SPLIT && total <= 0) {
+            throw new IllegalArgumentException("Split cost vector must have a positive total weight");
+        }
+        this.mode = mode;
+        this.typeIndices = typeIndices;
+        this.weights = weights;
+        this.totalWeight = total;
+        this.mask = combined;
+    }
+
+    /**
+     * 按偏好顺序使用任一类型（只有一个类型时即为单一类型的成本）
+     */
+    public static CostVector anyOf(int... typeIndices) {
+        double[] weights = new double[typeIndices.length];
+        Arrays.fill(weights, 1.0);
+        return new CostVector(Mode.ANY_OF, typeIndices.clone(), weights);
+    }
+
+    /**
+     * 按权重拆分成本，权重不需要加起来等于 1
+     */
+    public static CostVector split(int[] typeIndices, double[] weights) {
+        return new CostVector(Mode.SPLIT, typeIndices.clone(), weights.clone());
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    public int size() {
+        return typeIndices.length;
+    }
+
+    public int typeIndex(int component) {
+        return typeIndices[component];
+    }
+
+    public double weight(int component) {
+        return weights[component];
+    }
+
+    /**
+     * 所有分量的媒体类型位掩码
+     */
+    public long mask() {
+        return mask;
+    }
+
+    /**
+     * 计算每个分量的目标提取量
+     * SPLIT 模式下向下取整后剩余的零头计入第一个分量，保证总和等于 cost；
+     * ANY_OF 模式下全部成本先交给第一个类型
+     */
+    public void targets(long cost, long[] out) {
+        if (mode == Mode.ANY_OF) {
+            Arrays.fill(out, 0, typeIndices.length, 0L);
+            out[0] = cost;
+            return;
+        }
+        long assigned = 0;
+        for (int i = 1; i < typeIndices.length; i++) {
+            long share = (long) Math.floor(cost * (weights[i] / totalWeight));
+            out[i] = share;
+            assigned += share;
+        }
+        out[0] = cost - assigned;
+    }
+}
@@ -0,0 +1,11 @@
+package com.dcore.media.core;
+
+/**
+ * 编译后的公式
+ * 最多三个变量，按 FormulaKind 声明的顺序依次对应 a、b、c，用不到的变量传 0
+ * 参数都是基本类型，求值不分配对象
+ */
+@FunctionalInterface
+public interface Formula {
+    double eval(double a, double b, double c);
+}
@@ -0,0 +1,411 @@
+package com.dcore.media.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * 公式编译器
+ * 在加载配置时把表达式解析成由 lambda 组成的求值树，施法时直接调用，不再解释表达式
+ * - 常量子表达式在编译时折叠
+ * - 四则运算对常量操作数单独生成节点，少一层调用
+ * - x ^ 2 编译为 x * x
+ *
+ * 语法：
+ * - 数字、变量（由调用者给出，最多三个）、括号
+ * - 运算符（优先级从低到高）：比较 {@code < <= > >= == !=}（结果为 1 或 0）、{@code + -}、{@code * / %}、一元负号、{@code ^}（右结合）
+ * - 函数：min、max、pow、abs、sqrt、floor、ceil、round、exp、log、clamp(x, lo, hi)、if(条件, 非零时的值, 为零时的值)
+ */
+public final class FormulaCompiler {
+    private final String source;
+    private final String[] variables;
+    private int pos;
+
+    private FormulaCompiler(String source, String[] variables) {
+        this.source = source;
+        this.variables = variables;
+    }
+
+    /**
+     * 编译公式
+     * @param variables 变量名，按顺序对应 {@link Formula#eval} 的三个参数
+     * @throws FormulaException 表达式无效
+     */
+    public static Formula compile(String source, String... variables) {
+        if (variables.length > 3) {
+            throw new IllegalArgumentException("At most 3 formula variables are supported: " + variables.length);
+        }
+        FormulaCompiler compiler = new FormulaCompiler(source, variables);
+        Node node = compiler.parseComparison();
+        compiler.skipSpaces();
+        if (compiler.pos < source.length()) {
+            throw compiler.error("无法识别的字符 '" + source.charAt(compiler.pos) + "'");
+        }
+        return node.formula;
+    }
+
+    // ---- 语法分析 ----
+
+    private Node parseComparison() {
+        Node left = parseAdditive();
+        skipSpaces();
+        BinaryOp op = null;
+        if (accept("<=")) {
+            op = BinaryOp.LE;
+        } else if (accept(">=")) {
+            op = BinaryOp.GE;
+        } else if (accept("==")) {
+            op = BinaryOp.EQ;
+        } else if (accept("!=")) {
+            op = BinaryOp.NE;
+        } else if (accept("<")) {
+            op = BinaryOp.LT;
+        } else if (accept(">")) {
+            op = BinaryOp.GT;
+        }
+        return op == null ? left : binary(op, left, parseAdditive());
+    }
+
+    private Node parseAdditive() {
+        Node left = parseTerm();
+        while (true) {
+            skipSpaces();
+            if (accept("+")) {
+                left = binary(BinaryOp.ADD, left, parseTerm());
+            } else if (accept("-")) {
+                left = binary(BinaryOp.SUB, left, parseTerm());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Node parseTerm() {
+        Node left = parseUnary();
+        while (true) {
+            skipSpaces();
+            if (accept("*")) {
+                left = binary(BinaryOp.MUL, left, parseUnary());
+            } else if (accept("/")) {
+                left = binary(BinaryOp.DIV, left, parseUnary());
+            } else if (accept("%")) {
+                left = binary(BinaryOp.MOD, left, parseUnary());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Node parseUnary() {
+        skipSpaces();
+        if (accept("-")) {
+            return unary(UnaryOp.NEG, parseUnary());
+        }
+        if (accept("+")) {
+            return parseUnary();
+        }
+        return parsePower();
+    }
+
+    private Node parsePower() {
+        Node base = parsePrimary();
+        skipSpaces();
+        if (accept("^")) {
+            // 右结合，指数可以带负号：2 ^ -x
+            return binary(BinaryOp.POW, base, parseUnary());
+        }
+        return base;
+    }
+
+    private Node parsePrimary() {
+        skipSpaces();
+        if (pos >= source.length()) {
+            throw error("表达式不完整");
+        }
+        char ch = source.charAt(pos);
+        if (ch == '(') {
+            pos++;
+            Node inner = parseComparison();
+            expect(")");
+            return inner;
+        }
+        if (Character.isDigit(ch) || ch == '.') {
+            return parseNumber();
+        }
+        if (Character.isLetter(ch) || ch == '_') {
+            int start = pos;
+            String name = parseIdentifier();
+            skipSpaces();
+            if (accept("(")) {
+                return call(name, parseArguments(), start);
+            }
+            for (int i = 0; i < variables.length; i++) {
+                if (variables[i].equals(name)) {
+                    return variable(i);
+                }
+            }
+            throw errorAt("未知变量 \"" + name + "\"，可用变量: " + String.join(", ", variables), start);
+        }
+        throw error("无法识别的字符 '" + ch + "'");
+    }
+
+    private Node parseNumber() {
+        int start = pos;
+        while (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+            pos++;
+        }
+        if (pos < source.length() && (source.charAt(pos) == 'e' || source.charAt(pos) == 'E')) {
+            pos++;
+            if (pos < source.length() && (source.charAt(pos) == '+' || source.charAt(pos) == '-')) {
+                pos++;
+            }
+            while (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+                pos++;
+            }
+        }
+        try {
+            return constant(Double.parseDouble(source.substring(start, pos)));
+        } catch (NumberFormatException e) {
+            throw errorAt("无效的数字 \"" + source.substring(start, pos) + "\"", start);
+        }
+    }
+
+    private String parseIdentifier() {
+        int start = pos;
+        while (pos < source.length() && (Character.isLetterOrDigit(source.charAt(pos)) || source.charAt(pos) == '_')) {
+            pos++;
+        }
+        return source.substring(start, pos);
+    }
+
+    private List<Node> parseArguments() {
+        List<Node> arguments = new ArrayList<>(3);
+        skipSpaces();
+        if (accept(")")) {
+            return arguments;
+        }
+        do {
+            arguments.add(parseComparison());
+            skipSpaces();
+        } while (accept(","));
+        expect(")");
+        return arguments;
+    }
+
+    private Node call(String name, List<Node> args, int position) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "min":
+                return binary(BinaryOp.MIN, arity(args, 2, name, position).get(0), args.get(1));
+            case "max":
+                return binary(BinaryOp.MAX, arity(args, 2, name, position).get(0), args.get(1));
+            case "pow":
+                return binary(BinaryOp.POW, arity(args, 2, name, position).get(0), args.get(1));
+            case "abs":
+                return unary(UnaryOp.ABS, arity(args, 1, name, position).get(0));
+            case "sqrt":
+                return unary(UnaryOp.SQRT, arity(args, 1, name, position).get(0));
+            case "floor":
+                return unary(UnaryOp.FLOOR, arity(args, 1, name, position).get(0));
+            case "ceil":
+                return unary(UnaryOp.CEIL, arity(args, 1, name, position).get(0));
+            case "round":
+                return unary(UnaryOp.ROUND, arity(args, 1, name, position).get(0));
+            case "exp":
+                return unary(UnaryOp.EXP, arity(args, 1, name, position).get(0));
+            case "log":
+                return unary(UnaryOp.LOG, arity(args, 1, name, position).get(0));
+            case "clamp":
+                arity(args, 3, name, position);
+                return binary(BinaryOp.MIN, binary(BinaryOp.MAX, args.get(0), args.get(1)), args.get(2));
+            case "if":
+                arity(args, 3, name, position);
+                return conditional(args.get(0), args.get(1), args.get(2));
+            default:
+                throw errorAt("未知函数 \"" + name + "\"", position);
+        }
+    }
+
+    private List<Node> arity(List<Node> args, int expected, String name, int position) {
+        if (args.size() != expected) {
+            throw errorAt("函数 " + name + " 需要 " + expected + " 个参数，实际为 " + args.size(), position);
+        }
+        return args;
+    }
+
+    private void skipSpaces() {
+        while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private boolean accept(String token) {
+        if (source.startsWith(token, pos)) {
+            pos += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        skipSpaces();
+        if (!accept(token)) {
+            throw error("缺少 '" + token + "'");
+        }
+    }
+
+    private FormulaException error(String message) {
+        return errorAt(message, pos);
+    }
+
+    private FormulaException errorAt(String message, int position) {
+        return new FormulaException(message, source, position);
+    }
+
+    // ---- 求值树 ----
+
+    /**
+     * 编译中间结果：求值函数，以及用于常量折叠的常量值
+     */
+    private static final class Node {
+        final Formula formula;
+        final boolean constant;
+        final double value;
+
+        Node(Formula formula, boolean constant, double value) {
+            this.formula = formula;
+            this.constant = constant;
+            this.value = value;
+        }
+    }
+
+    private static Node constant(double value) {
+        return new Node((a, b, c) -> value, true, value);
+    }
+
+    private static Node variable(int index) {
+        Formula formula = switch (index) {
+            case 0 -> (a, b, c) -> a;
+            case 1 -> (a, b, c) -> b;
+            default -> (a, b, c) -> c;
+        };
+        return new Node(formula, false, 0);
+    }
+
+    private enum UnaryOp {
+        NEG(v -> -v),
+        ABS(Math::abs),
+        SQRT(Math::sqrt),
+        FLOOR(Math::floor),
+        CEIL(Math::ceil),
+        ROUND(v -> (double) Math.round(v)),
+        EXP(Math::exp),
+        LOG(Math::log);
+
+        final DoubleUnaryOperator function;
+
+        UnaryOp(DoubleUnaryOperator function) {
+            this.function = function;
+        }
+    }
+
+    private enum BinaryOp {
+        ADD((x, y) -> x + y),
+        SUB((x, y) -> x - y),
+        MUL((x, y) -> x * y),
+        DIV((x, y) -> x / y),
+        MOD((x, y) -> x % y),
+        POW(Math::pow),
+        MIN(Math::min),
+        MAX(Math::max),
+        LT((x, y) -> x < y ? 1 : 0),
+        LE((x, y) -> x <= y ? 1 : 0),
+        GT((x, y) -> x > y ? 1 : 0),
+        GE((x, y) -> x >= y ? 1 : 0),
+        EQ((x, y) -> x == y ? 1 : 0),
+        NE((x, y) -> x != y ? 1 : 0);
+
+        final DoubleBinaryOperator function;
+
+        BinaryOp(DoubleBinaryOperator function) {
+            this.function = function;
+        }
+    }
+
+    private static Node unary(UnaryOp op, Node operand) {
+        if (operand.constant) {
+            return constant(op.function.applyAsDouble(operand.value));
+        }
+        Formula f = operand.formula;
+        if (op == UnaryOp.NEG) {
+            return new Node((a, b, c) -> -f.eval(a, b, c), false, 0);
+        }
+        DoubleUnaryOperator function = op.function;
+        return new Node((a, b, c) -> function.applyAsDouble(f.eval(a, b, c)), false, 0);
+    }
+
+    private static Node binary(BinaryOp op, Node left, Node right) {
+        if (left.constant && right.constant) {
+            return constant(op.function.applyAsDouble(left.value, right.value));
+        }
+        Formula l = left.formula;
+        Formula r = right.formula;
+        Formula formula;
+        if (right.constant) {
+            double k = right.value;
+            formula = switch (op) {
+                case ADD -> (a, b, c) -> l.eval(a, b, c) + k;
+                case SUB -> (a, b, c) -> l.eval(a, b, c) - k;
+                case MUL -> (a, b, c) -> l.eval(a, b, c) * k;
+                case DIV -> (a, b, c) -> l.eval(a, b, c) / k;
+                case POW -> k == 2.0 ? square(l) : general(op, l, r);
+                default -> general(op, l, r);
+            };
+        } else if (left.constant) {
+            double k = left.value;
+            formula = switch (op) {
+                case ADD -> (a, b, c) -> k + r.eval(a, b, c);
+                case SUB -> (a, b, c) -> k - r.eval(a, b, c);
+                case MUL -> (a, b, c) -> k * r.eval(a, b, c);
+                case DIV -> (a, b, c) -> k / r.eval(a, b, c);
+                default -> general(op, l, r);
+            };
+        } else {
+            formula = general(op, l, r);
+        }
+        return new Node(formula, false, 0);
+    }
+
+    private static Formula square(Formula f) {
+        return (a, b, c) -> {
+            double v = f.eval(a, b, c);
+            return v * v;
+        };
+    }
+
+    private static Formula general(BinaryOp op, Formula l, Formula r) {
+        return switch (op) {
+            case ADD -> (a, b, c) -> l.eval(a, b, c) + r.eval(a, b, c);
+            case SUB -> (a, b, c) -> l.eval(a, b, c) - r.eval(a, b, c);
+            case MUL -> (a, b, c) -> l.eval(a, b, c) * r.eval(a, b, c);
+            case DIV -> (a, b, c) -> l.eval(a, b, c) / r.eval(a, b, c);
+            case MIN -> (a, b, c) -> Math.min(l.eval(a, b, c), r.eval(a, b, c));
+            case MAX -> (a, b, c) -> Math.max(l.eval(a, b, c), r.eval(a, b, c));
+            default -> {
+                DoubleBinaryOperator function = op.function;
+                yield (a, b, c) -> function.applyAsDouble(l.eval(a, b, c), r.eval(a, b, c));
+            }
+        };
+    }
+
+    private static Node conditional(Node condition, Node ifTrue, Node ifFalse) {
+        if (condition.constant) {
+            return condition.value != 0 ? ifTrue : ifFalse;
+        }
+        Formula test = condition.formula;
+        Formula t = ifTrue.formula;
+        Formula f = ifFalse.formula;
+        return new Node((a, b, c) -> test.eval(a, b, c) != 0 ? t.eval(a, b, c) : f.eval(a, b, c), false, 0);
+    }
+}
@@ -0,0 +1,22 @@
+package com.dcore.media.core;
+
+/**
+ * 公式无法编译（语法错误、未知变量或函数）
+ */
+public class FormulaException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final int position;
+
+    public FormulaException(String message, String source, int position) {
+        super(message + "（位置 " + position + "）: " + source);
+        this.position = position;
+    }
+
+    /**
+     * 出错的字符位置（从 0 开始）
+     */
+    public int position() {
+        return position;
+    }
+}
@@ -0,0 +1,83 @@
+package com.dcore.media.core;
+
+/**
+ * 公式种类：规定可用的变量（按 {@link Formula#eval} 的参数顺序）和默认表达式
+ * 默认表达式是各动作公式的唯一来源（基准测试中的手写版本只用于比较开销）
+ */
+public enum FormulaKind {
+    /**
+     * 伤害 = 基础伤害 × 强度
+     */
+    STRENGTH_DAMAGE("100 * strength", "strength"),
+    /**
+     * 消耗 = 基础消耗 × 强度的平方
+     */
+    STRENGTH_COST("base * strength * strength", "base", "strength"),
+    /**
+     * 消耗 = 实体数量的平方 × 基础消耗 × 强度的平方，没有实体时按单体计算
+     */
+    ENTITY_LIST_COST("if(count > 0, count * count * base * strength * strength, base * strength * strength)",
+        "base", "count", "strength"),
+    /**
+     * 固定消耗
+     */
+    BASE_COST("base", "base"),
+    /**
+     * 伤害 = 当前血量 × (速度 / 10)，上限为最大血量的 10 倍
+     */
+    VELOCITY_DAMAGE("max(0, min(health * (speed / 10), max_health * 10))", "health", "max_health", "speed"),
+    /**
+     * 伤害 = 1.2^负面效果等级总和（没有负面效果时为 1.0）
+     * 变量是小整数，编译时预先算好 0..255 的结果
+     */
+    NEGATIVE_EFFECT_DAMAGE("if(level_sum > 0, 1.2 ^ level_sum, 1)", 256, "level_sum"),
+    /**
+     * 消耗 = 基础消耗 × 负面效果等级的连乘（没有负面效果时连乘为 1）
+     */
+    NEGATIVE_EFFECT_COST("base * level_product", "base", "level_product", "level_sum"),
+    /**
+     * 伤害 = 消耗的媒体换算出的总伤害
+     */
+    CONSUMED_DAMAGE("total", "total"),
+    /**
+     * 每个实体的伤害 = 总伤害除以 10 后平均分配
+     */
+    CONSUMED_DAMAGE_PER_ENTITY("total / 10 / count", "total", "count");
+
+    private final String defaultSource;
+    private final int tableSize;
+    private final String[] variables;
+
+    FormulaKind(String defaultSource, String... variables) {
+        this(defaultSource, 0, variables);
+    }
+
+    FormulaKind(String defaultSource, int tableSize, String... variables) {
+        this.defaultSource = defaultSource;
+        this.tableSize = tableSize;
+        this.variables = variables;
+    }
+
+    public String defaultSource() {
+        return defaultSource;
+    }
+
+    /**
+     * 编译时预先计算的整数输入个数（从 0 开始），0 表示不建表
+     */
+    public int tableSize() {
+        return tableSize;
+    }
+
+    public String[] variables() {
+        return variables.clone();
+    }
+
+    /**
+     * 按本种类的变量编译表达式
+     * @throws FormulaException 表达式无效
+     */
+    public Formula compile(String source) {
+        return FormulaCompiler.compile(source, variables);
+    }
+}
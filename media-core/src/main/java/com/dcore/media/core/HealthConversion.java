@@ -0,0 +1,56 @@
+package com.dcore.media.core;
+
+/**
+ * 媒体与生命值之间的换算
+ * 血量扣除比例表示多少媒体量 = 1 血量，例如 100.0 表示 100 媒体 = 1 血量
+ */
+public final class HealthConversion {
+    /**
+     * 未配置时的血量扣除比例（10000 媒体 = 1 血量）
+     */
+    public static final double DEFAULT_HEALTH_RATE = 10000.0;
+
+    private HealthConversion() {
+    }
+
+    /**
+     * 按类型编号查找血量扣除比例，超出表范围（表生成之后才注册的类型）时使用默认比例
+     */
+    public static double rate(double[] healthRates, int typeIndex) {
+        return typeIndex < healthRates.length ? healthRates[typeIndex] : DEFAULT_HEALTH_RATE;
+    }
+
+    /**
+     * 媒体量对应的血量（也用于按媒体量计算伤害）
+     */
+    public static double toHealth(long media, double healthRate) {
+        return media / healthRate;
+    }
+
+    /**
+     * 血量扣除是否超过最大生命值（法术需要被取消）
+     */
+    public static boolean exceedsMaxHealth(double healthCost, float maxHealth) {
+        return healthCost > maxHealth;
+    }
+
+    /**
+     * 扣除所有生命值
+     * @return 实际扣除的血量对应的媒体量
+     */
+    public static long drainAll(MediaCaster caster, double healthRate) {
+        float currentHealth = caster.getHealth();
+        caster.setHealth(0.0f);
+        return (long) (currentHealth * healthRate);
+    }
+
+    /**
+     * 按血量扣除，生命值最低降到 0
+     * @return 实际扣除的血量对应的媒体量
+     */
+    public static long deduct(MediaCaster caster, double healthCost, double healthRate) {
+        float currentHealth = caster.getHealth();
+        caster.setHealth((float) Math.max(0, currentHealth - healthCost));
+        return (long) (Math.min(healthCost, currentHealth) * healthRate);
+    }
+}
@@ -0,0 +1,135 @@
+package com.dcore.media.core;
+
+import java.util.Arrays;
+
+/**
+ * 一次媒体结算的分配结果
+ * 记录从各媒体源提取的数量，以及媒体源不足时需要由生命值支付的部分
+ *
+ * 对象可以反复使用：提取项保存在可扩容的并行数组中，clear 之后覆盖上一次的内容，
+ * 稳定状态下生成和应用分配都不分配对象
+ */
+public class MediaAllocation {
+    private static final int INITIAL_CAPACITY = 8;
+
+    // 按顺序从各媒体源提取的数量：requested 为提取时请求的数量，expected 为模拟时实际能提供的数量
+    private MediaSource[] sources = new MediaSource[INITIAL_CAPACITY];
+    private long[] requested = new long[INITIAL_CAPACITY];
+    private long[] expected = new long[INITIAL_CAPACITY];
+    private int entryCount;
+
+    // 成本向量各分量的目标提取量（生成分配时使用的临时数组）
+    private long[] targets = new long[2];
+
+    // 媒体源能提供的媒体量（所有分量合计）
+    private long extracted;
+    // 媒体源不足、需要由生命值支付的媒体量（所有分量合计）
+    private long healthRemainder;
+    // 血量扣除比例（媒体量/血量），多个分量不足时为合并后的等效比例
+    private double healthRate;
+    // 需要扣除的血量
+    private double healthCost;
+    // 血量扣除是否超过最大生命值（法术需要被取消）
+    private boolean cancel;
+
+    /**
+     * 清除上一次的结果，不再持有媒体源的引用
+     */
+    public void clear() {
+        Arrays.fill(sources, 0, entryCount, null);
+        entryCount = 0;
+        extracted = 0;
+        healthRemainder = 0;
+        healthRate = 0;
+        healthCost = 0;
+        cancel = false;
+    }
+
+    long[] targets(int size) {
+        if (targets.length < size) {
+            targets = new long[size];
+        }
+        return targets;
+    }
+
+    /**
+     * 查找媒体源对应的提取项
+     * @return 下标，没有时返回 -1
+     */
+    int findEntry(MediaSource source) {
+        for (int i = 0; i < entryCount; i++) {
+            if (sources[i] == source) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    void addEntry(MediaSource source, long requested, long expected) {
+        if (entryCount == sources.length) {
+            int capacity = entryCount * 2;
+            sources = Arrays.copyOf(sources, capacity);
+            this.requested = Arrays.copyOf(this.requested, capacity);
+            this.expected = Arrays.copyOf(this.expected, capacity);
+        }
+        sources[entryCount] = source;
+        this.requested[entryCount] = requested;
+        this.expected[entryCount] = expected;
+        entryCount++;
+    }
+
+    /**
+     * 同一个媒体源被多个分量使用时，合并到已有的提取项
+     */
+    void mergeEntry(int entry, long requested, long expected) {
+        this.requested[entry] += requested;
+        this.expected[entry] += expected;
+    }
+
+    void setExtracted(long extracted) {
+        this.extracted = extracted;
+    }
+
+    void setHealth(long healthRemainder, double healthRate, double healthCost, boolean cancel) {
+        this.healthRemainder = healthRemainder;
+        this.healthRate = healthRate;
+        this.healthCost = healthCost;
+        this.cancel = cancel;
+    }
+
+    public int entryCount() {
+        return entryCount;
+    }
+
+    public MediaSource source(int entry) {
+        return sources[entry];
+    }
+
+    public long requested(int entry) {
+        return requested[entry];
+    }
+
+    public long expected(int entry) {
+        return expected[entry];
+    }
+
+    public long extracted() {
+        return extracted;
+    }
+
+    public long healthRemainder() {
+        return healthRemainder;
+    }
+
+    public double healthRate() {
+        return healthRate;
+    }
+
+    public double healthCost() {
+        return healthCost;
+    }
+
+    public boolean cancel() {
+        return cancel;
+    }
+}
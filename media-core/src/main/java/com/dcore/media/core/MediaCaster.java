@@ -0,0 +1,13 @@
+package com.dcore.media.core;
+
+/**
+ * 施法者
+ * 媒体源不足时，由施法者的生命值支付剩余的媒体
+ */
+public interface MediaCaster {
+    float getHealth();
+
+    float getMaxHealth();
+
+    void setHealth(float health);
+}
@@ -0,0 +1,76 @@
+package com.dcore.media.core;
+
+import java.util.Arrays;
+
+/**
+ * 一次性提取所有媒体源中的媒体（"消耗所有媒体"类动作使用）
+ * 只遍历媒体源一次，按类型编号累加到基本类型数组中，同时得到实际提取的总量和对应的伤害
+ *
+ * 每个媒体源按其主要类型（位掩码中最低的一位）计入；对象可以反复使用
+ */
+public final class MediaDrain {
+    private long[] consumedByType = new long[0];
+    private long totalConsumed;
+    private float damage;
+
+    /**
+     * 从所有媒体源中提取全部媒体
+     * @param sources 媒体源（顺序即提取顺序）
+     * @param healthRates 以类型编号为下标的血量扣除比例，用于把提取量换算为伤害
+     * @return this
+     */
+    public MediaDrain drainAll(MediaSource[] sources, double[] healthRates) {
+        clear();
+        for (MediaSource source : sources) {
+            long typeMask = source.typeMask();
+            if (typeMask == 0) {
+                continue;
+            }
+            long consumed = source.withdrawAll();
+            if (consumed <= 0) {
+                continue;
+            }
+            int type = Long.numberOfTrailingZeros(typeMask);
+            if (type >= consumedByType.length) {
+                consumedByType = Arrays.copyOf(consumedByType, type + 1);
+            }
+            consumedByType[type] += consumed;
+            totalConsumed += consumed;
+        }
+
+        // 按类型换算伤害，每个类型使用自己的血量扣除比例
+        for (int type = 0; type < consumedByType.length; type++) {
+            if (consumedByType[type] > 0) {
+                damage += (float) HealthConversion.toHealth(consumedByType[type], HealthConversion.rate(healthRates, type));
+            }
+        }
+        return this;
+    }
+
+    public void clear() {
+        Arrays.fill(consumedByType, 0L);
+        totalConsumed = 0;
+        damage = 0;
+    }
+
+    /**
+     * 实际提取的媒体总量
+     */
+    public long totalConsumed() {
+        return totalConsumed;
+    }
+
+    /**
+     * 指定类型实际提取的媒体量
+     */
+    public long consumed(int typeIndex) {
+        return typeIndex < consumedByType.length ? consumedByType[typeIndex] : 0;
+    }
+
+    /**
+     * 提取的媒体按各自类型的血量扣除比例换算得到的总伤害
+     */
+    public float damage() {
+        return damage;
+    }
+}
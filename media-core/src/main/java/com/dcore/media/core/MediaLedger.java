@@ -0,0 +1,127 @@
+package com.dcore.media.core;
+
+import java.util.Arrays;
+
+/**
+ * 一次施法中媒体提取的账本：每执行一步记录一次，失败的一步整体恢复
+ *
+ * - 缓存的容器（CachedMedia）在每一步结束时提交检查点；恢复时回到上一次提交的值
+ * - 不能缓存的媒体源在提取之前由 save 记录物品数和媒体量（见 RestorableSource），恢复时按相反顺序写回
+ * - 每一步结束时调用 commit，失败时先调用 rollback 再调用 commit；
+ *   检查点只由 commit 推进，不依赖某一步是否经过特定的入口，之前已经结束的步骤不会被恢复
+ *
+ * 数组在步骤之间复用，只在登记的数量增加时扩容；稳态下记录和提交不分配任何对象
+ */
+public final class MediaLedger {
+    private CachedMedia[] cached = new CachedMedia[4];
+    private int cachedSize;
+    // 本步骤中提取之前保存的媒体源状态
+    private RestorableSource[] saved = new RestorableSource[4];
+    private int[] savedCounts = new int[4];
+    private long[] savedMedia = new long[4];
+    private int savedSize;
+
+    /**
+     * 登记一个缓存的容器，当前值作为它的检查点
+     */
+    public void add(CachedMedia entry) {
+        if (cachedSize == cached.length) {
+            cached = Arrays.copyOf(cached, cachedSize * 2);
+        }
+        cached[cachedSize++] = entry;
+    }
+
+    public int cachedCount() {
+        return cachedSize;
+    }
+
+    public CachedMedia cached(int i) {
+        return cached[i];
+    }
+
+    /**
+     * 本步骤是否有需要提交或恢复的内容
+     */
+    public boolean isEmpty() {
+        return cachedSize == 0 && savedSize == 0;
+    }
+
+    /**
+     * 在真实提取之前保存媒体源的状态；同一个媒体源在一个步骤中只保存第一次
+     */
+    public void save(MediaSource source) {
+        if (!(source instanceof RestorableSource restorable)) {
+            return;
+        }
+        for (int i = 0; i < savedSize; i++) {
+            if (saved[i] == restorable) {
+                return;
+            }
+        }
+        if (savedSize == saved.length) {
+            int capacity = savedSize * 2;
+            saved = Arrays.copyOf(saved, capacity);
+            savedCounts = Arrays.copyOf(savedCounts, capacity);
+            savedMedia = Arrays.copyOf(savedMedia, capacity);
+        }
+        saved[savedSize] = restorable;
+        savedCounts[savedSize] = restorable.countState();
+        savedMedia[savedSize] = restorable.mediaState();
+        savedSize++;
+    }
+
+    /**
+     * 保存分配中所有媒体源的状态，在应用分配之前调用
+     */
+    public void save(MediaAllocation allocation) {
+        for (int i = 0; i < allocation.entryCount(); i++) {
+            save(allocation.source(i));
+        }
+    }
+
+    /**
+     * 保存所有媒体源的状态，在一次性提取全部媒体之前调用
+     */
+    public void save(MediaSource[] sources) {
+        for (MediaSource source : sources) {
+            save(source);
+        }
+    }
+
+    /**
+     * 恢复本步骤的全部提取：保存过的媒体源按相反顺序恢复，缓存的容器回到上一次提交的值
+     */
+    public void rollback() {
+        for (int i = savedSize - 1; i >= 0; i--) {
+            saved[i].restoreState(savedCounts[i], savedMedia[i]);
+        }
+        clearSaved();
+        for (int i = 0; i < cachedSize; i++) {
+            cached[i].restore();
+        }
+    }
+
+    /**
+     * 结束本步骤：缓存的当前值成为新的检查点，丢弃保存的媒体源状态
+     */
+    public void commit() {
+        for (int i = 0; i < cachedSize; i++) {
+            cached[i].commit();
+        }
+        clearSaved();
+    }
+
+    /**
+     * 解除所有登记
+     */
+    public void clear() {
+        Arrays.fill(cached, 0, cachedSize, null);
+        cachedSize = 0;
+        clearSaved();
+    }
+
+    private void clearSaved() {
+        Arrays.fill(saved, 0, savedSize, null);
+        savedSize = 0;
+    }
+}
@@ -0,0 +1,129 @@
+package com.dcore.media.core;
+
+/**
+ * 媒体结算
+ * 按成本向量的每个分量依次从对应类型的媒体源分配提取量，并合并计算剩余部分的血量扣除
+ * 所有分量在同一次结算中完成；同一个媒体源被多个分量使用时合并为一个提取项
+ */
+public final class MediaPlanner {
+    private MediaPlanner() {
+    }
+
+    /**
+     * 生成分配：只调用媒体源的模拟提取，不修改任何状态
+     *
+     * @param out 写入结果的分配对象（会先被清除）
+     * @param vector 成本向量
+     * @param cost 需要提取的媒体量
+     * @param buckets 媒体源，为 null 时全部由生命值支付
+     * @param healthRates 以类型编号为下标的血量扣除比例
+     * @param caster 施法者，为 null 时没有生命值可以支付（例如法术环），有任何不足都标记取消
+     */
+    public static void plan(MediaAllocation out, CostVector vector, long cost, MediaSourceBuckets buckets,
+                            double[] healthRates, MediaCaster caster) {
+        out.clear();
+        int components = vector.size();
+        long[] targets = out.targets(components);
+        vector.targets(cost, targets);
+        boolean split = vector.mode() == CostVector.Mode.SPLIT;
+
+        long totalExtracted = 0;
+        long healthRemainder = 0;
+        double healthCost = 0;
+        long carry = 0;
+
+        for (int i = 0; i < components; i++) {
+            int typeIndex = vector.typeIndex(i);
+            long target = targets[i] + carry;
+            long extracted = buckets != null && target > 0
+                ? planComponent(out, buckets.sources(typeIndex), 1L << typeIndex, target)
+                : 0;
+            totalExtracted += extracted;
+            long unmet = target - extracted;
+
+            if (!split && i < components - 1) {
+                // 按偏好顺序：不足的部分交给下一个类型
+                carry = unmet;
+                continue;
+            }
+            if (unmet > 0) {
+                // SPLIT 按各分量自己的比例扣血；ANY_OF 最终不足的部分按主要类型（第一个分量）的比例扣血
+                int rateType = split ? typeIndex : vector.typeIndex(0);
+                healthRemainder += unmet;
+                healthCost += HealthConversion.toHealth(unmet, HealthConversion.rate(healthRates, rateType));
+            }
+        }
+
+        // 多个分量不足时，使用合并后的等效比例
+        double healthRate = healthRemainder > 0
+            ? healthRemainder / healthCost
+            : HealthConversion.rate(healthRates, vector.typeIndex(0));
+        boolean cancel = healthRemainder > 0 && cannotPay(caster, healthCost);
+
+        out.setExtracted(totalExtracted);
+        out.setHealth(healthRemainder, healthRate, healthCost, cancel);
+    }
+
+    private static boolean cannotPay(MediaCaster caster, double healthCost) {
+        return caster == null || HealthConversion.exceedsMaxHealth(healthCost, caster.getMaxHealth());
+    }
+
+    /**
+     * 为成本向量的一个分量分配媒体源，按优先级从高到低
+     * @return 该分量实际能提取的媒体量
+     */
+    private static long planComponent(MediaAllocation out, MediaSource[] sources, long typeBit, long target) {
+        long extracted = 0;
+        for (MediaSource source : sources) {
+            if (extracted >= target) {
+                break;
+            }
+            if ((source.typeMask() & typeBit) == 0) {
+                continue;
+            }
+
+            // 提供多种类型的媒体源可能已经被前面的分量使用过，模拟时要算上已分配的部分
+            int existing = out.findEntry(source);
+            long alreadyRequested = existing >= 0 ? out.requested(existing) : 0;
+            long alreadyExpected = existing >= 0 ? out.expected(existing) : 0;
+
+            long requested = target - extracted;
+            long available = source.simulateWithdraw(alreadyRequested + requested) - alreadyExpected;
+            if (available <= 0) {
+                continue;
+            }
+            if (existing >= 0) {
+                out.mergeEntry(existing, requested, available);
+            } else {
+                out.addEntry(source, requested, available);
+            }
+            extracted += available;
+        }
+        return extracted;
+    }
+
+    /**
+     * 应用分配：从各媒体源真实提取
+     * 媒体源在模拟和真实提取之间被消耗了一部分时，差额并入血量扣除（按分配的等效比例）
+     *
+     * @return 差额（媒体源少提供的媒体量）
+     */
+    public static long apply(MediaAllocation allocation, MediaCaster caster) {
+        long shortfall = 0;
+        for (int i = 0; i < allocation.entryCount(); i++) {
+            long withdrawn = allocation.source(i).withdraw(allocation.requested(i));
+            if (withdrawn < allocation.expected(i)) {
+                shortfall += allocation.expected(i) - withdrawn;
+            }
+        }
+
+        if (shortfall > 0) {
+            long healthRemainder = allocation.healthRemainder() + shortfall;
+            double healthCost = HealthConversion.toHealth(healthRemainder, allocation.healthRate());
+            boolean cancel = cannotPay(caster, healthCost);
+            allocation.setExtracted(allocation.extracted() - shortfall);
+            allocation.setHealth(healthRemainder, allocation.healthRate(), healthCost, cancel);
+        }
+        return shortfall;
+    }
+}
@@ -0,0 +1,40 @@
+package com.dcore.media.core;
+
+/**
+ * 媒体源
+ * 媒体结算核心只通过这个接口访问媒体容器，不依赖 Minecraft 的物品和背包
+ */
+public interface MediaSource {
+    /**
+     * 此媒体源可以提供的媒体类型位掩码（每个类型对应一位）
+     */
+    long typeMask();
+
+    /**
+     * 消耗优先级，数值越大越先被消耗
+     */
+    int priority();
+
+    /**
+     * 模拟提取，不修改任何状态
+     * @return 最多能提取的媒体量（不超过 amount）
+     */
+    long simulateWithdraw(long amount);
+
+    /**
+     * 真实提取
+     * @return 实际提取的媒体量
+     */
+    long withdraw(long amount);
+
+    /**
+     * 真实提取全部媒体
+     * 默认先模拟得到可提取的量，再按这个量真实提取，避免把 Long.MAX_VALUE 交给容器做换算；
+     * 能够一次取空的媒体源（例如固定媒体量的消耗品）应覆盖此方法
+     * @return 实际提取的媒体量
+     */
+    default long withdrawAll() {
+        long available = simulateWithdraw(Long.MAX_VALUE);
+        return available > 0 ? withdraw(available) : 0;
+    }
+}
@@ -0,0 +1,13 @@
+package com.dcore.media.core;
+
+/**
+ * 按媒体类型分桶的媒体源集合
+ * 每个桶已按消耗优先级从高到低排序，同优先级保持稳定顺序
+ */
+public interface MediaSourceBuckets {
+    /**
+     * 获取指定类型编号的媒体源
+     * 返回的数组由实现持有，调用者不应修改
+     */
+    MediaSource[] sources(int typeIndex);
+}
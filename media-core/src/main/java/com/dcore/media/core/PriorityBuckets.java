@@ -0,0 +1,121 @@
+package com.dcore.media.core;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * 按类型分桶、按消耗优先级排序的媒体源，由各个索引在重建时填充
+ * 一个媒体源可以提供多种类型时，会出现在其位掩码中每个类型的桶里
+ *
+ * 各类型的桶按优先级做计数排序：优先级只有少数几个不同的值（ADMediaHolder 中的常量），
+ * 先统计每个优先级的数量，再按前缀和直接放到最终位置，不需要比较器和临时列表；
+ * 同优先级保持输入顺序。大小不变的桶复用上一次的数组，输入不变时重建不分配任何对象
+ */
+public final class PriorityBuckets implements MediaSourceBuckets {
+    private final IntFunction<? extends MediaSource[]> newArray;
+    private final MediaSource[] empty;
+    private MediaSource[][] byType = new MediaSource[0][];
+    // 以下数组在重建之间复用，只在优先级种类增加时扩容
+    private int[] priorities = new int[8];
+    private int[] offsets = new int[9];
+
+    /**
+     * @param newArray 创建桶数组，sources 返回的数组是它创建的类型
+     */
+    public PriorityBuckets(IntFunction<? extends MediaSource[]> newArray) {
+        this.newArray = newArray;
+        this.empty = newArray.apply(0);
+    }
+
+    @Override
+    public MediaSource[] sources(int typeIndex) {
+        // 上次重建之后才注册的类型还没有桶
+        return typeIndex < byType.length ? byType[typeIndex] : empty;
+    }
+
+    /**
+     * 按 sources 的前 count 个媒体源重建所有桶
+     * @param typeCount 当前注册的类型数量
+     */
+    public void rebuild(MediaSource[] sources, int count, int typeCount) {
+        long presentMask = 0L;
+        int priorityCount = 0;
+        for (int i = 0; i < count; i++) {
+            presentMask |= sources[i].typeMask();
+            priorityCount = insertPriority(sources[i].priority(), priorityCount);
+        }
+        if (byType.length != typeCount) {
+            byType = Arrays.copyOf(byType, typeCount);
+        }
+        if (offsets.length < priorityCount + 1) {
+            offsets = new int[priorityCount + 1];
+        }
+
+        for (int index = 0; index < typeCount; index++) {
+            long bit = 1L << index;
+            if ((presentMask & bit) == 0) {
+                byType[index] = empty;
+                continue;
+            }
+            byType[index] = bucket(sources, count, bit, priorityCount, byType[index]);
+        }
+    }
+
+    /**
+     * 对一个类型的媒体源做计数排序，优先级从高到低，同优先级保持输入顺序
+     */
+    private MediaSource[] bucket(MediaSource[] sources, int count, long bit, int priorityCount, MediaSource[] previous) {
+        Arrays.fill(offsets, 0, priorityCount + 1, 0);
+        int bucketSize = 0;
+        for (int i = 0; i < count; i++) {
+            MediaSource source = sources[i];
+            if ((source.typeMask() & bit) != 0) {
+                offsets[priorityRank(source.priority(), priorityCount) + 1]++;
+                bucketSize++;
+            }
+        }
+        for (int rank = 0; rank < priorityCount; rank++) {
+            offsets[rank + 1] += offsets[rank];
+        }
+
+        MediaSource[] bucket = previous != null && previous.length == bucketSize && previous != empty
+            ? previous
+            : newArray.apply(bucketSize);
+        for (int i = 0; i < count; i++) {
+            MediaSource source = sources[i];
+            if ((source.typeMask() & bit) != 0) {
+                bucket[offsets[priorityRank(source.priority(), priorityCount)]++] = source;
+            }
+        }
+        return bucket;
+    }
+
+    /**
+     * 将优先级插入已排序（从高到低）的去重数组，返回新的数量
+     */
+    private int insertPriority(int priority, int priorityCount) {
+        int pos = 0;
+        while (pos < priorityCount && priorities[pos] > priority) {
+            pos++;
+        }
+        if (pos < priorityCount && priorities[pos] == priority) {
+            return priorityCount;
+        }
+        if (priorityCount == priorities.length) {
+            priorities = Arrays.copyOf(priorities, priorityCount * 2);
+        }
+        System.arraycopy(priorities, pos, priorities, pos + 1, priorityCount - pos);
+        priorities[pos] = priority;
+        return priorityCount + 1;
+    }
+
+    private int priorityRank(int priority, int priorityCount) {
+        // 不同优先级的数量很少（通常 3 到 5 个），线性查找比二分更快
+        for (int rank = 0; rank < priorityCount; rank++) {
+            if (priorities[rank] == priority) {
+                return rank;
+            }
+        }
+        throw new IllegalStateException("Unknown media priority " + priority);
+    }
+}
@@ -0,0 +1,22 @@
+package com.dcore.media.core;
+
+/**
+ * 执行失败时可以恢复提取的媒体源（见 MediaLedger）
+ * 状态由物品数和媒体量两个值组成：提取之前保存，恢复时写回
+ */
+public interface RestorableSource {
+    /**
+     * 当前的物品数，媒体源不是物品时为 0
+     */
+    int countState();
+
+    /**
+     * 当前的媒体量
+     */
+    long mediaState();
+
+    /**
+     * 恢复到保存的状态
+     */
+    void restoreState(int count, long media);
+}
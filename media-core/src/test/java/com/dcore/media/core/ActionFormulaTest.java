@@ -0,0 +1,93 @@
+package com.dcore.media.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ActionFormulaTest {
+    private final ActionFormulaTable table = new ActionFormulaTable();
+
+    @Test
+    void defaultDamageAndCostFormulas() {
+        assertEquals(250.0, table.register("a", "damage", FormulaKind.STRENGTH_DAMAGE).eval(2.5));
+        assertEquals(20_000.0 * 2.5 * 2.5, table.register("a", "cost", FormulaKind.STRENGTH_COST).eval(20_000, 2.5));
+
+        ActionFormula list = table.register("a", "list_cost", FormulaKind.ENTITY_LIST_COST);
+        assertEquals(9 * 20_000.0 * 4, list.eval(20_000, 3, 2));
+        assertEquals(20_000.0 * 4, list.eval(20_000, 0, 2));
+
+        ActionFormula velocity = table.register("a", "velocity", FormulaKind.VELOCITY_DAMAGE);
+        assertEquals(18.0 * (3.7 / 10), velocity.eval(18, 20, 3.7), 1e-9);
+        assertEquals(200.0, velocity.eval(18, 20, 1e6));
+
+        ActionFormula perEntity = table.register("a", "per_entity", FormulaKind.CONSUMED_DAMAGE_PER_ENTITY);
+        assertEquals(5.0, perEntity.eval(200, 4));
+    }
+
+    @Test
+    void negativeEffectTableMatchesDirectEvaluation() {
+        ActionFormula damage = table.register("a", "negative", FormulaKind.NEGATIVE_EFFECT_DAMAGE);
+        assertEquals(1.0, damage.evalTabulated(0));
+        for (int level = 1; level < 300; level++) {
+            assertEquals(Math.pow(1.2, level), damage.evalTabulated(level), "level " + level);
+        }
+        assertEquals(1.0, damage.evalTabulated(-3));
+    }
+
+    @Test
+    void negativeResultsAreClampedToZero() {
+        ActionFormula formula = table.register("a", "cost", FormulaKind.BASE_COST);
+        formula.set("base - 100");
+        assertEquals(0.0, formula.eval(40));
+        formula.set("0 / 0");
+        assertEquals(0.0, formula.eval(40));
+    }
+
+    @Test
+    void registeringTwiceReturnsTheSameFormula() {
+        ActionFormula first = table.register("a", "cost", FormulaKind.BASE_COST);
+        assertSame(first, table.register("a", "cost", FormulaKind.BASE_COST));
+        assertThrows(IllegalStateException.class, () -> table.register("a", "cost", FormulaKind.STRENGTH_COST));
+    }
+
+    @Test
+    void applyReplacesValidFormulasAndResetsTheRest() {
+        ActionFormula cost = table.register("a", "cost", FormulaKind.BASE_COST);
+        ActionFormula damage = table.register("a", "damage", FormulaKind.STRENGTH_DAMAGE);
+        damage.set("1");
+
+        List<String> warnings = new ArrayList<>();
+        int applied = table.apply(Map.of(
+            "a", Map.of("cost", "base * 2", "missing", "1"),
+            "b", Map.of("cost", "1")
+        ), (where, problem) -> warnings.add(where));
+
+        assertEquals(1, applied);
+        assertEquals(2.0, cost.eval(1));
+        assertFalse(cost.isDefault());
+        assertTrue(damage.isDefault());
+        assertEquals(2, warnings.size());
+        assertTrue(warnings.contains("a/missing"));
+        assertTrue(warnings.contains("b"));
+    }
+
+    @Test
+    void invalidFormulaKeepsTheDefault() {
+        ActionFormula cost = table.register("a", "cost", FormulaKind.BASE_COST);
+        List<String> warnings = new ArrayList<>();
+
+        table.apply(Map.of("a", Map.of("cost", "base * strength")), (where, problem) -> warnings.add(where));
+
+        assertTrue(cost.isDefault());
+        assertEquals("base", cost.source());
+        assertEquals(List.of("a/cost"), warnings);
+    }
+}
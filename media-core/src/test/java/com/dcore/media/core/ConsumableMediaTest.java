@@ -0,0 +1,50 @@
+package com.dcore.media.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConsumableMediaTest {
+    private static final long DUST = 10_000L;
+
+    @Test
+    void itemsForRoundsUp() {
+        assertEquals(1, ConsumableMedia.itemsFor(DUST, 1, 64));
+        assertEquals(1, ConsumableMedia.itemsFor(DUST, DUST, 64));
+        assertEquals(2, ConsumableMedia.itemsFor(DUST, DUST + 1, 64));
+        assertEquals(3, ConsumableMedia.itemsFor(DUST, 3 * DUST, 64));
+        assertEquals(4, ConsumableMedia.itemsFor(DUST, 3 * DUST + 1, 64));
+        assertEquals(7, ConsumableMedia.itemsFor(3, 20, 64));
+    }
+
+    @Test
+    void itemsForIsCappedByStackSize() {
+        assertEquals(64, ConsumableMedia.itemsFor(DUST, 65 * DUST, 64));
+        assertEquals(64, ConsumableMedia.itemsFor(DUST, Long.MAX_VALUE, 64));
+        assertEquals(1, ConsumableMedia.itemsFor(1, Long.MAX_VALUE, 1));
+    }
+
+    @Test
+    void itemsForNothing() {
+        assertEquals(0, ConsumableMedia.itemsFor(DUST, 0, 64));
+        assertEquals(0, ConsumableMedia.itemsFor(DUST, -5, 64));
+        assertEquals(0, ConsumableMedia.itemsFor(DUST, DUST, 0));
+    }
+
+    @Test
+    void itemsForDoesNotLosePrecisionOnLargeValues() {
+        // double 无法精确表示这些量，cost = 2 * worth + 1 时 Math.ceil(cost / (double) worth) 会得到 2
+        long worth = (1L << 60) + 1;
+        assertEquals(2, ConsumableMedia.itemsFor(worth, 2 * worth, 64));
+        assertEquals(3, ConsumableMedia.itemsFor(worth, 2 * worth + 1, 64));
+    }
+
+    @Test
+    void mediaMultipliesAndSaturates() {
+        assertEquals(0, ConsumableMedia.media(DUST, 0));
+        assertEquals(0, ConsumableMedia.media(DUST, -1));
+        assertEquals(64 * DUST, ConsumableMedia.media(DUST, 64));
+        assertEquals(Long.MAX_VALUE, ConsumableMedia.media(Long.MAX_VALUE / 2, 3));
+        assertEquals(Long.MAX_VALUE - 1, ConsumableMedia.media(Long.MAX_VALUE / 2, 2));
+    }
+}
@@ -0,0 +1,83 @@
+package com.dcore.media.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CostVectorTest {
+    @Test
+    void anyOfGivesTheWholeCostToTheFirstType() {
+        CostVector vector = CostVector.anyOf(3, 0, 5);
+        long[] targets = { 9, 9, 9 };
+        vector.targets(1000, targets);
+        assertArrayEquals(new long[] { 1000, 0, 0 }, targets);
+        assertEquals(CostVector.Mode.ANY_OF, vector.mode());
+        assertEquals(3, vector.typeIndex(0));
+        assertEquals((1L << 3) | 1L | (1L << 5), vector.mask());
+    }
+
+    @Test
+    void splitRoundsDownAndGivesTheRemainderToTheFirstComponent() {
+        CostVector vector = CostVector.split(new int[] { 0, 1 }, new double[] { 1, 2 });
+        long[] targets = new long[2];
+        vector.targets(100, targets);
+        assertArrayEquals(new long[] { 34, 66 }, targets);
+
+        CostVector thirds = CostVector.split(new int[] { 0, 1, 2 }, new double[] { 1, 1, 1 });
+        long[] three = new long[3];
+        thirds.targets(10, three);
+        assertArrayEquals(new long[] { 4, 3, 3 }, three);
+    }
+
+    @Test
+    void splitTargetsAlwaysSumToCost() {
+        CostVector vector = CostVector.split(new int[] { 2, 0, 1 }, new double[] { 0.6, 0.3, 0.1 });
+        long[] targets = new long[3];
+        for (long cost : new long[] { 0, 1, 7, 99, 10_001, 123_456_789 }) {
+            vector.targets(cost, targets);
+            assertEquals(cost, targets[0] + targets[1] + targets[2]);
+        }
+    }
+
+    @Test
+    void splitWeightsDoNotNeedToBeNormalized() {
+        long[] a = new long[2];
+        long[] b = new long[2];
+        CostVector.split(new int[] { 0, 1 }, new double[] { 3, 1 }).targets(1000, a);
+        CostVector.split(new int[] { 0, 1 }, new double[] { 0.75, 0.25 }).targets(1000, b);
+        assertArrayEquals(new long[] { 750, 250 }, a);
+        assertArrayEquals(a, b);
+    }
+
+    @Test
+    void zeroWeightComponentGetsNothing() {
+        long[] targets = new long[2];
+        CostVector.split(new int[] { 0, 1 }, new double[] { 1, 0 }).targets(500, targets);
+        assertArrayEquals(new long[] { 500, 0 }, targets);
+    }
+
+    @Test
+    void factoryMethodsCopyTheirArguments() {
+        int[] types = { 0, 1 };
+        double[] weights = { 1, 1 };
+        CostVector vector = CostVector.split(types, weights);
+        types[0] = 7;
+        weights[0] = 100;
+        assertEquals(0, vector.typeIndex(0));
+        assertEquals(1.0, vector.weight(0));
+    }
+
+    @Test
+    void rejectsInvalidVectors() {
+        assertThrows(IllegalArgumentException.class, CostVector::anyOf);
+        assertThrows(IllegalArgumentException.class, () -> CostVector.anyOf(1, 1));
+        assertThrows(IllegalArgumentException.class, () -> CostVector.anyOf(64));
+        assertThrows(IllegalArgumentException.class, () -> CostVector.anyOf(-1));
+        assertThrows(IllegalArgumentException.class, () -> CostVector.split(new int[] { 0, 1 }, new double[] { 1 }));
+        assertThrows(IllegalArgumentException.class, () -> CostVector.split(new int[] { 0, 1 }, new double[] { 1, -1 }));
+        assertThrows(IllegalArgumentException.class, () -> CostVector.split(new int[] { 0 }, new double[] { Double.NaN }));
+        assertThrows(IllegalArgumentException.class, () -> CostVector.split(new int[] { 0, 1 }, new double[] { 0, 0 }));
+    }
+}
@@ -0,0 +1,136 @@
+package com.dcore.media.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FormulaCompilerTest {
+    private static double eval(String source) {
+        return FormulaCompiler.compile(source).eval(0, 0, 0);
+    }
+
+    private static double eval(String source, double x, double y, double z) {
+        return FormulaCompiler.compile(source, "x", "y", "z").eval(x, y, z);
+    }
+
+    private static int errorPosition(String source) {
+        return assertThrows(FormulaException.class, () -> FormulaCompiler.compile(source, "x")).position();
+    }
+
+    @Test
+    void multiplicationBindsTighterThanAddition() {
+        assertEquals(7.0, eval("1 + 2 * 3"));
+        assertEquals(9.0, eval("(1 + 2) * 3"));
+        assertEquals(1.0, eval("7 % 4 - 2"));
+        assertEquals(2.0, eval("8 / 2 / 2"));
+        assertEquals(-4.0, eval("2 - 3 - 3"));
+    }
+
+    @Test
+    void powerIsRightAssociativeAndBindsTighterThanNegation() {
+        assertEquals(512.0, eval("2 ^ 3 ^ 2"));
+        assertEquals(18.0, eval("2 * 3 ^ 2"));
+        assertEquals(-4.0, eval("-2 ^ 2"));
+        assertEquals(0.25, eval("2 ^ -2"));
+        assertEquals(512.0, eval("x ^ y ^ z", 2, 3, 2));
+    }
+
+    @Test
+    void squareOfVariableMatchesPow() {
+        for (double x : new double[] { -3.5, 0, 1.2, 1e6 }) {
+            assertEquals(Math.pow(x, 2), eval("x ^ 2", x, 0, 0));
+            assertEquals(Math.pow(x, 2), eval("pow(x, 2)", x, 0, 0));
+        }
+    }
+
+    @Test
+    void comparisonsHaveTheLowestPrecedence() {
+        assertEquals(1.0, eval("1 + 1 == 2"));
+        assertEquals(0.0, eval("1 + 1 != 2"));
+        assertEquals(1.0, eval("2 * 3 > 5"));
+        assertEquals(1.0, eval("x <= y", 2, 2, 0));
+        assertEquals(0.0, eval("x < y", 2, 2, 0));
+    }
+
+    @Test
+    void variablesMapToArgumentsInOrder() {
+        assertEquals(123.0, eval("x * 100 + y * 10 + z", 1, 2, 3));
+        assertEquals(1.0, eval("-x + y", 1, 2, 0));
+    }
+
+    @Test
+    void functions() {
+        assertEquals(2.0, eval("min(x, y)", 2, 5, 0));
+        assertEquals(5.0, eval("max(x, y)", 2, 5, 0));
+        assertEquals(3.0, eval("abs(x)", -3, 0, 0));
+        assertEquals(4.0, eval("sqrt(x)", 16, 0, 0));
+        assertEquals(-2.0, eval("floor(x)", -1.5, 0, 0));
+        assertEquals(-1.0, eval("ceil(x)", -1.5, 0, 0));
+        assertEquals(3.0, eval("round(x)", 2.5, 0, 0));
+        assertEquals(1.0, eval("exp(log(x))", 1, 0, 0));
+        assertEquals(6.0, eval("MAX(x, 6)", 1, 0, 0));
+    }
+
+    @Test
+    void clampLimitsToRange() {
+        assertEquals(0.0, eval("clamp(x, 0, 10)", -5, 0, 0));
+        assertEquals(5.0, eval("clamp(x, 0, 10)", 5, 0, 0));
+        assertEquals(10.0, eval("clamp(x, 0, 10)", 15, 0, 0));
+        assertEquals(10.0, eval("clamp(15, 0, 10)"));
+    }
+
+    @Test
+    void ifSelectsBranchByNonZeroCondition() {
+        assertEquals(6.0, eval("if(x > 0, x * 2, -1)", 3, 0, 0));
+        assertEquals(-1.0, eval("if(x > 0, x * 2, -1)", -3, 0, 0));
+        assertEquals(7.0, eval("if(x, 7, 8)", 0.5, 0, 0));
+    }
+
+    @Test
+    void constantSubexpressionsAreFolded() {
+        // 全部为常量时结果与变量无关
+        Formula folded = FormulaCompiler.compile("if(1 < 2, 3 * 4, 1 / 0) + clamp(2 ^ 10, 0, 100)", "x");
+        assertEquals(112.0, folded.eval(0, 0, 0));
+        assertEquals(112.0, folded.eval(-1e9, 7, 7));
+
+        // 条件为常量时直接使用选中的分支，不再生成条件节点
+        Formula variable = FormulaCompiler.compile("x", "x");
+        assertSame(variable, FormulaCompiler.compile("if(2 > 1, x, 0)", "x"));
+        assertSame(variable, FormulaCompiler.compile("if(0, 1, x)", "x"));
+    }
+
+    @Test
+    void numbers() {
+        assertEquals(0.5, eval(".5"));
+        assertEquals(1500.0, eval("1.5e3"));
+        assertEquals(0.015, eval("1.5E-2"));
+    }
+
+    @Test
+    void errorsReportTheirPosition() {
+        assertEquals(4, errorPosition("1 + * 2"));
+        assertEquals(4, errorPosition("x + foo"));
+        assertEquals(4, errorPosition("x + bar(2)"));
+        assertEquals(0, errorPosition("min(x)"));
+        assertEquals(6, errorPosition("(x + 1"));
+        assertEquals(2, errorPosition("x $"));
+        assertEquals(0, errorPosition("1.2.3"));
+        assertEquals(3, errorPosition("x *"));
+    }
+
+    @Test
+    void errorMessageIncludesPositionAndSource() {
+        FormulaException e = assertThrows(FormulaException.class, () -> FormulaCompiler.compile("x + y", "x"));
+        assertTrue(e.getMessage().contains("y"), e.getMessage());
+        assertTrue(e.getMessage().contains("4"), e.getMessage());
+        assertTrue(e.getMessage().endsWith("x + y"), e.getMessage());
+    }
+
+    @Test
+    void atMostThreeVariables() {
+        assertThrows(IllegalArgumentException.class, () -> FormulaCompiler.compile("a", "a", "b", "c", "d"));
+    }
+}
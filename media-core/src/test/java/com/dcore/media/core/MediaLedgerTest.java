@@ -0,0 +1,106 @@
+package com.dcore.media.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MediaLedgerTest {
+    private final MediaLedger ledger = new MediaLedger();
+
+    @Test
+    void mishapAfterAFinishedPatternKeepsItsSpend() {
+        CachedMedia battery = new CachedMedia(1000);
+        TestSources.Source amethyst = TestSources.Source.of(TestSources.STANDARD, 400, 500);
+        ledger.add(battery);
+
+        // 图案 A：从缓存的容器和可恢复的媒体源各提取一部分，正常结束
+        ledger.save(amethyst);
+        battery.setMedia(600);
+        amethyst.withdraw(200);
+        ledger.commit();
+
+        // 不是图案的 iota 失败：没有经过 precheck，也没有提取任何媒体
+        ledger.rollback();
+        ledger.commit();
+
+        assertEquals(600, battery.media());
+        assertEquals(600, battery.checkpoint());
+        assertEquals(300, amethyst.media());
+    }
+
+    @Test
+    void spendAfterTheStepEndsIsKeptOnceTheNextStepBegins() {
+        CachedMedia battery = new CachedMedia(1000);
+        ledger.add(battery);
+
+        // 图案 A 结束之后，它的副作用才真正提取媒体
+        ledger.commit();
+        battery.setMedia(600);
+
+        // 下一个 iota 开始时提交，随后失败
+        ledger.commit();
+        ledger.rollback();
+        ledger.commit();
+
+        assertEquals(600, battery.media());
+    }
+
+    @Test
+    void rollbackRestoresOnlyTheFailedStep() {
+        CachedMedia battery = new CachedMedia(1000);
+        TestSources.Source amethyst = TestSources.Source.of(TestSources.STANDARD, 400, 500);
+        ledger.add(battery);
+
+        battery.setMedia(800);
+        ledger.commit();
+
+        ledger.save(amethyst);
+        battery.setMedia(100);
+        amethyst.withdraw(500);
+        ledger.rollback();
+        ledger.commit();
+
+        assertEquals(800, battery.media());
+        assertEquals(500, amethyst.media());
+    }
+
+    @Test
+    void sourceIsSavedOnlyOncePerStep() {
+        TestSources.Source amethyst = TestSources.Source.of(TestSources.STANDARD, 400, 500);
+
+        ledger.save(amethyst);
+        amethyst.withdraw(100);
+        // 同一步中第二次保存不能覆盖提取之前的状态
+        ledger.save(amethyst);
+        amethyst.withdraw(100);
+        ledger.rollback();
+
+        assertEquals(500, amethyst.media());
+    }
+
+    @Test
+    void commitDiscardsSavedSources() {
+        TestSources.Source amethyst = TestSources.Source.of(TestSources.STANDARD, 400, 500);
+
+        ledger.save(amethyst);
+        amethyst.withdraw(100);
+        ledger.commit();
+        ledger.rollback();
+
+        assertEquals(400, amethyst.media());
+        assertTrue(ledger.isEmpty());
+    }
+
+    @Test
+    void restoringAnUnchangedEntryKeepsItClean() {
+        CachedMedia battery = new CachedMedia(1000);
+        ledger.add(battery);
+
+        ledger.rollback();
+
+        assertFalse(battery.isDirty());
+        assertEquals(1000, battery.media());
+    }
+}
@@ -0,0 +1,133 @@
+package com.dcore.media.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 分配率回归测试：预热之后，反复使用同一组分桶和同一个分配对象时，生成和应用分配都不分配对象；
+ * 加上索引重建分桶（PriorityBuckets）、提取之前保存媒体源状态和提交、恢复（MediaLedger）的完整提取循环也不分配对象
+ * 用 ThreadMXBean 统计当前线程分配的字节数，不依赖 JMH 的 gc 分析器，构建时就能发现回归
+ * 游戏侧的包装对象（TypedCCMediaHolder 等）依赖 Minecraft，不在这里覆盖
+ */
+class MediaPlannerAllocationTest {
+    private static final double[] HEALTH_RATES = { 10000.0, 100.0 };
+    private static final long[] COSTS = { 20_000L, 150_000L, 2_000_000L, 50_000_000L };
+
+    private static final int WARMUP_CYCLES = 20_000;
+    private static final int MEASURED_CYCLES = 10_000;
+
+    private final TestSources.Buckets buckets = inventory();
+    private final TestSources.Caster caster = new TestSources.Caster(20.0f);
+    private final MediaAllocation allocation = new MediaAllocation();
+    private final CostVector[] vectors = {
+        CostVector.anyOf(TestSources.STANDARD),
+        CostVector.anyOf(TestSources.SPECIAL),
+        CostVector.anyOf(TestSources.SPECIAL, TestSources.STANDARD),
+        CostVector.split(new int[] { TestSources.SPECIAL, TestSources.STANDARD }, new double[] { 0.6, 0.4 })
+    };
+    // 累加结果，避免循环体被当作无用代码
+    private long sink;
+
+    private final TestSources.Source[] indexed = buckets.all;
+    private final PriorityBuckets priorityBuckets = new PriorityBuckets(TestSources.Source[]::new);
+    private final MediaLedger ledger = new MediaLedger();
+    private final CachedMedia battery = new CachedMedia(1_000_000L);
+
+    @Test
+    void planAndApplyDoNotAllocateInSteadyState() {
+        assertNoAllocation(this::run, "生成和应用分配");
+    }
+
+    @Test
+    void extractionLoopDoesNotAllocateInSteadyState() {
+        ledger.add(battery);
+        assertNoAllocation(this::extract, "重建分桶、保存、应用和提交");
+    }
+
+    private void assertNoAllocation(IntConsumer loop, String what) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "JVM 不支持统计线程分配的内存");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        // 预热：分配对象的数组扩容到最大需要的大小，JIT 完成编译
+        loop.accept(WARMUP_CYCLES);
+
+        // 两次连续读取之间的差值是统计本身的开销
+        long before = threads.getThreadAllocatedBytes(thread);
+        long overhead = threads.getThreadAllocatedBytes(thread) - before;
+
+        before = threads.getThreadAllocatedBytes(thread);
+        loop.accept(MEASURED_CYCLES);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before - overhead;
+
+        assertEquals(0L, allocated, "稳定状态下 " + MEASURED_CYCLES + " 次" + what + "共分配了 " + allocated + " 字节");
+    }
+
+    /**
+     * 轮流使用各种成本向量和成本：媒体足够、部分由生命值支付、超过最大生命值需要取消；
+     * 每隔几次在生成和应用之间取空一个媒体源，覆盖差额并入血量扣除的路径
+     */
+    private void run(int cycles) {
+        for (int i = 0; i < cycles; i++) {
+            CostVector vector = vectors[i % vectors.length];
+            long cost = COSTS[(i / vectors.length) % COSTS.length];
+            MediaPlanner.plan(allocation, vector, cost, buckets, HEALTH_RATES, caster);
+            if (i % 16 == 5 && allocation.entryCount() > 0) {
+                ((TestSources.Source) allocation.source(0)).setMedia(0);
+            }
+            sink += MediaPlanner.apply(allocation, caster) + allocation.extracted();
+            if (i % 8 == 7) {
+                buckets.refillAll();
+                caster.heal();
+            }
+        }
+    }
+
+    /**
+     * 与施法中的提取相同的顺序：背包变化后重建分桶，提取之前保存分配中的媒体源，每一步结束时提交；
+     * 每隔几步模拟一次失败，恢复本步的提取和缓存容器的修改
+     */
+    private void extract(int cycles) {
+        for (int i = 0; i < cycles; i++) {
+            if (i % 32 == 0) {
+                priorityBuckets.rebuild(indexed, indexed.length, 2);
+            }
+            CostVector vector = vectors[i % vectors.length];
+            long cost = COSTS[(i / vectors.length) % COSTS.length];
+            MediaPlanner.plan(allocation, vector, cost, priorityBuckets, HEALTH_RATES, caster);
+            ledger.save(allocation);
+            sink += MediaPlanner.apply(allocation, caster) + allocation.extracted();
+            battery.setMedia(battery.media() - 1);
+            if (i % 16 == 9) {
+                ledger.rollback();
+            }
+            ledger.commit();
+            if (i % 8 == 7) {
+                buckets.refillAll();
+                caster.heal();
+                battery.setMedia(1_000_000L);
+            }
+        }
+    }
+
+    /**
+     * 41 个槽位的背包：普通和特殊媒体各半，少量两者都能提供，优先级取 HexMod 的几个常量
+     */
+    private static TestSources.Buckets inventory() {
+        int[] priorities = { 1000, 900, 800, 600, 400 };
+        TestSources.Source[] sources = new TestSources.Source[41];
+        for (int i = 0; i < sources.length; i++) {
+            long mask = i % 10 == 0
+                ? (1L << TestSources.STANDARD) | (1L << TestSources.SPECIAL)
+                : 1L << (i % 2 == 0 ? TestSources.STANDARD : TestSources.SPECIAL);
+            sources[i] = new TestSources.Source(mask, priorities[i % priorities.length], (1 + i % 7) * 10_000L);
+        }
+        return new TestSources.Buckets(sources);
+    }
+}
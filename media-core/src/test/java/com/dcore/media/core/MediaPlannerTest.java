@@ -0,0 +1,236 @@
+package com.dcore.media.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MediaPlannerTest {
+    // STANDARD: 10000 媒体 = 1 血量，SPECIAL: 100 媒体 = 1 血量
+    private static final double[] HEALTH_RATES = { 10000.0, 100.0 };
+
+    private static final CostVector STANDARD = CostVector.anyOf(TestSources.STANDARD);
+    private static final CostVector SPECIAL = CostVector.anyOf(TestSources.SPECIAL);
+
+    private final MediaAllocation allocation = new MediaAllocation();
+    private final TestSources.Caster caster = new TestSources.Caster(20.0f);
+
+    @Test
+    void enoughMediaIsTakenByPriorityWithoutTouchingHealth() {
+        TestSources.Source low = TestSources.Source.of(TestSources.STANDARD, 400, 50_000);
+        TestSources.Source high = TestSources.Source.of(TestSources.STANDARD, 1000, 30_000);
+        TestSources.Buckets buckets = new TestSources.Buckets(low, high);
+
+        MediaPlanner.plan(allocation, STANDARD, 40_000, buckets, HEALTH_RATES, caster);
+
+        assertEquals(40_000, allocation.extracted());
+        assertEquals(0, allocation.healthRemainder());
+        assertEquals(0.0, allocation.healthCost());
+        assertFalse(allocation.cancel());
+        assertEquals(2, allocation.entryCount());
+        assertSame(high, allocation.source(0));
+        assertEquals(30_000, allocation.expected(0));
+        assertSame(low, allocation.source(1));
+        assertEquals(10_000, allocation.expected(1));
+
+        // 生成分配不修改媒体源
+        assertEquals(30_000, high.media());
+        assertEquals(50_000, low.media());
+
+        assertEquals(0, MediaPlanner.apply(allocation, caster));
+        assertEquals(0, high.media());
+        assertEquals(40_000, low.media());
+        assertEquals(20.0f, caster.getHealth());
+    }
+
+    @Test
+    void missingMediaIsPaidWithHealthAtTheTypeRate() {
+        TestSources.Buckets buckets = new TestSources.Buckets(TestSources.Source.of(TestSources.SPECIAL, 1000, 300));
+
+        MediaPlanner.plan(allocation, SPECIAL, 1_000, buckets, HEALTH_RATES, caster);
+
+        assertEquals(300, allocation.extracted());
+        assertEquals(700, allocation.healthRemainder());
+        assertEquals(100.0, allocation.healthRate());
+        assertEquals(7.0, allocation.healthCost(), 1e-9);
+        assertFalse(allocation.cancel());
+    }
+
+    @Test
+    void anyOfCarriesTheShortfallToTheNextType() {
+        TestSources.Source special = TestSources.Source.of(TestSources.SPECIAL, 1000, 3_000);
+        TestSources.Source standard = TestSources.Source.of(TestSources.STANDARD, 1000, 100_000);
+        TestSources.Buckets buckets = new TestSources.Buckets(special, standard);
+
+        MediaPlanner.plan(allocation, CostVector.anyOf(TestSources.SPECIAL, TestSources.STANDARD), 10_000,
+            buckets, HEALTH_RATES, caster);
+
+        assertEquals(10_000, allocation.extracted());
+        assertEquals(0, allocation.healthRemainder());
+        assertSame(special, allocation.source(0));
+        assertEquals(3_000, allocation.expected(0));
+        assertSame(standard, allocation.source(1));
+        assertEquals(7_000, allocation.expected(1));
+    }
+
+    @Test
+    void anyOfFinalShortfallUsesThePrimaryTypeRate() {
+        TestSources.Buckets buckets = new TestSources.Buckets(TestSources.Source.of(TestSources.STANDARD, 1000, 4_000));
+
+        MediaPlanner.plan(allocation, CostVector.anyOf(TestSources.SPECIAL, TestSources.STANDARD), 5_000,
+            buckets, HEALTH_RATES, caster);
+
+        assertEquals(4_000, allocation.extracted());
+        assertEquals(1_000, allocation.healthRemainder());
+        assertEquals(100.0, allocation.healthRate());
+        assertEquals(10.0, allocation.healthCost(), 1e-9);
+    }
+
+    @Test
+    void splitPaysEachComponentOnlyFromItsOwnType() {
+        TestSources.Source special = TestSources.Source.of(TestSources.SPECIAL, 1000, 100);
+        TestSources.Source standard = TestSources.Source.of(TestSources.STANDARD, 1000, 1_000_000);
+        TestSources.Buckets buckets = new TestSources.Buckets(special, standard);
+        CostVector split = CostVector.split(new int[] { TestSources.SPECIAL, TestSources.STANDARD }, new double[] { 1, 1 });
+
+        MediaPlanner.plan(allocation, split, 1_000, buckets, HEALTH_RATES, caster);
+
+        // SPECIAL 的 500 只能提供 100，剩下的 400 不由 STANDARD 补足
+        assertEquals(600, allocation.extracted());
+        assertEquals(400, allocation.healthRemainder());
+        assertEquals(4.0, allocation.healthCost(), 1e-9);
+        assertEquals(100.0, allocation.healthRate(), 1e-9);
+    }
+
+    @Test
+    void splitShortfallsCombineIntoOneEquivalentRate() {
+        CostVector split = CostVector.split(new int[] { TestSources.SPECIAL, TestSources.STANDARD }, new double[] { 1, 1 });
+
+        MediaPlanner.plan(allocation, split, 20_000, new TestSources.Buckets(), HEALTH_RATES, caster);
+
+        // 10000 SPECIAL = 100 血量，10000 STANDARD = 1 血量
+        assertEquals(0, allocation.extracted());
+        assertEquals(20_000, allocation.healthRemainder());
+        assertEquals(101.0, allocation.healthCost(), 1e-9);
+        assertEquals(20_000 / 101.0, allocation.healthRate(), 1e-9);
+        assertTrue(allocation.cancel());
+    }
+
+    @Test
+    void sourceProvidingSeveralTypesIsMergedIntoOneEntry() {
+        TestSources.Source both = new TestSources.Source((1L << TestSources.STANDARD) | (1L << TestSources.SPECIAL), 1000, 1_000);
+        TestSources.Buckets buckets = new TestSources.Buckets(both);
+        CostVector split = CostVector.split(new int[] { TestSources.SPECIAL, TestSources.STANDARD }, new double[] { 1, 1 });
+
+        MediaPlanner.plan(allocation, split, 1_600, buckets, HEALTH_RATES, caster);
+
+        // 第二个分量模拟时要算上第一个分量已经分配的 800
+        assertEquals(1, allocation.entryCount());
+        assertEquals(1_600, allocation.requested(0));
+        assertEquals(1_000, allocation.expected(0));
+        assertEquals(1_000, allocation.extracted());
+        assertEquals(600, allocation.healthRemainder());
+    }
+
+    @Test
+    void healthCostAboveMaxHealthCancels() {
+        MediaPlanner.plan(allocation, SPECIAL, 2_001, new TestSources.Buckets(), HEALTH_RATES, caster);
+        assertTrue(allocation.cancel());
+
+        MediaPlanner.plan(allocation, SPECIAL, 2_000, new TestSources.Buckets(), HEALTH_RATES, caster);
+        assertFalse(allocation.cancel());
+    }
+
+    @Test
+    void withoutCasterAnyShortfallCancels() {
+        TestSources.Buckets buckets = new TestSources.Buckets(TestSources.Source.of(TestSources.STANDARD, 1000, 10_000));
+
+        MediaPlanner.plan(allocation, STANDARD, 10_001, buckets, HEALTH_RATES, null);
+        assertTrue(allocation.cancel());
+
+        MediaPlanner.plan(allocation, STANDARD, 10_000, buckets, HEALTH_RATES, null);
+        assertFalse(allocation.cancel());
+    }
+
+    @Test
+    void withoutSourcesEverythingIsPaidWithHealth() {
+        MediaPlanner.plan(allocation, STANDARD, 30_000, null, HEALTH_RATES, caster);
+
+        assertEquals(0, allocation.entryCount());
+        assertEquals(0, allocation.extracted());
+        assertEquals(30_000, allocation.healthRemainder());
+        assertEquals(3.0, allocation.healthCost(), 1e-9);
+    }
+
+    @Test
+    void typesWithoutConfiguredRateUseTheDefault() {
+        MediaPlanner.plan(allocation, CostVector.anyOf(5), 20_000, new TestSources.Buckets(), HEALTH_RATES, caster);
+
+        assertEquals(HealthConversion.DEFAULT_HEALTH_RATE, allocation.healthRate());
+        assertEquals(2.0, allocation.healthCost(), 1e-9);
+    }
+
+    @Test
+    void applyAddsTheShortfallToHealth() {
+        TestSources.Source first = TestSources.Source.of(TestSources.SPECIAL, 1000, 500);
+        TestSources.Source second = TestSources.Source.of(TestSources.SPECIAL, 900, 500);
+        TestSources.Buckets buckets = new TestSources.Buckets(first, second);
+
+        MediaPlanner.plan(allocation, SPECIAL, 1_000, buckets, HEALTH_RATES, caster);
+        assertEquals(0, allocation.healthRemainder());
+
+        // 生成和应用之间媒体源被别处消耗了一部分
+        first.setMedia(200);
+        long shortfall = MediaPlanner.apply(allocation, caster);
+
+        assertEquals(300, shortfall);
+        assertEquals(700, allocation.extracted());
+        assertEquals(300, allocation.healthRemainder());
+        assertEquals(3.0, allocation.healthCost(), 1e-9);
+        assertFalse(allocation.cancel());
+        assertEquals(0, first.media());
+        assertEquals(0, second.media());
+    }
+
+    @Test
+    void applyCancelsWhenTheShortfallExceedsMaxHealth() {
+        TestSources.Source source = TestSources.Source.of(TestSources.SPECIAL, 1000, 5_000);
+        TestSources.Buckets buckets = new TestSources.Buckets(source);
+
+        MediaPlanner.plan(allocation, SPECIAL, 5_000, buckets, HEALTH_RATES, caster);
+        assertFalse(allocation.cancel());
+
+        source.setMedia(0);
+        assertEquals(5_000, MediaPlanner.apply(allocation, caster));
+        assertTrue(allocation.cancel());
+        assertEquals(50.0, allocation.healthCost(), 1e-9);
+    }
+
+    @Test
+    void applyWithoutCasterCancelsOnAnyShortfall() {
+        TestSources.Source source = TestSources.Source.of(TestSources.STANDARD, 1000, 5_000);
+        TestSources.Buckets buckets = new TestSources.Buckets(source);
+
+        MediaPlanner.plan(allocation, STANDARD, 5_000, buckets, HEALTH_RATES, null);
+        assertFalse(allocation.cancel());
+
+        source.setMedia(4_999);
+        assertEquals(1, MediaPlanner.apply(allocation, null));
+        assertTrue(allocation.cancel());
+    }
+
+    @Test
+    void clearReleasesSourcesAndResetsTotals() {
+        TestSources.Buckets buckets = new TestSources.Buckets(TestSources.Source.of(TestSources.STANDARD, 1000, 1));
+        MediaPlanner.plan(allocation, STANDARD, 1_000_000_000, buckets, HEALTH_RATES, caster);
+        assertTrue(allocation.cancel());
+
+        allocation.clear();
+        assertEquals(0, allocation.entryCount());
+        assertEquals(0, allocation.extracted());
+        assertEquals(0, allocation.healthRemainder());
+        assertFalse(allocation.cancel());
+    }
+}
@@ -0,0 +1,95 @@
+package com.dcore.media.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriorityBucketsTest {
+    private final PriorityBuckets buckets = new PriorityBuckets(TestSources.Source[]::new);
+
+    @Test
+    void bucketsAreSortedByPriorityAndKeepInputOrderOnTies() {
+        TestSources.Source first = TestSources.Source.of(TestSources.STANDARD, 400, 1);
+        TestSources.Source battery = TestSources.Source.of(TestSources.STANDARD, 1000, 1);
+        TestSources.Source second = TestSources.Source.of(TestSources.STANDARD, 400, 1);
+        TestSources.Source special = TestSources.Source.of(TestSources.SPECIAL, 600, 1);
+        MediaSource[] sources = { first, battery, second, special };
+
+        buckets.rebuild(sources, sources.length, 2);
+
+        assertArrayEquals(new MediaSource[] { battery, first, second }, buckets.sources(TestSources.STANDARD));
+        assertArrayEquals(new MediaSource[] { special }, buckets.sources(TestSources.SPECIAL));
+    }
+
+    @Test
+    void sourceProvidingSeveralTypesAppearsInEachBucket() {
+        TestSources.Source both = new TestSources.Source((1L << TestSources.STANDARD) | (1L << TestSources.SPECIAL), 500, 1);
+        MediaSource[] sources = { both };
+
+        buckets.rebuild(sources, 1, 2);
+
+        assertArrayEquals(sources, buckets.sources(TestSources.STANDARD));
+        assertArrayEquals(sources, buckets.sources(TestSources.SPECIAL));
+    }
+
+    @Test
+    void onlyTheFirstCountSourcesAreUsed() {
+        TestSources.Source kept = TestSources.Source.of(TestSources.STANDARD, 400, 1);
+        MediaSource[] sources = { kept, TestSources.Source.of(TestSources.STANDARD, 1000, 1), null };
+
+        buckets.rebuild(sources, 1, 2);
+
+        assertArrayEquals(new MediaSource[] { kept }, buckets.sources(TestSources.STANDARD));
+    }
+
+    @Test
+    void missingAndUnknownTypesAreEmptyArraysOfTheRequestedType() {
+        buckets.rebuild(new MediaSource[0], 0, 2);
+
+        assertEquals(0, buckets.sources(TestSources.SPECIAL).length);
+        assertEquals(0, buckets.sources(40).length);
+        assertTrue(buckets.sources(40) instanceof TestSources.Source[]);
+    }
+
+    @Test
+    void unchangedBucketSizeReusesTheArray() {
+        TestSources.Source a = TestSources.Source.of(TestSources.STANDARD, 400, 1);
+        TestSources.Source b = TestSources.Source.of(TestSources.STANDARD, 1000, 1);
+        MediaSource[] sources = { a, b };
+
+        buckets.rebuild(sources, 2, 2);
+        MediaSource[] bucket = buckets.sources(TestSources.STANDARD);
+        assertTrue(bucket instanceof TestSources.Source[]);
+
+        sources[0] = b;
+        sources[1] = a;
+        buckets.rebuild(sources, 2, 2);
+        assertSame(bucket, buckets.sources(TestSources.STANDARD));
+        assertArrayEquals(new MediaSource[] { b, a }, bucket);
+    }
+
+    @Test
+    void matchesAStableComparatorSort() {
+        Random random = new Random(7);
+        int[] priorities = { 0, 400, 600, 1000, -5 };
+        for (int round = 0; round < 50; round++) {
+            int count = random.nextInt(40);
+            TestSources.Source[] sources = new TestSources.Source[count];
+            for (int i = 0; i < count; i++) {
+                long mask = random.nextInt(3) + 1L;
+                sources[i] = new TestSources.Source(mask, priorities[random.nextInt(priorities.length)], 1);
+            }
+
+            buckets.rebuild(sources, count, 2);
+            TestSources.Buckets expected = new TestSources.Buckets(sources);
+            for (int type = 0; type < 2; type++) {
+                assertArrayEquals(expected.sources(type), buckets.sources(type), "round " + round + " type " + type);
+            }
+        }
+    }
+}
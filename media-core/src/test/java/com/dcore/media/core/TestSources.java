@@ -0,0 +1,148 @@
+package com.dcore.media.core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 测试使用的内存媒体源、分桶和施法者
+ */
+final class TestSources {
+    static final int STANDARD = 0;
+    static final int SPECIAL = 1;
+
+    private TestSources() {
+    }
+
+    static final class Source implements MediaSource, RestorableSource {
+        private final long typeMask;
+        private final int priority;
+        private final long capacity;
+        private long media;
+
+        Source(long typeMask, int priority, long media) {
+            this.typeMask = typeMask;
+            this.priority = priority;
+            this.capacity = media;
+            this.media = media;
+        }
+
+        static Source of(int type, int priority, long media) {
+            return new Source(1L << type, priority, media);
+        }
+
+        long media() {
+            return media;
+        }
+
+        void setMedia(long media) {
+            this.media = media;
+        }
+
+        void refill() {
+            media = capacity;
+        }
+
+        @Override
+        public long typeMask() {
+            return typeMask;
+        }
+
+        @Override
+        public int priority() {
+            return priority;
+        }
+
+        @Override
+        public long simulateWithdraw(long amount) {
+            return Math.min(amount, media);
+        }
+
+        @Override
+        public long withdraw(long amount) {
+            long taken = Math.min(amount, media);
+            media -= taken;
+            return taken;
+        }
+
+        @Override
+        public int countState() {
+            return 1;
+        }
+
+        @Override
+        public long mediaState() {
+            return media;
+        }
+
+        @Override
+        public void restoreState(int count, long media) {
+            this.media = media;
+        }
+    }
+
+    /**
+     * 按类型分桶，每个桶按优先级从高到低稳定排序（与 MediaSourceBuckets 的约定相同）
+     */
+    static final class Buckets implements MediaSourceBuckets {
+        private static final MediaSource[] EMPTY = new MediaSource[0];
+
+        final Source[] all;
+        private final MediaSource[][] byType;
+
+        Buckets(Source... all) {
+            this.all = all;
+            this.byType = new MediaSource[2][];
+            for (int type = 0; type < byType.length; type++) {
+                List<Source> bucket = new ArrayList<>();
+                for (Source source : all) {
+                    if ((source.typeMask() & (1L << type)) != 0) {
+                        bucket.add(source);
+                    }
+                }
+                bucket.sort(Comparator.comparingInt(Source::priority).reversed());
+                byType[type] = bucket.toArray(EMPTY);
+            }
+        }
+
+        @Override
+        public MediaSource[] sources(int typeIndex) {
+            return typeIndex < byType.length ? byType[typeIndex] : EMPTY;
+        }
+
+        void refillAll() {
+            for (Source source : all) {
+                source.refill();
+            }
+        }
+    }
+
+    static final class Caster implements MediaCaster {
+        private final float maxHealth;
+        private float health;
+
+        Caster(float maxHealth) {
+            this.maxHealth = maxHealth;
+            this.health = maxHealth;
+        }
+
+        void heal() {
+            health = maxHealth;
+        }
+
+        @Override
+        public float getHealth() {
+            return health;
+        }
+
+        @Override
+        public float getMaxHealth() {
+            return maxHealth;
+        }
+
+        @Override
+        public void setHealth(float health) {
+            this.health = health;
+        }
+    }
+}
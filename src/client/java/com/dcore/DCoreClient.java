@@ -1,10 +1,15 @@
 package com.dcore;
 
+import com.dcore.network.MediaRegistrySyncClient;
+import com.dcore.network.ParticleBurstBatchClient;
 import net.fabricmc.api.ClientModInitializer;
 
 public class DCoreClient implements ClientModInitializer {
 	@Override
 	public void onInitializeClient() {
+		ParticleBurstBatchClient.register();
+		MediaRegistrySyncClient.register();
+		
 		DCore.LOGGER.info("D-Core 客户端初始化完成！");
 	}
 }
@@ -0,0 +1,43 @@
+package com.dcore.network;
+
+import com.dcore.media.MediaRegistrySnapshot;
+import com.dcore.media.MediaType;
+import com.dcore.media.MediaTypeRegistry;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 客户端接收媒体注册表同步包，应用为注册表的服务器同步层
+ * 网络线程上只解码，类型的注册和同步层的替换都在客户端主线程上进行
+ * 单人游戏的集成服务器与客户端共用同一个注册表，不需要应用；断开连接时恢复本地内容并释放服务器的类型
+ */
+public final class MediaRegistrySyncClient {
+    // 服务器同步的内容，只在客户端主线程上访问
+    @Nullable
+    private static MediaRegistrySnapshot.Builder synced;
+    
+    private MediaRegistrySyncClient() {
+    }
+    
+    public static void register() {
+        ClientPlayNetworking.registerGlobalReceiver(MediaRegistrySync.ID, (client, handler, buf, responseSender) -> {
+            if (client.hasSingleplayerServer()) {
+                return;
+            }
+            MediaRegistrySync.Update update = MediaRegistrySync.read(buf);
+            client.execute(() -> {
+                synced = update.applyTo(synced);
+                MediaTypeRegistry.applyRemote(synced);
+            });
+        });
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> client.execute(() -> {
+            if (synced != null) {
+                synced = null;
+                // 先撤下引用远程类型的同步层，再释放类型
+                MediaTypeRegistry.applyRemote(null);
+            }
+            MediaType.releaseRemote();
+        }));
+    }
+}
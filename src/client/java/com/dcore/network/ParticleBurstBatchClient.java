@@ -0,0 +1,23 @@
+package com.dcore.network;
+
+import at.petrak.hexcasting.common.msgs.MsgCastParticleS2C;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+
+/**
+ * 客户端接收合并的粒子爆发包，逐个交给 HexMod 的施法粒子处理绘制
+ */
+public final class ParticleBurstBatchClient {
+    private ParticleBurstBatchClient() {
+    }
+    
+    public static void register() {
+        ClientPlayNetworking.registerGlobalReceiver(ParticleBurstBatch.ID, (client, handler, buf, responseSender) -> {
+            ParticleBurstBatch batch = ParticleBurstBatch.read(buf);
+            client.execute(() -> {
+                for (int i = 0; i < batch.size(); i++) {
+                    MsgCastParticleS2C.handle(new MsgCastParticleS2C(batch.spray(i), batch.pigment()));
+                }
+            });
+        });
+    }
+}
@@ -1,16 +1,22 @@
 package com.dcore;
 
+import com.dcore.command.DCoreCommands;
+import com.dcore.hex.DeferredDamage;
 import com.dcore.hex.HexPatterns;
 import com.dcore.item.ModItems;
+import com.dcore.network.MediaRegistrySync;
+import com.dcore.media.MediaItemTable;
 import com.dcore.media.TypedMediaExtractorRegistration;
+import com.dcore.media.config.MediaConfigReloader;
+import com.dcore.media.config.MediaDataLoader;
 import com.dcore.media.config.MediaTypeConfig;
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.event.lifecycle.v1.CommonLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.file.Path;
-
 public class DCore implements ModInitializer {
 	public static final String MOD_ID = "d-core";
 	public static final Logger LOGGER = LoggerFactory.getLogger(MOD_ID);
@@ -23,11 +29,20 @@ public class DCore implements ModInitializer {
 		HexPatterns.register((entry, id) -> net.minecraft.core.Registry.register(registry, id, entry));
 		
 		TypedMediaExtractorRegistration.register();
+		// 标签条目的媒体物品在每次标签加载后重新解析
+		CommonLifecycleEvents.TAGS_LOADED.register((registries, client) -> MediaItemTable.current().bindTags());
+		DeferredDamage.register();
+		
+		// 配置文件在注册物品组件时已经解析，这里只把同一份结果应用到注册表
+		ServerLifecycleEvents.SERVER_STARTING.register(server -> MediaTypeConfig.apply());
+		// 运行期间文件变化或 /dcore reload 时重新加载
+		MediaConfigReloader.register();
+		// 数据包中的媒体定义，合并后的注册表同步给客户端
+		MediaDataLoader.register();
+		MediaRegistrySync.register();
 		
-		ServerLifecycleEvents.SERVER_STARTING.register(server -> {
-			Path configDir = server.getServerDirectory().toPath().resolve("config");
-			MediaTypeConfig.load(configDir);
-		});
+		CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) ->
+			DCoreCommands.register(dispatcher));
 	}
 }
 
@@ -0,0 +1,102 @@
+package com.dcore.command;
+
+import com.dcore.DCore;
+import com.dcore.media.config.MediaConfigReloader;
+import com.dcore.trace.DCoreTrace;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.commands.arguments.EntityArgument;
+import net.minecraft.commands.arguments.ResourceLocationArgument;
+import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * d-core 的管理命令
+ * /dcore trace ... 控制施法追踪
+ * /dcore reload 重新加载 media_types.json（与文件变化触发的自动重新加载相同，见 MediaConfigReloader）
+ */
+public class DCoreCommands {
+    private static final int DEFAULT_DUMP_COUNT = 2000;
+
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("dcore")
+            .requires(source -> source.hasPermission(2))
+            .then(Commands.literal("reload")
+                .executes(ctx -> {
+                    CommandSourceStack source = ctx.getSource();
+                    MediaConfigReloader.requestReload(message ->
+                        source.sendSuccess(() -> Component.literal(message), true));
+                    return reply(ctx, "正在重新加载 d-core 配置");
+                }))
+            .then(Commands.literal("trace")
+                .then(Commands.literal("on")
+                    .executes(ctx -> {
+                        DCoreTrace.enableAll();
+                        return reply(ctx, "d-core 追踪已开启（所有玩家和动作）");
+                    }))
+                .then(Commands.literal("off")
+                    .executes(ctx -> {
+                        DCoreTrace.disable();
+                        return reply(ctx, "d-core 追踪已关闭");
+                    }))
+                .then(Commands.literal("player")
+                    .then(Commands.argument("targets", EntityArgument.players())
+                        .executes(ctx -> {
+                            Collection<ServerPlayer> targets = EntityArgument.getPlayers(ctx, "targets");
+                            for (ServerPlayer player : targets) {
+                                DCoreTrace.tracePlayer(player.getUUID());
+                            }
+                            return reply(ctx, "d-core 追踪已添加 " + targets.size() + " 名玩家");
+                        })))
+                .then(Commands.literal("action")
+                    .then(Commands.argument("action", ResourceLocationArgument.id())
+                        .executes(ctx -> {
+                            ResourceLocation actionId = ResourceLocationArgument.getId(ctx, "action");
+                            DCoreTrace.traceAction(actionId);
+                            return reply(ctx, "d-core 追踪已添加动作 " + actionId);
+                        })))
+                .then(Commands.literal("clear")
+                    .executes(ctx -> {
+                        DCoreTrace.clearBuffer();
+                        return reply(ctx, "d-core 追踪缓冲区已清空");
+                    }))
+                .then(Commands.literal("dump")
+                    .executes(ctx -> dump(ctx, DEFAULT_DUMP_COUNT))
+                    .then(Commands.argument("count", IntegerArgumentType.integer(1))
+                        .executes(ctx -> dump(ctx, IntegerArgumentType.getInteger(ctx, "count")))))));
+    }
+
+    /**
+     * 将追踪记录渲染为文本，写入 logs/d-core-trace-<时间>.txt
+     */
+    private static int dump(CommandContext<CommandSourceStack> ctx, int count) {
+        List<String> lines = DCoreTrace.render(count);
+        Path file = ctx.getSource().getServer().getServerDirectory().toPath()
+            .resolve("logs")
+            .resolve("d-core-trace-" + System.currentTimeMillis() + ".txt");
+        try {
+            Files.createDirectories(file.getParent());
+            Files.write(file, lines);
+        } catch (IOException e) {
+            DCore.LOGGER.error("[DCoreCommands] 写入追踪文件失败: {}", file, e);
+            ctx.getSource().sendFailure(Component.literal("写入追踪文件失败: " + e.getMessage()));
+            return 0;
+        }
+        return reply(ctx, "已导出 " + lines.size() + " 条追踪记录到 " + file);
+    }
+
+    private static int reply(CommandContext<CommandSourceStack> ctx, String message) {
+        ctx.getSource().sendSuccess(() -> Component.literal(message), true);
+        return 1;
+    }
+}
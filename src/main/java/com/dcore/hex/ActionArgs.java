@@ -0,0 +1,82 @@
+package com.dcore.hex;
+
+import at.petrak.hexcasting.api.casting.eval.CastingEnvironment;
+import at.petrak.hexcasting.api.casting.eval.CastingEnvironmentComponent;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * 解码后的动作参数（见 ArgSchema）
+ * 作为扩展挂载在 CastingEnvironment 上，同一施法环境中的所有 d-core 动作复用同一个实例：
+ * 数字参数保存在 double 数组中，实体和向量保存在引用数组中，实体列表去重到复用的 DamageBatch，
+ * 施放一个图案不再为参数分配对象
+ *
+ * 只在一次 operate 内有效，operate 结束时清空引用，不会让施法环境持有实体
+ */
+public final class ActionArgs implements CastingEnvironmentComponent {
+    public static final CastingEnvironmentComponent.Key<ActionArgs> KEY = new CastingEnvironmentComponent.Key<ActionArgs>() {};
+
+    private Object[] refs = new Object[4];
+    private double[] numbers = new double[4];
+    private final DamageBatch batch = new DamageBatch(16);
+
+    @Override
+    public @NotNull Key<ActionArgs> getKey() {
+        return KEY;
+    }
+
+    /**
+     * 获取施法环境上的参数容器，没有时创建并挂载
+     */
+    public static ActionArgs of(CastingEnvironment environment) {
+        ActionArgs args = environment.getExtension(KEY);
+        if (args == null) {
+            args = new ActionArgs();
+            environment.addExtension(args);
+        }
+        return args;
+    }
+
+    public Entity entity(int index) {
+        return (Entity) refs[index];
+    }
+
+    public Vec3 vector(int index) {
+        return (Vec3) refs[index];
+    }
+
+    public double number(int index) {
+        return numbers[index];
+    }
+
+    /**
+     * 本次施放的目标：实体列表参数去重后的结果，或由动作在 prepare 中填入（例如区域查询）
+     */
+    public DamageBatch batch() {
+        return batch;
+    }
+
+    void reset(int argc) {
+        if (argc > refs.length) {
+            refs = new Object[argc];
+            numbers = new double[argc];
+        }
+        batch.clear();
+    }
+
+    void release() {
+        Arrays.fill(refs, null);
+        batch.clear();
+    }
+
+    void setRef(int index, Object value) {
+        refs[index] = value;
+    }
+
+    void setNumber(int index, double value) {
+        numbers[index] = value;
+    }
+}
@@ -0,0 +1,106 @@
+package com.dcore.hex;
+
+import at.petrak.hexcasting.api.casting.eval.CastingEnvironment;
+import at.petrak.hexcasting.api.casting.eval.env.PlayerBasedCastEnv;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.util.AbortableIterationConsumer;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.level.entity.EntityTypeTest;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Consumer;
+
+/**
+ * 范围类伤害动作的实体查询
+ * 直接查询世界的实体分区一次，结果逐个交给调用者处理，不构建实体列表 iota
+ *
+ * 查询前先把查询盒裁剪到施法者的影响范围：玩家施法时为以玩家为中心、边长 2 × AMBIT_RADIUS 的盒子；
+ * 其他施法环境（法术环等）的影响范围没有统一的形状，只使用区域本身。
+ * 裁剪只是缩小要查询的分区，每个实体仍用 isEntityInRange 过滤（不抛出 Mishap，只是跳过），
+ * 与 HexMod 的区域类图案的判断一致
+ */
+public final class AreaQuery {
+    private static final EntityTypeTest<Entity, LivingEntity> LIVING = EntityTypeTest.forClass(LivingEntity.class);
+    
+    // 未知施法环境时区域的最大半边长，避免一次查询过多分区
+    private static final double MAX_HALF_EXTENT = PlayerBasedCastEnv.AMBIT_RADIUS * 2;
+    
+    // 裁剪后的查询盒，区域完全在影响范围之外时为 null
+    @Nullable
+    private final AABB bounds;
+    // 球形区域的中心和半径平方；盒形区域为 null
+    private final Vec3 center;
+    private final double radiusSqr;
+    
+    private AreaQuery(@Nullable AABB bounds, @Nullable Vec3 center, double radiusSqr) {
+        this.bounds = bounds;
+        this.center = center;
+        this.radiusSqr = radiusSqr;
+    }
+    
+    /**
+     * 以 center 为球心、radius 为半径的球形区域
+     */
+    public static AreaQuery radius(CastingEnvironment env, Vec3 center, double radius) {
+        AABB box = new AABB(center, center).inflate(radius);
+        return new AreaQuery(clip(env, box), center, radius * radius);
+    }
+    
+    /**
+     * 以两个对角为边界的盒形区域
+     */
+    public static AreaQuery box(CastingEnvironment env, Vec3 corner1, Vec3 corner2) {
+        return new AreaQuery(clip(env, new AABB(corner1, corner2)), null, 0);
+    }
+    
+    public boolean isEmpty() {
+        return bounds == null;
+    }
+    
+    /**
+     * 遍历区域内、影响范围内的所有存活生物（不包括施法者自己和旁观者）
+     */
+    public void forEach(CastingEnvironment env, Consumer<LivingEntity> action) {
+        if (isEmpty()) {
+            return;
+        }
+        ServerLevel level = env.getWorld();
+        Entity caster = env.getCastingEntity();
+        level.getEntities().get(LIVING, bounds, entity -> {
+            if (entity != caster
+                && entity.isAlive()
+                && !entity.isSpectator()
+                && (center == null || entity.distanceToSqr(center) <= radiusSqr)
+                && env.isEntityInRange(entity)) {
+                action.accept(entity);
+            }
+            return AbortableIterationConsumer.Continuation.CONTINUE;
+        });
+    }
+    
+    /**
+     * 把查询盒裁剪到施法者的影响范围
+     * @return 裁剪后的查询盒，没有交集时返回 null（AABB 的构造会交换颠倒的边界，不能用它表示空盒）
+     */
+    @Nullable
+    private static AABB clip(CastingEnvironment env, AABB box) {
+        AABB limit;
+        if (env instanceof PlayerBasedCastEnv && env.getCastingEntity() != null
+            && env.getCastingEntity().position().distanceToSqr(box.getCenter()) <= PlayerBasedCastEnv.AMBIT_RADIUS * PlayerBasedCastEnv.AMBIT_RADIUS) {
+            // 区域在玩家自身的影响范围内（不在哨卫附近），可以直接裁剪到玩家周围
+            Vec3 pos = env.getCastingEntity().position();
+            limit = new AABB(pos, pos).inflate(PlayerBasedCastEnv.AMBIT_RADIUS);
+        } else {
+            Vec3 origin = box.getCenter();
+            limit = new AABB(origin, origin).inflate(MAX_HALF_EXTENT);
+        }
+        if (!box.intersects(limit)) {
+            return null;
+        }
+        return box.intersect(limit);
+    }
+}
@@ -0,0 +1,102 @@
+package com.dcore.hex;
+
+import at.petrak.hexcasting.api.casting.eval.CastingEnvironment;
+import at.petrak.hexcasting.api.casting.iota.DoubleIota;
+import at.petrak.hexcasting.api.casting.iota.EntityIota;
+import at.petrak.hexcasting.api.casting.iota.Iota;
+import at.petrak.hexcasting.api.casting.iota.ListIota;
+import at.petrak.hexcasting.api.casting.iota.Vec3Iota;
+import at.petrak.hexcasting.api.casting.mishaps.MishapInvalidIota;
+import net.minecraft.world.entity.Entity;
+
+import java.util.List;
+
+/**
+ * d-core 动作的参数声明
+ * 每个动作在构造时声明各位置参数的种类，DCoreAction 在 operate 开始时按声明解码一次，
+ * 结果写入施法环境上复用的 ActionArgs，cost 和 apply 直接读取，不再各自检查 iota 类型
+ *
+ * 参数无效时抛出的 Mishap 与原来手写的检查一致：
+ * - ENTITY：不是实体为 "entity"，超出范围由 assertEntityInRange 抛出
+ * - POSITIVE_NUMBER：不是数字为 "number"，小于等于 0 为 "positive number"
+ * - VECTOR：不是向量为 "vector"（范围由动作按区域中心自行检查）
+ * - ENTITY_LIST：不是列表为 "list"，元素不是实体为 "entity"；去重后写入 ActionArgs.batch()
+ */
+public final class ArgSchema {
+    public enum Kind { ENTITY, POSITIVE_NUMBER, VECTOR, ENTITY_LIST }
+
+    private final Kind[] kinds;
+
+    private ArgSchema(Kind[] kinds) {
+        this.kinds = kinds;
+    }
+
+    /**
+     * @param kinds 各参数的种类，栈底在前
+     * @throws IllegalArgumentException 声明了多个实体列表参数（目标只有一个批次）
+     */
+    public static ArgSchema of(Kind... kinds) {
+        int lists = 0;
+        for (Kind kind : kinds) {
+            if (kind == Kind.ENTITY_LIST) {
+                lists++;
+            }
+        }
+        if (lists > 1) {
+            throw new IllegalArgumentException("At most one entity list argument is supported");
+        }
+        return new ArgSchema(kinds.clone());
+    }
+
+    public int argc() {
+        return kinds.length;
+    }
+
+    public Kind kind(int index) {
+        return kinds[index];
+    }
+
+    /**
+     * 解码参数到 into
+     * 从栈顶开始检查：实体列表总在栈底，数值参数无效时不必先遍历整个列表
+     * @param args 栈顶 argc() 个 iota 的只读视图，栈底在前
+     */
+    void decode(List<? extends Iota> args, CastingEnvironment env, ActionArgs into) {
+        into.reset(kinds.length);
+        for (int i = kinds.length - 1; i >= 0; i--) {
+            Iota iota = args.get(i);
+            switch (kinds[i]) {
+                case ENTITY -> {
+                    if (!(iota instanceof EntityIota entityIota)) {
+                        throw MishapInvalidIota.ofType(iota, i, "entity");
+                    }
+                    Entity entity = entityIota.getEntity();
+                    env.assertEntityInRange(entity);
+                    into.setRef(i, entity);
+                }
+                case POSITIVE_NUMBER -> {
+                    if (!(iota instanceof DoubleIota doubleIota)) {
+                        throw MishapInvalidIota.ofType(iota, i, "number");
+                    }
+                    double value = doubleIota.getDouble();
+                    if (value <= 0) {
+                        throw MishapInvalidIota.ofType(iota, i, "positive number");
+                    }
+                    into.setNumber(i, value);
+                }
+                case VECTOR -> {
+                    if (!(iota instanceof Vec3Iota vec)) {
+                        throw MishapInvalidIota.ofType(iota, i, "vector");
+                    }
+                    into.setRef(i, vec.getVec3());
+                }
+                case ENTITY_LIST -> {
+                    if (!(iota instanceof ListIota list)) {
+                        throw MishapInvalidIota.ofType(iota, i, "list");
+                    }
+                    into.batch().addAll(list, env, i);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.dcore.hex;
+
+import at.petrak.hexcasting.api.casting.castables.ConstMediaAction;
+import at.petrak.hexcasting.api.casting.eval.CastingEnvironment;
+import at.petrak.hexcasting.api.casting.eval.OperationResult;
+import at.petrak.hexcasting.api.casting.eval.sideeffects.EvalSound;
+import at.petrak.hexcasting.api.casting.eval.sideeffects.OperatorSideEffect;
+import at.petrak.hexcasting.api.casting.eval.vm.CastingImage;
+import at.petrak.hexcasting.api.casting.eval.vm.SpellContinuation;
+import at.petrak.hexcasting.api.casting.iota.Iota;
+import at.petrak.hexcasting.api.casting.mishaps.MishapNotEnoughArgs;
+import at.petrak.hexcasting.api.casting.mishaps.MishapNotEnoughMedia;
+import at.petrak.hexcasting.common.lib.hex.HexEvalSounds;
+import com.dcore.media.CastFrame;
+import com.dcore.media.CastFrames;
+import com.dcore.trace.DCoreTrace;
+import com.dcore.trace.TraceEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * d-core 动作的公共基类，所有动作共用同一个 operate 流程：
+ * 1. 按动作声明的 ArgSchema 解码参数（只解码一次），再由 prepare 查询目标；参数无效时抛出 Mishap（此时没有任何效果和消耗）
+ * 2. cost：根据准备结果计算实际消耗，返回 0 表示动作自己从容器提取媒体（消耗所有媒体的动作）
+ * 3. simulate 提取：取消标记已设置（血量扣除超过最大生命值）时不产生效果，媒体不足时抛出 MishapNotEnoughMedia
+ * 4. apply：产生法术效果
+ * 5. 提交：只通过一个 ConsumeMedia 副作用提交，TypedMediaExtractor 应用 simulate 阶段的提取计划
+ *
+ * 参数通过栈的 subList 视图读取，不复制栈；新栈只构建一次（保留部分 + 返回值）
+ * 没有副作用时使用共享的空列表，有消耗时使用单元素的不可变列表
+ * 解码结果写入施法环境上复用的 ActionArgs，在同一次施放的 cost 和 apply 之间传递，operate 结束时清空
+ */
+public abstract class DCoreAction implements ConstMediaAction {
+    private static final List<OperatorSideEffect> NO_SIDE_EFFECTS = List.of();
+
+    private final ArgSchema schema;
+
+    protected DCoreAction(ArgSchema schema) {
+        this.schema = schema;
+    }
+
+    @Override
+    public final int getArgc() {
+        return schema.argc();
+    }
+
+    /**
+     * 参数解码之后、计算消耗之前调用，用于查询目标等需要施法环境的准备工作
+     * 默认什么也不做
+     */
+    protected void prepare(ActionArgs args, CastingEnvironment env) {
+    }
+
+    /**
+     * 本次施放的实际消耗
+     * @return 需要提取的媒体量，0 表示不通过 ConsumeMedia 提取
+     */
+    protected abstract long cost(ActionArgs args, CastingEnvironment env);
+
+    /**
+     * 产生法术效果
+     * @return 压回栈上的 iota
+     */
+    protected abstract List<Iota> apply(ActionArgs args, CastingEnvironment env);
+
+    /**
+     * 解码参数并调用 prepare
+     * @param args 栈顶 getArgc() 个 iota 的只读视图，栈底在前
+     */
+    private void decode(List<? extends Iota> args, CastingEnvironment env, ActionArgs into) {
+        schema.decode(args, env, into);
+        prepare(into, env);
+    }
+
+    @Override
+    public ConstMediaAction.CostMediaActionResult executeWithOpCount(List<? extends Iota> args, CastingEnvironment env) {
+        return new ConstMediaAction.CostMediaActionResult(execute(args, env), 1);
+    }
+
+    /**
+     * 不经过 operate 直接执行时只产生效果，不检查也不提交媒体
+     */
+    @Override
+    public List<Iota> execute(List<? extends Iota> args, CastingEnvironment env) {
+        ActionArgs decoded = ActionArgs.of(env);
+        try {
+            decode(args, env, decoded);
+            return apply(decoded, env);
+        } finally {
+            decoded.release();
+        }
+    }
+
+    @Override
+    public OperationResult operate(CastingEnvironment env, CastingImage image, SpellContinuation continuation) {
+        List<Iota> stack = image.getStack();
+        int argc = getArgc();
+        if (argc > stack.size()) {
+            throw new MishapNotEnoughArgs(argc, stack.size());
+        }
+        int keep = stack.size() - argc;
+        ActionArgs args = ActionArgs.of(env);
+        try {
+            decode(stack.subList(keep, stack.size()), env, args);
+            return operate(args, env, image, stack, keep, continuation);
+        } finally {
+            args.release();
+        }
+    }
+
+    private OperationResult operate(ActionArgs args, CastingEnvironment env, CastingImage image, List<Iota> stack,
+                                    int keep, SpellContinuation continuation) {
+        long mediaCost = cost(args, env);
+        if (mediaCost <= 0) {
+            // 动作自己提取媒体，不添加 ConsumeMedia 副作用：
+            // 虚拟机会按副作用的数量再提取一次，背包已空时会转而扣除施法者的生命值
+            return result(image, stack, keep, apply(args, env), NO_SIDE_EFFECTS, HexEvalSounds.NORMAL_EXECUTE, continuation);
+        }
+
+        if (DCoreTrace.recording) DCoreTrace.record(TraceEvent.OP_COST, mediaCost);
+
+        // 先 simulate，避免造成效果之后才发现媒体不足；取消标记在这一步由 TypedMediaExtractor 设置
+        long remaining = env.extractMedia(mediaCost, true);
+        CastFrame frame = CastFrames.current(env);
+        boolean cancel = frame.shouldCancel();
+        if (DCoreTrace.recording) DCoreTrace.record(TraceEvent.OP_SIMULATED, remaining, DCoreTrace.bool(cancel));
+
+        List<OperatorSideEffect> sideEffects = List.of(new OperatorSideEffect.ConsumeMedia(mediaCost));
+        if (cancel) {
+            // 不产生效果；血量仍由 ConsumeMedia 按计划扣除，随后 SpellCancellationMixin 结束本次施法
+            if (DCoreTrace.recording) DCoreTrace.record(TraceEvent.OP_CANCELLED, mediaCost);
+            return result(image, stack, keep, List.of(), sideEffects, HexEvalSounds.NOTHING, continuation);
+        }
+        if (remaining > 0) {
+            throw new MishapNotEnoughMedia(mediaCost);
+        }
+
+        return result(image, stack, keep, apply(args, env), sideEffects, HexEvalSounds.NORMAL_EXECUTE, continuation);
+    }
+
+    private static OperationResult result(CastingImage image, List<Iota> stack, int keep, List<Iota> pushed,
+                                          List<OperatorSideEffect> sideEffects, EvalSound sound,
+                                          SpellContinuation continuation) {
+        // 新栈一次构建到位：保留参数以下的部分，再压入返回值
+        List<Iota> newStack = new ArrayList<>(keep + pushed.size());
+        for (int i = 0; i < keep; i++) {
+            newStack.add(stack.get(i));
+        }
+        newStack.addAll(pushed);
+
+        CastingImage image2 = image.copy(
+            newStack,
+            image.getParenCount(),
+            image.getParenthesized(),
+            image.getEscapeNext(),
+            image.getOpsConsumed() + 1,
+            image.getUserData()
+        );
+        return new OperationResult(image2, sideEffects, continuation, sound);
+    }
+}
@@ -0,0 +1,67 @@
+package com.dcore.hex;
+
+import com.dcore.DCore;
+import com.dcore.media.core.ActionFormula;
+import com.dcore.media.core.ActionFormulaTable;
+import com.dcore.media.core.FormulaKind;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+
+/**
+ * d-core 各动作的伤害和消耗公式
+ * 表达式可以在 media_types.json 的 action_formulas 部分按动作覆盖，加载配置时编译，施法时直接求值
+ * 各公式的变量和默认表达式见 FormulaKind
+ */
+public final class DCoreFormulas {
+    public static final ActionFormulaTable TABLE = new ActionFormulaTable();
+
+    public static final ActionFormula DAMAGE_ENTITY_DAMAGE = damage("damage_entity", FormulaKind.STRENGTH_DAMAGE);
+    public static final ActionFormula DAMAGE_ENTITY_COST = cost("damage_entity", FormulaKind.STRENGTH_COST);
+
+    public static final ActionFormula DAMAGE_ENTITY_LIST_DAMAGE = damage("damage_entity_list", FormulaKind.STRENGTH_DAMAGE);
+    public static final ActionFormula DAMAGE_ENTITY_LIST_COST = cost("damage_entity_list", FormulaKind.ENTITY_LIST_COST);
+
+    public static final ActionFormula CONSUME_ALL_MEDIA_DAMAGE_ENTITY_DAMAGE =
+        damage("consume_all_media_damage_entity", FormulaKind.CONSUMED_DAMAGE);
+    public static final ActionFormula CONSUME_ALL_MEDIA_DAMAGE_ENTITY_LIST_DAMAGE =
+        damage("consume_all_media_damage_entity_list", FormulaKind.CONSUMED_DAMAGE_PER_ENTITY);
+
+    public static final ActionFormula VELOCITY_DAMAGE_ENTITY_DAMAGE = damage("velocity_damage_entity", FormulaKind.VELOCITY_DAMAGE);
+    public static final ActionFormula VELOCITY_DAMAGE_ENTITY_COST = cost("velocity_damage_entity", FormulaKind.BASE_COST);
+
+    public static final ActionFormula NEGATIVE_EFFECT_DAMAGE_ENTITY_DAMAGE =
+        damage("negative_effect_damage_entity", FormulaKind.NEGATIVE_EFFECT_DAMAGE);
+    public static final ActionFormula NEGATIVE_EFFECT_DAMAGE_ENTITY_COST =
+        cost("negative_effect_damage_entity", FormulaKind.NEGATIVE_EFFECT_COST);
+
+    private DCoreFormulas() {
+    }
+
+    /**
+     * 所有动作的公式
+     * 动作在类加载时才登记自己的公式（例如各个范围动作），这里先初始化 HexPatterns，保证列表完整
+     */
+    public static List<ActionFormula> all() {
+        try {
+            MethodHandles.lookup().ensureInitialized(HexPatterns.class);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        return TABLE.all();
+    }
+
+    /**
+     * 登记动作的伤害公式，name 为不带命名空间的动作名
+     */
+    public static ActionFormula damage(String name, FormulaKind kind) {
+        return TABLE.register(DCore.MOD_ID + ":" + name, "damage", kind);
+    }
+
+    /**
+     * 登记动作的消耗公式，name 为不带命名空间的动作名
+     */
+    public static ActionFormula cost(String name, FormulaKind kind) {
+        return TABLE.register(DCore.MOD_ID + ":" + name, "cost", kind);
+    }
+}
@@ -0,0 +1,119 @@
+package com.dcore.hex;
+
+import at.petrak.hexcasting.api.casting.ParticleSpray;
+import at.petrak.hexcasting.api.casting.eval.CastingEnvironment;
+import at.petrak.hexcasting.api.casting.iota.EntityIota;
+import at.petrak.hexcasting.api.casting.iota.Iota;
+import at.petrak.hexcasting.api.casting.iota.ListIota;
+import at.petrak.hexcasting.api.casting.mishaps.MishapInvalidIota;
+import com.dcore.network.ParticleBurstBatch;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import net.minecraft.world.damagesource.DamageSource;
+import net.minecraft.world.entity.Entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 列表类伤害动作的批处理
+ * - 按实体 ID 去重：同一实体在列表中出现多次，只受一次伤害、只计一次消耗
+ * - 统一对所有目标造成伤害
+ * - 所有目标的粒子效果合并为一个网络包发送（见 ParticleBurstBatch），而不是每个目标一次 ParticleSpray
+ */
+public final class DamageBatch {
+    // 与单体伤害动作使用的粒子参数一致
+    private static final double PARTICLE_SPREAD = 0.5;
+    private static final int PARTICLE_COUNT = 20;
+    
+    private final IntOpenHashSet seen;
+    private final List<Entity> targets;
+    
+    public DamageBatch(int expectedSize) {
+        this.seen = new IntOpenHashSet(expectedSize);
+        this.targets = new ArrayList<>(expectedSize);
+    }
+    
+    /**
+     * 从实体列表参数收集目标（追加到当前批次）
+     * 非实体元素抛出 MishapInvalidIota，超出范围的实体由 assertEntityInRange 抛出 Mishap
+     * @param argIndex 列表在参数中的位置（用于错误信息）
+     */
+    public void addAll(ListIota list, CastingEnvironment env, int argIndex) {
+        for (Iota item : list.getList()) {
+            if (!(item instanceof EntityIota entityIota)) {
+                throw MishapInvalidIota.ofType(item, argIndex, "entity");
+            }
+            Entity entity = entityIota.getEntity();
+            env.assertEntityInRange(entity);
+            add(entity);
+        }
+    }
+    
+    /**
+     * 添加目标
+     * @return false 如果该实体已经在批次中
+     */
+    public boolean add(Entity entity) {
+        if (!seen.add(entity.getId())) {
+            return false;
+        }
+        targets.add(entity);
+        return true;
+    }
+    
+    /**
+     * 清空批次以便复用（见 ActionArgs）
+     */
+    public void clear() {
+        seen.clear();
+        targets.clear();
+    }
+    
+    public int size() {
+        return targets.size();
+    }
+    
+    public boolean isEmpty() {
+        return targets.isEmpty();
+    }
+    
+    public List<Entity> targets() {
+        return targets;
+    }
+    
+    /**
+     * 对所有目标造成相同的伤害（开启延迟伤害时登记到 tick 结束时结算，见 DeferredDamage）
+     */
+    public void hurtAll(DamageSource source, float damage) {
+        for (Entity target : targets) {
+            DeferredDamage.hurt(target, source, damage);
+        }
+    }
+    
+    /**
+     * 在所有目标身上产生粒子效果
+     * 只有一个目标时与单体动作一样交给 HexMod 发送；多个目标合并为一个网络包
+     */
+    public void produceParticles(CastingEnvironment env) {
+        if (targets.isEmpty()) {
+            return;
+        }
+        if (targets.size() == 1) {
+            Entity target = targets.get(0);
+            env.produceParticles(
+                ParticleSpray.burst(target.position().add(0.0, target.getEyeHeight() / 2.0, 0.0), PARTICLE_SPREAD, PARTICLE_COUNT),
+                env.getPigment()
+            );
+            return;
+        }
+        
+        double[] positions = new double[targets.size() * 3];
+        int i = 0;
+        for (Entity target : targets) {
+            positions[i++] = target.getX();
+            positions[i++] = target.getY() + target.getEyeHeight() / 2.0;
+            positions[i++] = target.getZ();
+        }
+        new ParticleBurstBatch(env.getPigment(), PARTICLE_SPREAD, PARTICLE_COUNT, positions).sendNear(env.getWorld());
+    }
+}
@@ -0,0 +1,136 @@
+package com.dcore.hex;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.damagesource.DamageSource;
+import net.minecraft.world.entity.Entity;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 延迟伤害队列（可选，media_types.json 的 damage.deferred 开启）
+ * 开启后各动作不直接调用 hurt，而是按目标和伤害来源登记到所在世界的缓冲区，世界 tick 结束时统一结算：
+ * - 同一 tick 内对同一目标、同一来源的伤害合并为一次 hurt 调用，不会被无敌帧吞掉，也只走一次伤害事件链
+ * - 结算顺序为目标第一次被登记的顺序，结果只取决于施法顺序
+ * 只在服务器线程上访问
+ */
+public final class DeferredDamage {
+    private static volatile boolean enabled;
+    private static final Map<ServerLevel, DeferredDamage> BUFFERS = new IdentityHashMap<>();
+
+    // 两个表交替使用：结算期间新登记的伤害进入另一个表，留到下一个 tick
+    private Int2ObjectLinkedOpenHashMap<Pending> pending = new Int2ObjectLinkedOpenHashMap<>();
+    private Int2ObjectLinkedOpenHashMap<Pending> spare = new Int2ObjectLinkedOpenHashMap<>();
+
+    private DeferredDamage() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean deferred) {
+        enabled = deferred;
+    }
+
+    /**
+     * 造成伤害：延迟模式下登记到目标所在世界的缓冲区，否则直接调用 hurt
+     */
+    public static void hurt(Entity target, DamageSource source, float amount) {
+        if (!enabled || !(target.level() instanceof ServerLevel level)) {
+            target.hurt(source, amount);
+            return;
+        }
+        BUFFERS.computeIfAbsent(level, key -> new DeferredDamage()).add(target, source, amount);
+    }
+
+    public static void register() {
+        ServerTickEvents.END_WORLD_TICK.register(level -> {
+            DeferredDamage buffer = BUFFERS.get(level);
+            if (buffer != null) {
+                buffer.flush();
+            }
+        });
+        // 世界卸载或服务器停止时丢弃尚未结算的伤害
+        ServerWorldEvents.UNLOAD.register((server, level) -> BUFFERS.remove(level));
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> BUFFERS.clear());
+    }
+
+    private void add(Entity target, DamageSource source, float amount) {
+        Pending entry = pending.get(target.getId());
+        if (entry == null || entry.target != target) {
+            // 实体 ID 被新实体复用时，旧实体已经移除，直接覆盖
+            entry = new Pending(target);
+            pending.put(target.getId(), entry);
+        }
+        entry.add(source, amount);
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Int2ObjectLinkedOpenHashMap<Pending> batch = pending;
+        pending = spare;
+        for (Pending entry : batch.values()) {
+            entry.apply();
+        }
+        batch.clear();
+        spare = batch;
+    }
+
+    /**
+     * 同一目标在本 tick 内的伤害，按来源合并（通常只有一个来源）
+     */
+    private static final class Pending {
+        final Entity target;
+        DamageSource[] sources = new DamageSource[1];
+        float[] amounts = new float[1];
+        int size;
+
+        Pending(Entity target) {
+            this.target = target;
+        }
+
+        void add(DamageSource source, float amount) {
+            for (int i = 0; i < size; i++) {
+                if (sameSource(sources[i], source)) {
+                    amounts[i] += amount;
+                    return;
+                }
+            }
+            if (size == sources.length) {
+                sources = Arrays.copyOf(sources, size * 2);
+                amounts = Arrays.copyOf(amounts, size * 2);
+            }
+            sources[size] = source;
+            amounts[size] = amount;
+            size++;
+        }
+
+        void apply() {
+            for (int i = 0; i < size; i++) {
+                if (!target.isAlive()) {
+                    return;
+                }
+                target.hurt(sources[i], amounts[i]);
+            }
+        }
+
+        /**
+         * DamageSource 没有重写 equals，这里按伤害类型、来源实体和位置比较
+         */
+        private static boolean sameSource(DamageSource a, DamageSource b) {
+            return a.type() == b.type()
+                && a.getEntity() == b.getEntity()
+                && a.getDirectEntity() == b.getDirectEntity()
+                && Objects.equals(a.sourcePositionRaw(), b.sourcePositionRaw());
+        }
+    }
+}
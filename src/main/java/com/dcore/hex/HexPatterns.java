@@ -39,6 +39,26 @@ public class HexPatterns {
     public static final ActionRegistryEntry NEGATIVE_EFFECT_DAMAGE_ENTITY = make("negative_effect_damage_entity",
         new ActionRegistryEntry(HexPattern.fromAngles("waqawawaq", HexDir.SOUTH_EAST), OpNegativeEffectDamageEntity.INSTANCE));
     
+    // 范围版本：直接按区域查询实体，不需要先构建实体列表
+    // 球形区域（向量、半径）的图案以 wqwqwq 结尾，盒形区域（两个对角）以 wewewe 结尾
+    public static final ActionRegistryEntry DAMAGE_ENTITY_RADIUS = make("damage_entity_radius",
+        new ActionRegistryEntry(HexPattern.fromAngles("wdwdwwqwqwq", HexDir.EAST), OpAreaDamage.DAMAGE_ENTITY_RADIUS));
+    
+    public static final ActionRegistryEntry DAMAGE_ENTITY_BOX = make("damage_entity_box",
+        new ActionRegistryEntry(HexPattern.fromAngles("wdwdwwewewe", HexDir.EAST), OpAreaDamage.DAMAGE_ENTITY_BOX));
+    
+    public static final ActionRegistryEntry DAMAGE_ENTITY_LIST_RADIUS = make("damage_entity_list_radius",
+        new ActionRegistryEntry(HexPattern.fromAngles("wdwdwwwqwqwq", HexDir.EAST), OpAreaDamage.DAMAGE_ENTITY_LIST_RADIUS));
+    
+    public static final ActionRegistryEntry DAMAGE_ENTITY_LIST_BOX = make("damage_entity_list_box",
+        new ActionRegistryEntry(HexPattern.fromAngles("wdwdwwwewewe", HexDir.EAST), OpAreaDamage.DAMAGE_ENTITY_LIST_BOX));
+    
+    public static final ActionRegistryEntry CONSUME_ALL_MEDIA_DAMAGE_ENTITY_LIST_RADIUS = make("consume_all_media_damage_entity_list_radius",
+        new ActionRegistryEntry(HexPattern.fromAngles("ddawaaddaaddaawwqwqwq", HexDir.EAST), OpAreaDamage.CONSUME_ALL_MEDIA_DAMAGE_ENTITY_LIST_RADIUS));
+    
+    public static final ActionRegistryEntry CONSUME_ALL_MEDIA_DAMAGE_ENTITY_LIST_BOX = make("consume_all_media_damage_entity_list_box",
+        new ActionRegistryEntry(HexPattern.fromAngles("ddawaaddaaddaawwewewe", HexDir.EAST), OpAreaDamage.CONSUME_ALL_MEDIA_DAMAGE_ENTITY_LIST_BOX));
+    
     private static ActionRegistryEntry make(String name, ActionRegistryEntry are) {
         // 使用我们自己的 MOD_ID，而不是 HexAPI.modLoc（它使用的是 hexcasting）
         ResourceLocation id = new ResourceLocation(DCore.MOD_ID, name);
@@ -0,0 +1,100 @@
+package com.dcore.hex;
+
+import net.minecraft.world.effect.MobEffectInstance;
+import net.minecraft.world.entity.LivingEntity;
+
+/**
+ * 生物身上负面效果的汇总：负面效果等级的总和（用于伤害）和连乘（用于消耗）
+ * 由 LivingEntityMixin 挂载在生物上，并在效果添加、更新、移除（包括到期）时维护：
+ * - 添加效果时直接累加，总和与连乘都与顺序无关，结果与重新遍历相同
+ * - 效果等级被更新或效果被移除时，旧的等级已经无法得知，只标记失效，下次读取时重新遍历一次
+ * 同一个生物被连续作为目标时，读取是 O(1) 的，不需要每次遍历所有效果
+ */
+public final class NegativeEffectSummary {
+    private final LivingEntity entity;
+    private int levelSum;
+    private long levelProduct = 1;
+    private int count;
+    // 新挂载的汇总还没有包含已有的效果（例如从存档加载的效果）
+    private boolean dirty = true;
+    
+    public NegativeEffectSummary(LivingEntity entity) {
+        this.entity = entity;
+    }
+    
+    /**
+     * 获取生物对应的汇总（由 LivingEntityMixin 挂载在生物上）
+     */
+    public static NegativeEffectSummary of(LivingEntity entity) {
+        return ((Holder) entity).dcore$getNegativeEffectSummary();
+    }
+    
+    /**
+     * 效果被添加
+     */
+    public void onEffectAdded(MobEffectInstance effect) {
+        if (dirty || effect.getEffect().isBeneficial()) {
+            return;
+        }
+        add(effect);
+    }
+    
+    /**
+     * 效果被更新、移除或整体重新加载
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+    
+    /**
+     * 负面效果等级的总和
+     */
+    public int levelSum() {
+        ensureFresh();
+        return levelSum;
+    }
+    
+    /**
+     * 负面效果等级的连乘（没有负面效果时为 1）
+     */
+    public long levelProduct() {
+        ensureFresh();
+        return levelProduct;
+    }
+    
+    public boolean hasNegativeEffect() {
+        ensureFresh();
+        return count > 0;
+    }
+    
+    private void ensureFresh() {
+        if (!dirty) {
+            return;
+        }
+        levelSum = 0;
+        levelProduct = 1;
+        count = 0;
+        for (MobEffectInstance effect : entity.getActiveEffects()) {
+            // 检查是否为负面效果（不是有益效果）
+            if (!effect.getEffect().isBeneficial()) {
+                add(effect);
+            }
+        }
+        dirty = false;
+    }
+    
+    private void add(MobEffectInstance effect) {
+        // 获取效果等级（amplifier + 1，因为等级从0开始）
+        int level = effect.getAmplifier() + 1;
+        levelSum += level;
+        levelProduct *= level;
+        count++;
+    }
+    
+    /**
+     * 由 LivingEntityMixin 实现，用于在生物上挂载汇总
+     */
+    public interface Holder {
+        NegativeEffectSummary dcore$getNegativeEffectSummary();
+    }
+}
@@ -0,0 +1,172 @@
+package com.dcore.hex;
+
+import at.petrak.hexcasting.api.casting.eval.CastingEnvironment;
+import at.petrak.hexcasting.api.casting.iota.Iota;
+import at.petrak.hexcasting.api.misc.MediaConstants;
+import com.dcore.media.InventoryMediaDrain;
+import com.dcore.media.core.ActionFormula;
+import com.dcore.media.core.FormulaKind;
+import com.dcore.media.core.MediaDrain;
+import com.dcore.trace.DCoreTrace;
+import com.dcore.trace.TraceEvent;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.damagesource.DamageSource;
+import net.minecraft.world.damagesource.DamageTypes;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.List;
+
+/**
+ * 范围版本的伤害动作
+ * 不需要先用区域类图案构建实体列表，直接按区域查询实体分区（见 AreaQuery）
+ *
+ * 区域形状：
+ * - RADIUS：向量（球心）、数字（半径）
+ * - BOX：向量、向量（两个对角）
+ * 伤害方式与对应的单体/列表动作相同：
+ * - NEAREST（damage_entity）：只伤害离区域中心最近的生物，消耗 = 基础消耗 × 强度²
+ * - EACH（damage_entity_list）：伤害区域内所有生物，消耗 = 基础消耗 × 数量² × 强度²
+ * - CONSUME_ALL（consume_all_media_damage_entity_list）：消耗背包中所有媒体，伤害除以 10 后平均分配
+ * 每个实例按自己的动作 ID 登记公式，可以和对应的单体/列表动作分别配置
+ */
+public class OpAreaDamage extends DCoreAction {
+    public enum Shape { RADIUS, BOX }
+    
+    public enum Mode { NEAREST, EACH, CONSUME_ALL }
+    
+    public static final OpAreaDamage DAMAGE_ENTITY_RADIUS = new OpAreaDamage("damage_entity_radius", Shape.RADIUS, Mode.NEAREST);
+    public static final OpAreaDamage DAMAGE_ENTITY_BOX = new OpAreaDamage("damage_entity_box", Shape.BOX, Mode.NEAREST);
+    public static final OpAreaDamage DAMAGE_ENTITY_LIST_RADIUS = new OpAreaDamage("damage_entity_list_radius", Shape.RADIUS, Mode.EACH);
+    public static final OpAreaDamage DAMAGE_ENTITY_LIST_BOX = new OpAreaDamage("damage_entity_list_box", Shape.BOX, Mode.EACH);
+    public static final OpAreaDamage CONSUME_ALL_MEDIA_DAMAGE_ENTITY_LIST_RADIUS = new OpAreaDamage("consume_all_media_damage_entity_list_radius", Shape.RADIUS, Mode.CONSUME_ALL);
+    public static final OpAreaDamage CONSUME_ALL_MEDIA_DAMAGE_ENTITY_LIST_BOX = new OpAreaDamage("consume_all_media_damage_entity_list_box", Shape.BOX, Mode.CONSUME_ALL);
+    
+    private static final long BASE_MEDIA_COST = MediaConstants.DUST_UNIT * 2; // 单体消耗：2 个粉尘单位
+    
+    private final Shape shape;
+    private final Mode mode;
+    private final ActionFormula damageFormula;
+    // CONSUME_ALL 没有消耗公式（消耗背包中所有媒体）
+    private final ActionFormula costFormula;
+    
+    private OpAreaDamage(String name, Shape shape, Mode mode) {
+        super(schema(shape, mode));
+        this.shape = shape;
+        this.mode = mode;
+        switch (mode) {
+            case NEAREST -> {
+                this.damageFormula = DCoreFormulas.damage(name, FormulaKind.STRENGTH_DAMAGE);
+                this.costFormula = DCoreFormulas.cost(name, FormulaKind.STRENGTH_COST);
+            }
+            case EACH -> {
+                this.damageFormula = DCoreFormulas.damage(name, FormulaKind.STRENGTH_DAMAGE);
+                this.costFormula = DCoreFormulas.cost(name, FormulaKind.ENTITY_LIST_COST);
+            }
+            default -> {
+                this.damageFormula = DCoreFormulas.damage(name, FormulaKind.CONSUMED_DAMAGE_PER_ENTITY);
+                this.costFormula = null;
+            }
+        }
+    }
+    
+    /**
+     * 区域 2 个参数，再加上强度（栈顶）；消耗所有媒体的版本没有强度参数
+     */
+    private static ArgSchema schema(Shape shape, Mode mode) {
+        ArgSchema.Kind second = shape == Shape.RADIUS ? ArgSchema.Kind.POSITIVE_NUMBER : ArgSchema.Kind.VECTOR;
+        return mode == Mode.CONSUME_ALL
+            ? ArgSchema.of(ArgSchema.Kind.VECTOR, second)
+            : ArgSchema.of(ArgSchema.Kind.VECTOR, second, ArgSchema.Kind.POSITIVE_NUMBER);
+    }
+    
+    @Override
+    public long getMediaCost() {
+        // 返回基础消耗，实际消耗会在 operate 中根据区域内的目标动态计算
+        return mode == Mode.CONSUME_ALL ? 0 : BASE_MEDIA_COST;
+    }
+    
+    @Override
+    protected long cost(ActionArgs args, CastingEnvironment env) {
+        // 消耗所有媒体的版本在 apply 中直接从容器提取；区域内没有目标时不消耗
+        if (mode == Mode.CONSUME_ALL || args.batch().isEmpty()) {
+            return 0;
+        }
+        return mode == Mode.NEAREST
+            ? (long) costFormula.eval(BASE_MEDIA_COST, args.number(2))
+            : (long) costFormula.eval(BASE_MEDIA_COST, args.batch().size(), args.number(2));
+    }
+    
+    /**
+     * 查询区域内的目标，写入 args.batch()
+     */
+    @Override
+    protected void prepare(ActionArgs args, CastingEnvironment env) {
+        Vec3 first = args.vector(0);
+        AreaQuery query;
+        Vec3 origin;
+        if (shape == Shape.RADIUS) {
+            env.assertVecInRange(first);
+            origin = first;
+            query = AreaQuery.radius(env, first, args.number(1));
+        } else {
+            Vec3 second = args.vector(1);
+            origin = first.add(second).scale(0.5);
+            env.assertVecInRange(origin);
+            query = AreaQuery.box(env, first, second);
+        }
+        
+        if (mode == Mode.NEAREST) {
+            // 只保留离区域中心最近的一个目标
+            LivingEntity[] nearest = new LivingEntity[1];
+            double[] nearestDistance = { Double.POSITIVE_INFINITY };
+            query.forEach(env, entity -> {
+                double distance = entity.distanceToSqr(origin);
+                if (distance < nearestDistance[0]) {
+                    nearestDistance[0] = distance;
+                    nearest[0] = entity;
+                }
+            });
+            if (nearest[0] != null) {
+                args.batch().add(nearest[0]);
+            }
+            return;
+        }
+        
+        query.forEach(env, args.batch()::add);
+    }
+    
+    @Override
+    protected List<Iota> apply(ActionArgs args, CastingEnvironment env) {
+        DamageBatch batch = args.batch();
+        if (batch.isEmpty()) {
+            return List.of();
+        }
+        
+        float damage;
+        if (mode == Mode.CONSUME_ALL) {
+            // 一次遍历提取背包中的所有媒体，按各类型的血量扣除比例得到总伤害
+            MediaDrain drain = InventoryMediaDrain.drainAll(env);
+            if (DCoreTrace.recording) DCoreTrace.record(TraceEvent.OP_COST, drain.totalConsumed());
+            if (drain.damage() <= 0) {
+                return List.of();
+            }
+            damage = (float) damageFormula.eval(drain.damage(), batch.size());
+        } else {
+            damage = (float) damageFormula.eval(args.number(2));
+        }
+        
+        if (DCoreTrace.recording) DCoreTrace.recordDouble(TraceEvent.OP_DAMAGE, damage, batch.size());
+        
+        DamageSource damageSource = batch.targets().get(0).damageSources().source(
+            ResourceKey.create(Registries.DAMAGE_TYPE, DamageTypes.MAGIC.location()),
+            env.getCastingEntity()
+        );
+        batch.hurtAll(damageSource, damage);
+        
+        // 产生粒子效果（所有目标合并为一个网络包）
+        batch.produceParticles(env);
+        return List.of();
+    }
+}
@@ -1,36 +1,20 @@
 package com.dcore.hex;
 
 import at.petrak.hexcasting.api.casting.ParticleSpray;
-import at.petrak.hexcasting.api.casting.castables.ConstMediaAction;
 import at.petrak.hexcasting.api.casting.eval.CastingEnvironment;
-import at.petrak.hexcasting.api.casting.eval.OperationResult;
-import at.petrak.hexcasting.api.casting.eval.sideeffects.OperatorSideEffect;
-import at.petrak.hexcasting.api.casting.eval.vm.CastingImage;
-import at.petrak.hexcasting.api.casting.eval.vm.SpellContinuation;
-import at.petrak.hexcasting.api.casting.iota.EntityIota;
 import at.petrak.hexcasting.api.casting.iota.Iota;
-import at.petrak.hexcasting.api.casting.mishaps.MishapInvalidIota;
-import at.petrak.hexcasting.api.casting.mishaps.MishapNotEnoughArgs;
-import at.petrak.hexcasting.api.addldata.ADMediaHolder;
-import at.petrak.hexcasting.xplat.IXplatAbstractions;
-import at.petrak.hexcasting.common.lib.hex.HexEvalSounds;
-import com.dcore.media.MediaType;
-import com.dcore.media.MediaTypeRegistry;
-import com.dcore.media.TypedMediaHolder;
+import com.dcore.media.InventoryMediaDrain;
+import com.dcore.media.core.MediaDrain;
+import com.dcore.trace.DCoreTrace;
+import com.dcore.trace.TraceEvent;
 import net.minecraft.core.registries.Registries;
 import net.minecraft.resources.ResourceKey;
-import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.damagesource.DamageSource;
 import net.minecraft.world.damagesource.DamageSources;
 import net.minecraft.world.damagesource.DamageTypes;
 import net.minecraft.world.entity.Entity;
-import net.minecraft.world.entity.player.Inventory;
-import net.minecraft.world.item.ItemStack;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * 消耗所有媒体伤害单个实体
@@ -38,12 +22,12 @@ import java.util.Map;
  * 消耗：背包中所有可用的媒体
  * 伤害：根据每种媒体类型的血量扣除比例计算总伤害
  */
-public class OpConsumeAllMediaDamageEntity implements ConstMediaAction {
+public class OpConsumeAllMediaDamageEntity extends DCoreAction {
     public static final OpConsumeAllMediaDamageEntity INSTANCE = new OpConsumeAllMediaDamageEntity();
     
-    @Override
-    public int getArgc() {
-        return 1; // 只需要实体参数
+    private OpConsumeAllMediaDamageEntity() {
+        // 只需要实体参数
+        super(ArgSchema.of(ArgSchema.Kind.ENTITY));
     }
     
     @Override
@@ -52,27 +36,18 @@ public class OpConsumeAllMediaDamageEntity implements ConstMediaAction {
     }
     
     @Override
-    public ConstMediaAction.CostMediaActionResult executeWithOpCount(List<? extends Iota> args, CastingEnvironment env) {
-        List<Iota> resultStack = execute(args, env);
-        return new ConstMediaAction.CostMediaActionResult(resultStack, 1);
+    protected long cost(ActionArgs args, CastingEnvironment env) {
+        return 0; // 在 apply 中直接从容器提取
     }
     
     @Override
-    public List<Iota> execute(List<? extends Iota> args, CastingEnvironment env) {
-        if (args.size() < 1) {
-            throw new MishapNotEnoughArgs(1, args.size());
-        }
-        
-        // 获取实体
-        Iota entityIota = args.get(0);
-        if (!(entityIota instanceof EntityIota)) {
-            throw MishapInvalidIota.ofType(entityIota, 0, "entity");
-        }
-        Entity target = ((EntityIota) entityIota).getEntity();
-        env.assertEntityInRange(target);
+    protected List<Iota> apply(ActionArgs args, CastingEnvironment env) {
+        Entity target = args.entity(0);
         
-        // 获取并消耗所有媒体，计算总伤害
-        float totalDamage = consumeAllMediaAndCalculateDamage(env);
+        // 一次遍历提取背包中的所有媒体，按各类型的血量扣除比例得到总伤害
+        MediaDrain drain = InventoryMediaDrain.drainAll(env);
+        if (DCoreTrace.recording) DCoreTrace.record(TraceEvent.OP_COST, drain.totalConsumed());
+        float totalDamage = (float) DCoreFormulas.CONSUME_ALL_MEDIA_DAMAGE_ENTITY_DAMAGE.eval(drain.damage());
         
         if (totalDamage > 0) {
             // 对实体造成伤害
@@ -82,7 +57,7 @@ public class OpConsumeAllMediaDamageEntity implements ConstMediaAction {
                 env.getCastingEntity()
             );
             
-            target.hurt(damageSource, totalDamage);
+            DeferredDamage.hurt(target, damageSource, totalDamage);
             
             // 产生粒子效果
             double eyeHeight = target.getEyeHeight();
@@ -94,145 +69,4 @@ public class OpConsumeAllMediaDamageEntity implements ConstMediaAction {
         
         return List.of();
     }
-    
-    /**
-     * 消耗所有媒体并计算总伤害
-     * @param env 施法环境
-     * @return 总伤害值
-     */
-    private float consumeAllMediaAndCalculateDamage(CastingEnvironment env) {
-        if (!(env.getCastingEntity() instanceof ServerPlayer player)) {
-            return 0;
-        }
-        
-        Inventory inventory = player.getInventory();
-        Map<MediaType, Long> mediaByType = new HashMap<>();
-        
-        // 遍历背包，收集所有媒体
-        for (int i = 0; i < inventory.getContainerSize(); i++) {
-            ItemStack stack = inventory.getItem(i);
-            if (stack.isEmpty()) continue;
-            
-            ADMediaHolder holder = IXplatAbstractions.INSTANCE.findMediaHolder(stack);
-            if (holder == null) continue;
-            
-            MediaType mediaType = MediaType.STANDARD;
-            if (holder instanceof TypedMediaHolder typedHolder) {
-                mediaType = typedHolder.getMediaType();
-            }
-            
-            long mediaAmount = holder.getMedia();
-            if (mediaAmount > 0) {
-                mediaByType.put(mediaType, mediaByType.getOrDefault(mediaType, 0L) + mediaAmount);
-            }
-        }
-        
-        // 消耗所有媒体并计算总伤害
-        long totalMediaConsumed = 0;
-        float totalDamage = 0;
-        
-        for (Map.Entry<MediaType, Long> entry : mediaByType.entrySet()) {
-            MediaType mediaType = entry.getKey();
-            long mediaAmount = entry.getValue();
-            
-            // 消耗媒体
-            long consumed = consumeMediaOfType(inventory, mediaType, mediaAmount);
-            totalMediaConsumed += consumed;
-            
-            // 根据该媒体类型的血量扣除比例计算伤害
-            double healthRate = MediaTypeRegistry.getMediaTypeHealthRate(mediaType);
-            totalDamage += (float) (consumed / healthRate);
-        }
-        
-        return totalDamage;
-    }
-    
-    /**
-     * 消耗指定类型的所有媒体
-     */
-    private long consumeMediaOfType(Inventory inventory, MediaType mediaType, long maxAmount) {
-        long totalConsumed = 0;
-        
-        for (int i = 0; i < inventory.getContainerSize(); i++) {
-            if (totalConsumed >= maxAmount) {
-                break;
-            }
-            
-            ItemStack stack = inventory.getItem(i);
-            if (stack.isEmpty()) continue;
-            
-            ADMediaHolder holder = IXplatAbstractions.INSTANCE.findMediaHolder(stack);
-            if (holder == null) continue;
-            
-            MediaType holderType = MediaType.STANDARD;
-            if (holder instanceof TypedMediaHolder typedHolder) {
-                holderType = typedHolder.getMediaType();
-            }
-            
-            if (holderType == mediaType) {
-                long remaining = maxAmount - totalConsumed;
-                long consumed = holder.withdrawMedia(remaining, false);
-                totalConsumed += consumed;
-            }
-        }
-        
-        return totalConsumed;
-    }
-    
-    @Override
-    public OperationResult operate(CastingEnvironment env, CastingImage image, SpellContinuation continuation) {
-        List<Iota> stack = new ArrayList<>(image.getStack());
-        
-        if (getArgc() > stack.size()) {
-            throw new MishapNotEnoughArgs(getArgc(), stack.size());
-        }
-        List<Iota> args = new ArrayList<>(stack.subList(stack.size() - getArgc(), stack.size()));
-        stack.subList(stack.size() - getArgc(), stack.size()).clear();
-        
-        ConstMediaAction.CostMediaActionResult result = executeWithOpCount(args, env);
-        stack.addAll(result.getResultStack());
-        
-        // 计算实际消耗的媒体量（用于显示）
-        long totalMediaConsumed = calculateTotalMediaConsumed(env);
-        
-        List<OperatorSideEffect> sideEffects = new ArrayList<>();
-        if (totalMediaConsumed > 0) {
-            sideEffects.add(new OperatorSideEffect.ConsumeMedia(totalMediaConsumed));
-        }
-        
-        CastingImage image2 = image.copy(
-            stack,
-            image.getParenCount(),
-            image.getParenthesized(),
-            image.getEscapeNext(),
-            image.getOpsConsumed() + result.getOpCount(),
-            image.getUserData()
-        );
-        return new OperationResult(image2, sideEffects, continuation, HexEvalSounds.NORMAL_EXECUTE);
-    }
-    
-    /**
-     * 计算总媒体消耗量（用于显示）
-     */
-    private long calculateTotalMediaConsumed(CastingEnvironment env) {
-        if (!(env.getCastingEntity() instanceof ServerPlayer player)) {
-            return 0;
-        }
-        
-        Inventory inventory = player.getInventory();
-        long total = 0;
-        
-        for (int i = 0; i < inventory.getContainerSize(); i++) {
-            ItemStack stack = inventory.getItem(i);
-            if (stack.isEmpty()) continue;
-            
-            ADMediaHolder holder = IXplatAbstractions.INSTANCE.findMediaHolder(stack);
-            if (holder == null) continue;
-            
-            total += holder.getMedia();
-        }
-        
-        return total;
-    }
 }
-
@@ -0,0 +1,134 @@
+package com.dcore.media;
+
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 单个图案执行期间的状态
+ * 由 CastFrames 在受管理的动作 precheck 之后压栈、PatternIota.execute 返回时出栈，对象在栈中复用
+ * - 当前动作 ID 和它的媒体需求（在 precheck 之后解析一次，提取时不再查表）
+ * - 取消标记和媒体消耗量（血量扣除超过最大生命值时设置）
+ * - 是否已经发送过取消消息（避免重复发送）
+ * - Pre hook 传递给 extractMediaEnvironment 的 cost（供 TypedMediaExtractorPost 检查）
+ */
+public final class CastFrame {
+    private static final long NO_PRE_HOOK_COST = Long.MIN_VALUE;
+
+    private ResourceLocation actionId;
+    private MediaRequirement requirement;
+    private Object owner;
+    private boolean cancel;
+    private long cancelMediaCost;
+    private boolean messageSent;
+    private long preHookCost = NO_PRE_HOOK_COST;
+
+    /**
+     * 清除所有状态，在压栈复用时调用
+     */
+    void reset(Object owner) {
+        this.owner = owner;
+        actionId = null;
+        requirement = null;
+        preHookCost = NO_PRE_HOOK_COST;
+        clearCancellation();
+    }
+
+    /**
+     * 获取当前执行的动作 ID
+     * @return 动作 ID，如果没有则返回 null
+     */
+    @Nullable
+    public ResourceLocation getActionId() {
+        return actionId;
+    }
+
+    /**
+     * 获取当前动作的媒体需求
+     * @return 媒体需求，动作已经结算或不受管理时返回 null
+     */
+    @Nullable
+    public MediaRequirement getRequirement() {
+        return requirement;
+    }
+
+    public void setAction(ResourceLocation actionId, MediaRequirement requirement) {
+        this.actionId = actionId;
+        this.requirement = requirement;
+    }
+
+    /**
+     * 媒体已经真实提交，该帧的动作不再计费
+     */
+    public void clearAction() {
+        actionId = null;
+        requirement = null;
+    }
+
+    Object owner() {
+        return owner;
+    }
+
+    /**
+     * 标记法术应该被取消，并记录媒体消耗量
+     */
+    public void markForCancellation(long mediaAmount) {
+        cancel = true;
+        cancelMediaCost = mediaAmount;
+    }
+
+    /**
+     * 检查法术是否应该被取消
+     */
+    public boolean shouldCancel() {
+        return cancel;
+    }
+
+    /**
+     * 获取记录的媒体消耗量
+     */
+    public long getMediaCost() {
+        return cancelMediaCost;
+    }
+
+    /**
+     * 标记已经发送过取消消息
+     */
+    public void markMessageSent() {
+        messageSent = true;
+    }
+
+    /**
+     * 检查是否已经发送过取消消息
+     */
+    public boolean isMessageSent() {
+        return messageSent;
+    }
+
+    /**
+     * 清除取消标记、媒体消耗量和消息标记
+     */
+    public void clearCancellation() {
+        cancel = false;
+        cancelMediaCost = 0L;
+        messageSent = false;
+    }
+
+    /**
+     * 记录 Pre hook 传递给 extractMediaEnvironment 的 cost
+     */
+    public void recordPreHookCost(long cost) {
+        preHookCost = cost;
+    }
+
+    public boolean hasPreHookCost() {
+        return preHookCost != NO_PRE_HOOK_COST;
+    }
+
+    public long getPreHookCost() {
+        return preHookCost;
+    }
+
+    public void clearPreHookCost() {
+        preHookCost = NO_PRE_HOOK_COST;
+    }
+}
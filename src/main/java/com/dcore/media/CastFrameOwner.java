@@ -0,0 +1,12 @@
+package com.dcore.media;
+
+/**
+ * 由 ActionContextMixin 混入 PatternIota 的接口
+ * 记录该图案当前是否在施法环境的帧栈上压入了帧，其他 Mixin 据此跳过不受管理的动作
+ */
+public interface CastFrameOwner {
+    /**
+     * 该图案是否有尚未出栈的帧
+     */
+    boolean dcore$hasCastFrame();
+}
@@ -0,0 +1,116 @@
+package com.dcore.media;
+
+import at.petrak.hexcasting.api.casting.eval.CastingEnvironment;
+import at.petrak.hexcasting.api.casting.eval.CastingEnvironmentComponent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * 施法环境上的图案帧栈
+ * 作为扩展挂载在 CastingEnvironment 上，取代原来分散在 ActionContext、SpellCancellationContext
+ * 和 TypedMediaExtractorPost 中的 ThreadLocal：状态随施法环境存在，不会泄漏到其他施法或其他线程
+ *
+ * - 栈底是一个常驻的根帧，表示不在任何受管理的动作中
+ * - 只有受 d-core 管理的动作才会压入新帧（见 ActionContextMixin），返回时弹出，嵌套执行各自使用自己的帧；
+ *   其他动作完全不访问帧栈
+ * - 图案返回后，虚拟机才执行 ConsumeMedia 副作用提交媒体，此时该图案的帧已经出栈；
+ *   因此出栈的帧会保留为"刚返回的帧"，直到提交完成或下一个图案开始
+ */
+public final class CastFrames implements CastingEnvironmentComponent {
+    public static final CastingEnvironmentComponent.Key<CastFrames> KEY = new CastingEnvironmentComponent.Key<CastFrames>() {};
+
+    // 帧对象在栈中复用，只在嵌套层数超过以往最大值时分配
+    private CastFrame[] frames = { new CastFrame(), new CastFrame(), new CastFrame(), new CastFrame() };
+    private int depth;
+    @Nullable
+    private CastFrame returned;
+
+    @Override
+    public @NotNull Key<CastFrames> getKey() {
+        return KEY;
+    }
+
+    /**
+     * 获取施法环境上的帧栈，没有时创建并挂载
+     */
+    public static CastFrames of(CastingEnvironment environment) {
+        CastFrames frames = environment.getExtension(KEY);
+        if (frames == null) {
+            frames = new CastFrames();
+            environment.addExtension(frames);
+        }
+        return frames;
+    }
+
+    /**
+     * 获取施法环境当前的图案帧
+     */
+    public static CastFrame current(CastingEnvironment environment) {
+        return of(environment).current();
+    }
+
+    public CastFrame current() {
+        return frames[depth];
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * 开始执行一个受管理的动作
+     * @param owner 压栈的图案，出栈时用于找到对应的帧
+     */
+    public CastFrame push(Object owner) {
+        returned = null;
+        depth++;
+        if (depth == frames.length) {
+            int oldLength = frames.length;
+            frames = Arrays.copyOf(frames, oldLength * 2);
+            for (int i = oldLength; i < frames.length; i++) {
+                frames[i] = new CastFrame();
+            }
+        }
+        CastFrame frame = frames[depth];
+        frame.reset(owner);
+        return frame;
+    }
+
+    /**
+     * 图案执行结束，弹出该图案压入的帧
+     * 如果中间的图案因为异常没有正常返回，它们留下的帧一并弹出；找不到该图案的帧时不做任何事
+     * 如果帧上还有动作（媒体尚未真实提交），保留为刚返回的帧，供随后的 ConsumeMedia 提交使用
+     */
+    public void pop(Object owner) {
+        int target = depth;
+        while (target > 0 && frames[target].owner() != owner) {
+            target--;
+        }
+        if (target == 0) {
+            return;
+        }
+        CastFrame frame = frames[target];
+        depth = target - 1;
+        returned = frame.getActionId() != null ? frame : null;
+    }
+
+    /**
+     * 获取本次媒体提取应当计入的帧
+     * 真实提交时，如果有刚返回的图案（ConsumeMedia 副作用），计入该图案；否则计入当前帧
+     */
+    public CastFrame chargingFrame(boolean simulate) {
+        if (!simulate && returned != null) {
+            return returned;
+        }
+        return frames[depth];
+    }
+
+    /**
+     * 媒体已经真实提交，不再保留刚返回的帧
+     */
+    public void finishCommit() {
+        returned = null;
+    }
+}
@@ -0,0 +1,302 @@
+package com.dcore.media;
+
+import at.petrak.hexcasting.api.addldata.ADMediaHolder;
+import at.petrak.hexcasting.api.block.circle.BlockEntityAbstractImpetus;
+import at.petrak.hexcasting.api.casting.eval.env.CircleCastEnv;
+import com.dcore.media.core.MediaSource;
+import com.dcore.media.core.MediaSourceBuckets;
+import com.dcore.media.core.PriorityBuckets;
+import com.dcore.media.core.RestorableSource;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.world.Container;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.Level;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 法术环的类型化媒体源索引
+ * 法术环施法时没有背包和生命值，媒体来自环本身的存储：
+ * - 激发器（impetus）中的媒体，作为 STANDARD 类型，与电池相同的消耗优先级
+ * - 配置 spell_circle/container_sources 开启时，还有与激发器相邻的容器方块（箱子等）中的媒体物品，
+ *   类型和优先级与玩家背包中相同；默认关闭，放在激发器旁边的箱子（包括玩家自己的储物箱）不会被取空。
+ *   从容器中提取或恢复后调用 setChanged，修改随区块保存
+ *
+ * 每个激发器方块实体对应一个索引，每个 tick 最多重建一次：
+ * 大型法术环一个 tick 内执行很多次施法，每个动作都从缓存的媒体源中查找，不再重新查找相邻方块和物品容器
+ * 重建时与上次位置相同、堆栈没有被替换的媒体源直接沿用，各类型的桶由 PriorityBuckets 计数排序，
+ * 相邻容器没有变化时重建不分配任何对象
+ * 同一 tick 内物品被取走时，提取按实际数量进行，差额由 MediaPlanner 并入不足部分
+ * 只在服务器线程上访问
+ */
+public final class CircleMediaIndex implements MediaSourceBuckets {
+    private static final MediaSource[] EMPTY = new MediaSource[0];
+
+    // 激发器被移除后索引随之回收
+    private static final Map<BlockEntityAbstractImpetus, CircleMediaIndex> INDICES = new WeakHashMap<>();
+
+    private static volatile boolean containerSources;
+
+    private final BlockEntityAbstractImpetus impetus;
+    private final ImpetusSource impetusSource;
+    private final PriorityBuckets buckets = new PriorityBuckets(MediaSource[]::new);
+    private MediaSource[] all = EMPTY;
+    // 重建时复用，只在媒体源数量增加时扩容
+    private MediaSource[] scratch = new MediaSource[8];
+    private long builtAt = Long.MIN_VALUE;
+    private int builtGeneration;
+    // 每次重建时递增，用于判断 simulate 生成的提取计划是否仍然有效
+    private int version;
+
+    private CircleMediaIndex(BlockEntityAbstractImpetus impetus) {
+        this.impetus = impetus;
+        this.impetusSource = new ImpetusSource(impetus);
+    }
+
+    /**
+     * 获取法术环的索引，本 tick 还没有重建过时先重建
+     * @return null 如果激发器已经不存在
+     */
+    @Nullable
+    public static CircleMediaIndex of(CircleCastEnv environment) {
+        BlockEntityAbstractImpetus impetus = environment.getImpetus();
+        if (impetus == null) {
+            return null;
+        }
+        CircleMediaIndex index = INDICES.computeIfAbsent(impetus, CircleMediaIndex::new);
+        index.ensureFresh(environment.getWorld().getGameTime());
+        return index;
+    }
+
+    /**
+     * 是否从相邻的容器方块中提取媒体物品，由配置文件设置（见 MediaTypeConfig）
+     */
+    public static void setContainerSources(boolean enabled) {
+        if (containerSources != enabled) {
+            containerSources = enabled;
+            MediaSourceIndex.invalidateAll();
+        }
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public MediaSource[] sources(int typeIndex) {
+        return buckets.sources(typeIndex);
+    }
+
+    /**
+     * 获取所有媒体源（激发器在前，之后按方向和槽位顺序）
+     */
+    public MediaSource[] allSources() {
+        return all;
+    }
+
+    private void ensureFresh(long gameTime) {
+        // 媒体物品查找表或注册表变化时（见 MediaSourceIndex.invalidateAll）同一 tick 内也重建
+        int generation = MediaSourceIndex.generation();
+        if (gameTime == builtAt && builtGeneration == generation) {
+            return;
+        }
+        if (builtGeneration != generation) {
+            // 物品的媒体容器可能已经不同，不能沿用上次的媒体源
+            all = EMPTY;
+            builtGeneration = generation;
+        }
+        rebuild();
+        builtAt = gameTime;
+        version++;
+    }
+
+    private void rebuild() {
+        int count = 0;
+        scratch[count++] = impetusSource;
+        Level level = impetus.getLevel();
+        if (containerSources && level != null) {
+            BlockPos pos = impetus.getBlockPos();
+            for (Direction direction : Direction.values()) {
+                if (level.getBlockEntity(pos.relative(direction)) instanceof Container container) {
+                    count = addContainer(container, count);
+                }
+            }
+        }
+
+        all = count == all.length && sameSources(count) ? all : Arrays.copyOf(scratch, count);
+        buckets.rebuild(scratch, count, MediaType.count());
+        // 不再持有已经离开容器的物品
+        Arrays.fill(scratch, count, scratch.length, null);
+    }
+
+    private int addContainer(Container container, int count) {
+        for (int slot = 0; slot < container.getContainerSize(); slot++) {
+            ItemStack stack = container.getItem(slot);
+            if (stack.isEmpty()) {
+                continue;
+            }
+            MediaSource source = reuse(count, container, stack, slot);
+            if (source == null) {
+                MediaSourceIndex.Source created = MediaSourceIndex.createSource(stack, slot);
+                if (created == null) {
+                    continue;
+                }
+                source = new ContainerSource(container, created);
+            }
+            if (count == scratch.length) {
+                scratch = Arrays.copyOf(scratch, count * 2);
+            }
+            scratch[count++] = source;
+        }
+        return count;
+    }
+
+    /**
+     * 上次重建时同一位置的媒体源仍然是同一个容器槽位中的同一个堆栈时沿用
+     */
+    @Nullable
+    private MediaSource reuse(int position, Container container, ItemStack stack, int slot) {
+        if (position < all.length && all[position] instanceof ContainerSource previous
+            && previous.container() == container
+            && previous.source().stack() == stack
+            && previous.source().slot() == slot) {
+            return previous;
+        }
+        return null;
+    }
+
+    private boolean sameSources(int count) {
+        for (int i = 0; i < count; i++) {
+            if (all[i] != scratch[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 相邻容器方块中的媒体物品，提取或恢复后标记容器需要保存
+     */
+    private record ContainerSource(Container container, MediaSourceIndex.Source source)
+        implements MediaSource, RestorableSource {
+        @Override
+        public long typeMask() {
+            return source.typeMask();
+        }
+
+        @Override
+        public int priority() {
+            return source.priority();
+        }
+
+        @Override
+        public long simulateWithdraw(long amount) {
+            return source.simulateWithdraw(amount);
+        }
+
+        @Override
+        public long withdraw(long amount) {
+            long taken = source.withdraw(amount);
+            if (taken > 0) {
+                container.setChanged();
+            }
+            return taken;
+        }
+
+        @Override
+        public long withdrawAll() {
+            long taken = source.withdrawAll();
+            if (taken > 0) {
+                container.setChanged();
+            }
+            return taken;
+        }
+
+        @Override
+        public int countState() {
+            return source.countState();
+        }
+
+        @Override
+        public long mediaState() {
+            return source.mediaState();
+        }
+
+        @Override
+        public void restoreState(int count, long media) {
+            source.restoreState(count, media);
+            container.setChanged();
+        }
+    }
+
+    /**
+     * 激发器中的媒体，负数表示无限（与 HexMod 的法术环提取相同）
+     */
+    private record ImpetusSource(BlockEntityAbstractImpetus impetus) implements MediaSource, RestorableSource {
+        @Override
+        public long typeMask() {
+            return MediaType.STANDARD.bit();
+        }
+
+        @Override
+        public int priority() {
+            return ADMediaHolder.BATTERY_PRIORITY;
+        }
+
+        @Override
+        public long simulateWithdraw(long amount) {
+            long media = impetus.getMedia();
+            if (media < 0) {
+                return amount;
+            }
+            return Math.min(amount, media);
+        }
+
+        @Override
+        public long withdraw(long amount) {
+            long media = impetus.getMedia();
+            if (media < 0) {
+                return amount;
+            }
+            long taken = Math.min(amount, media);
+            if (taken > 0) {
+                impetus.setMedia(media - taken);
+            }
+            return taken;
+        }
+
+        /**
+         * 无限的媒体不能整体提取，按没有媒体处理
+         */
+        @Override
+        public long withdrawAll() {
+            long media = impetus.getMedia();
+            if (media <= 0) {
+                return 0;
+            }
+            impetus.setMedia(0);
+            return media;
+        }
+
+        @Override
+        public int countState() {
+            return 0;
+        }
+
+        @Override
+        public long mediaState() {
+            return impetus.getMedia();
+        }
+
+        @Override
+        public void restoreState(int count, long media) {
+            if (impetus.getMedia() != media) {
+                impetus.setMedia(media);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.dcore.media;
+
+import com.dcore.media.core.MediaAllocation;
+import net.minecraft.resources.ResourceLocation;
+
+/**
+ * 媒体提取计划
+ * 由 simulate 阶段生成并缓存在 TypedMediaExtractor 上，真实执行阶段校验后直接应用
+ * 这样 simulate 和真实执行使用同一份计算结果（媒体源分配、血量扣除、是否取消），不会出现两次计算不一致
+ *
+ * 分配结果本身由 media-core 的 MediaAllocation 保存，这里只额外记录用于校验的动作、需求和背包版本
+ * 计划对象由 TypedMediaExtractor 持有并反复使用，稳定状态下生成和应用计划都不分配对象
+ */
+public final class ExtractionPlan extends MediaAllocation {
+    // 生成计划时的动作 ID、媒体需求（成本向量）和需要提取的媒体量
+    private ResourceLocation actionId;
+    private MediaRequirement requirement;
+    private long cost;
+    // 生成计划时背包索引的版本号，玩家以外的施法者为 -1
+    private int inventoryVersion;
+    private boolean valid;
+
+    /**
+     * 开始生成新计划，清除上一次的提取项
+     */
+    void reset(ResourceLocation actionId, MediaRequirement requirement, long cost, int inventoryVersion) {
+        clear();
+        this.actionId = actionId;
+        this.requirement = requirement;
+        this.cost = cost;
+        this.inventoryVersion = inventoryVersion;
+        this.valid = true;
+    }
+
+    /**
+     * 标记计划已使用，不再持有媒体源的引用
+     */
+    void invalidate() {
+        clear();
+        valid = false;
+    }
+
+    /**
+     * 检查计划是否仍然适用于本次提取
+     */
+    public boolean isValidFor(ResourceLocation actionId, MediaRequirement requirement, long cost, int inventoryVersion) {
+        return valid
+            && this.cost == cost
+            && this.requirement == requirement
+            && this.inventoryVersion == inventoryVersion
+            && this.actionId.equals(actionId);
+    }
+
+    public ResourceLocation actionId() {
+        return actionId;
+    }
+
+    public MediaRequirement requirement() {
+        return requirement;
+    }
+
+    public long cost() {
+        return cost;
+    }
+
+    public int inventoryVersion() {
+        return inventoryVersion;
+    }
+}
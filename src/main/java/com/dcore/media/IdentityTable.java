@@ -0,0 +1,60 @@
+package com.dcore.media;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * 按对象引用查找的只读开放寻址表
+ * 用于 ResourceKey 这类被 Minecraft 驻留（intern）的键：查找只比较引用，不调用 equals/hashCode
+ * 构建后不可修改，查找不分配对象、不加锁；线性探测，容量为 2 的幂，负载因子不超过 0.5
+ */
+final class IdentityTable<K, V> {
+    private final Object[] keys;
+    private final Object[] values;
+    private final int mask;
+
+    IdentityTable(Map<? extends K, ? extends V> source) {
+        int capacity = 4;
+        while (capacity < source.size() * 2) {
+            capacity <<= 1;
+        }
+        this.keys = new Object[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+
+        for (Map.Entry<? extends K, ? extends V> entry : source.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            int i = slot(entry.getKey());
+            while (keys[i] != null && keys[i] != entry.getKey()) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = entry.getKey();
+            values[i] = entry.getValue();
+        }
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        int i = slot(key);
+        Object k;
+        while ((k = keys[i]) != null) {
+            if (k == key) {
+                return (V) values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    private int slot(Object key) {
+        int h = System.identityHashCode(key);
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h & mask;
+    }
+}
@@ -0,0 +1,41 @@
+package com.dcore.media;
+
+import at.petrak.hexcasting.api.casting.eval.CastingEnvironment;
+import at.petrak.hexcasting.api.casting.eval.env.CircleCastEnv;
+import com.dcore.media.core.MediaDrain;
+import com.dcore.media.core.MediaSource;
+import net.minecraft.server.level.ServerPlayer;
+
+/**
+ * 提取施法者背包中的所有媒体
+ * 媒体源来自背包的 MediaSourceIndex（按槽位顺序），法术环施法时来自环的 CircleMediaIndex；
+ * 结算在 media-core 的 MediaDrain 中完成，提取之前在 MediaJournal 中保存各媒体源的状态
+ */
+public final class InventoryMediaDrain {
+    private InventoryMediaDrain() {
+    }
+
+    /**
+     * 提取施法者背包（或法术环存储）中的所有媒体，其他环境不提取
+     * @return 提取结果，包含实际提取的媒体量和换算的伤害
+     */
+    public static MediaDrain drainAll(CastingEnvironment env) {
+        MediaDrain drain = new MediaDrain();
+        if (env instanceof CircleCastEnv circle) {
+            CircleMediaIndex index = CircleMediaIndex.of(circle);
+            if (index != null) {
+                MediaSource[] sources = index.allSources();
+                MediaJournal.of(env).save(sources);
+                drain.drainAll(sources, MediaTypeRegistry.snapshot().healthRatesByIndex());
+            }
+        } else if (env.getCastingEntity() instanceof ServerPlayer player) {
+            MediaSourceIndex index = MediaSourceIndex.of(player.getInventory());
+            MediaJournal journal = MediaJournal.of(env);
+            journal.track(index);
+            MediaSource[] sources = index.allSources();
+            journal.save(sources);
+            drain.drainAll(sources, MediaTypeRegistry.snapshot().healthRatesByIndex());
+        }
+        return drain;
+    }
+}
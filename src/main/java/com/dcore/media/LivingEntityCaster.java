@@ -0,0 +1,24 @@
+package com.dcore.media;
+
+import com.dcore.media.core.MediaCaster;
+import net.minecraft.world.entity.LivingEntity;
+
+/**
+ * 将 LivingEntity 适配为 media-core 的施法者
+ */
+public record LivingEntityCaster(LivingEntity entity) implements MediaCaster {
+    @Override
+    public float getHealth() {
+        return entity.getHealth();
+    }
+
+    @Override
+    public float getMaxHealth() {
+        return entity.getMaxHealth();
+    }
+
+    @Override
+    public void setHealth(float health) {
+        entity.setHealth(health);
+    }
+}
@@ -0,0 +1,212 @@
+package com.dcore.media;
+
+import com.dcore.DCore;
+import com.dcore.media.config.ItemSelector;
+import com.dcore.media.config.MediaConfig;
+import net.minecraft.core.Holder;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.item.Item;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 媒体消耗品的物品 → 描述查找表，以物品的数字 ID 为下标
+ * 启动时由 special_media_items 的全部条目一次性构建（见 DCoreMediaComponents），同一条目选中的物品共享一个描述
+ *
+ * - 单个物品和命名空间条目第一次查找时解析：单个物品直接查注册表，命名空间只遍历一次物品注册表，
+ *   开销不随条目数量线性增长；物品组件初始化早于其他模组注册物品，注册表大小变化时重新解析，
+ *   所以总是覆盖冻结后的完整注册表；这些物品注册为 MEDIA_HOLDER 组件
+ * - 标签在数据包加载后才绑定，物品组件注册时还不可用；标签条目和数据包定义的物品（见 MediaDataLoader）
+ *   在每次标签加载时（TAGS_LOADED，总在数据包加载之后）重新解析，只补充没有被前两类条目选中的物品；
+ *   这些物品没有组件，由 MediaHolderLookupMixin 在 HexMod 查找媒体容器时补上；数据包的条目优先于配置文件的标签条目
+ * - 重新解析后所有媒体源索引失效（见 MediaSourceIndex.invalidateAll）
+ */
+public final class MediaItemTable {
+    private static final StaticMediaDescriptor[] NONE = new StaticMediaDescriptor[0];
+
+    private static volatile MediaItemTable current = new MediaItemTable(List.of(), Map.of(), List.of());
+
+    private final List<ExactRule> exactRules;
+    private final Map<String, StaticMediaDescriptor> namespaces;
+    private final List<TagRule> tagRules;
+    // 单个物品和命名空间条目，按解析时的注册表大小分配
+    private volatile StaticMediaDescriptor[] fixed = NONE;
+    // 最近一次解析时不存在的单个物品
+    private List<ResourceLocation> missing = List.of();
+    private boolean missingReported;
+    // 数据包定义的物品条目，靠后的数据包在前
+    private volatile List<MediaConfig.Item> datapackItems = List.of();
+    // 最近一次标签加载时解析的标签条目和数据包条目
+    private volatile StaticMediaDescriptor[] fallback = NONE;
+
+    private record ExactRule(ResourceLocation id, StaticMediaDescriptor descriptor) {
+    }
+
+    private record TagRule(TagKey<Item> tag, StaticMediaDescriptor descriptor) {
+    }
+
+    private MediaItemTable(List<ExactRule> exactRules, Map<String, StaticMediaDescriptor> namespaces, List<TagRule> tagRules) {
+        this.exactRules = exactRules;
+        this.namespaces = namespaces;
+        this.tagRules = tagRules;
+    }
+
+    public static MediaItemTable current() {
+        return current;
+    }
+
+    static void install(MediaItemTable table) {
+        current = table;
+    }
+
+    /**
+     * 构建查找表，只整理条目，物品在第一次查找时解析
+     */
+    static MediaItemTable build(List<MediaConfig.Item> items) {
+        List<ExactRule> exactRules = new ArrayList<>();
+        Map<String, StaticMediaDescriptor> namespaces = new HashMap<>();
+        List<TagRule> tagRules = new ArrayList<>();
+        for (MediaConfig.Item item : items) {
+            StaticMediaDescriptor descriptor = new StaticMediaDescriptor(item.amount(), item.priority(), item.type());
+            if (item.selector() instanceof ItemSelector.Exact exact) {
+                exactRules.add(new ExactRule(exact.id(), descriptor));
+            } else if (item.selector() instanceof ItemSelector.Namespace namespace) {
+                namespaces.putIfAbsent(namespace.namespace(), descriptor);
+            } else if (item.selector() instanceof ItemSelector.Tag tag) {
+                tagRules.add(new TagRule(tag.tag(), descriptor));
+            }
+        }
+        return new MediaItemTable(List.copyOf(exactRules), Map.copyOf(namespaces), List.copyOf(tagRules));
+    }
+
+    /**
+     * 单个物品或命名空间条目的描述，物品组件注册时使用
+     */
+    @Nullable
+    public StaticMediaDescriptor fixedDescriptor(Item item) {
+        StaticMediaDescriptor[] fixed = fixedTable();
+        int id = BuiltInRegistries.ITEM.getId(item);
+        return id >= 0 && id < fixed.length ? fixed[id] : null;
+    }
+
+    /**
+     * 标签条目或数据包条目的描述（单个物品和命名空间条目选中的物品不在其中）
+     */
+    @Nullable
+    public StaticMediaDescriptor fallbackDescriptor(Item item) {
+        StaticMediaDescriptor[] fallback = this.fallback;
+        int id = BuiltInRegistries.ITEM.getId(item);
+        return id >= 0 && id < fallback.length ? fallback[id] : null;
+    }
+
+    /**
+     * 按当前的注册表大小解析单个物品和命名空间条目，注册表变大后重新解析
+     */
+    private StaticMediaDescriptor[] fixedTable() {
+        StaticMediaDescriptor[] fixed = this.fixed;
+        if (fixed.length == BuiltInRegistries.ITEM.size()) {
+            return fixed;
+        }
+        synchronized (this) {
+            if (this.fixed.length != BuiltInRegistries.ITEM.size()) {
+                resolveFixed();
+            }
+            return this.fixed;
+        }
+    }
+
+    private void resolveFixed() {
+        StaticMediaDescriptor[] resolved = new StaticMediaDescriptor[BuiltInRegistries.ITEM.size()];
+        List<ResourceLocation> missing = new ArrayList<>();
+        for (ExactRule rule : exactRules) {
+            Item target = BuiltInRegistries.ITEM.getOptional(rule.id()).orElse(null);
+            if (target == null) {
+                missing.add(rule.id());
+                continue;
+            }
+            int id = BuiltInRegistries.ITEM.getId(target);
+            if (resolved[id] == null) {
+                resolved[id] = rule.descriptor();
+            }
+        }
+        if (!namespaces.isEmpty()) {
+            for (Item target : BuiltInRegistries.ITEM) {
+                int id = BuiltInRegistries.ITEM.getId(target);
+                if (resolved[id] == null) {
+                    resolved[id] = namespaces.get(BuiltInRegistries.ITEM.getKey(target).getNamespace());
+                }
+            }
+        }
+        this.missing = List.copyOf(missing);
+        fixed = resolved;
+        MediaSourceIndex.invalidateAll();
+    }
+
+    /**
+     * 替换数据包定义的物品条目，下一次标签加载时生效
+     * @param items 靠后的数据包在前（同类条目取第一个）
+     */
+    public void setDatapackItems(List<MediaConfig.Item> items) {
+        datapackItems = List.copyOf(items);
+    }
+
+    /**
+     * 按当前绑定的标签重新解析标签条目和数据包条目，标签加载后调用
+     */
+    public synchronized void bindTags() {
+        StaticMediaDescriptor[] fixed = fixedTable();
+        // 标签加载时注册表已经冻结，不存在的物品不会再出现
+        if (!missingReported && !missing.isEmpty()) {
+            missingReported = true;
+            DCore.LOGGER.warn("[MediaItemTable] media_types.json 中有 {} 个物品不存在，已跳过: {}", missing.size(), missing);
+        }
+        List<MediaConfig.Item> datapackItems = this.datapackItems;
+        if (tagRules.isEmpty() && datapackItems.isEmpty()) {
+            fallback = NONE;
+            MediaSourceIndex.invalidateAll();
+            return;
+        }
+        StaticMediaDescriptor[] resolved = new StaticMediaDescriptor[BuiltInRegistries.ITEM.size()];
+        // 数据包条目与配置文件相同：单个物品优先于命名空间，命名空间优先于标签
+        Map<String, StaticMediaDescriptor> datapackNamespaces = new HashMap<>();
+        List<TagRule> rules = new ArrayList<>();
+        for (MediaConfig.Item item : datapackItems) {
+            StaticMediaDescriptor descriptor = new StaticMediaDescriptor(item.amount(), item.priority(), item.type());
+            if (item.selector() instanceof ItemSelector.Exact exact) {
+                BuiltInRegistries.ITEM.getOptional(exact.id())
+                    .ifPresent(target -> fill(resolved, fixed, BuiltInRegistries.ITEM.getId(target), descriptor));
+            } else if (item.selector() instanceof ItemSelector.Namespace namespace) {
+                datapackNamespaces.putIfAbsent(namespace.namespace(), descriptor);
+            } else if (item.selector() instanceof ItemSelector.Tag tag) {
+                rules.add(new TagRule(tag.tag(), descriptor));
+            }
+        }
+        if (!datapackNamespaces.isEmpty()) {
+            for (Item target : BuiltInRegistries.ITEM) {
+                fill(resolved, fixed, BuiltInRegistries.ITEM.getId(target),
+                    datapackNamespaces.get(BuiltInRegistries.ITEM.getKey(target).getNamespace()));
+            }
+        }
+        rules.addAll(tagRules);
+        for (TagRule rule : rules) {
+            for (Holder<Item> holder : BuiltInRegistries.ITEM.getTagOrEmpty(rule.tag())) {
+                fill(resolved, fixed, BuiltInRegistries.ITEM.getId(holder.value()), rule.descriptor());
+            }
+        }
+        fallback = resolved;
+        MediaSourceIndex.invalidateAll();
+    }
+
+    private static void fill(StaticMediaDescriptor[] resolved, StaticMediaDescriptor[] fixed, int id,
+                             @Nullable StaticMediaDescriptor descriptor) {
+        if (descriptor != null && resolved[id] == null && (id >= fixed.length || fixed[id] == null)) {
+            resolved[id] = descriptor;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.dcore.media;
+
+import at.petrak.hexcasting.api.casting.eval.CastResult;
+import at.petrak.hexcasting.api.casting.eval.CastingEnvironment;
+import at.petrak.hexcasting.api.casting.eval.CastingEnvironmentComponent;
+import at.petrak.hexcasting.api.casting.eval.sideeffects.OperatorSideEffect;
+import at.petrak.hexcasting.api.casting.eval.vm.CastingImage;
+import com.dcore.media.core.CachedMedia;
+import com.dcore.media.core.MediaAllocation;
+import com.dcore.media.core.MediaLedger;
+import com.dcore.media.core.MediaSource;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 施法期间物品容器媒体量的写回缓存，以及图案失败时的提取回滚
+ * 作为扩展挂载在 CastingEnvironment 上（见 TypedMediaExtractorRegistration）；检查点和恢复由 media-core 的 MediaLedger 完成
+ *
+ * - 容器第一次参与提取时登记：读取一次 NBT 中的媒体量，之后的 getMedia/setMedia/withdrawMedia 只读写缓存的 long
+ * - 每个 iota 执行之前（CastingVMMixin）和执行结束时（PostExecution）提交检查点，无论它是不是图案、是否经过 precheck；
+ *   上一个 iota 的副作用在它的 PostExecution 之后才提取媒体，由下一步开始时的提交计入；
+ *   之后的 iota 失败时只恢复它自己的提取，已经结束的 iota 花费的媒体不会被退回
+ * - 修改只标记为脏，施法结束（PostCast）时每个容器写回一次 NBT 并解除登记
+ * - 缓存期间 NBT 中是旧值，只有法术（AttemptSpell 副作用）会在施法中途复制、移动或丢出物品；
+ *   结果中带有法术的 iota 在 PostExecution 先写回脏值，法术执行时物品已经是最新的媒体量，
+ *   纯运算的图案（绝大多数）不写 NBT
+ * - 没有走到 PostCast 的施法（例如执行中抛出异常）由服务器 tick 结束时写回，NBT 不会跨 tick 保持旧值
+ * - iota 失败（结果中有 Mishap）时，把它的提取全部恢复：
+ *   缓存的容器回到上一次提交的值；不能缓存的媒体源（消耗品堆栈、HexMod 的容器、法术环的激发器）
+ *   在提取之前由 save 记录物品数和媒体量，恢复到记录的状态（见 RestorableSource）
+ *   由生命值支付的部分不恢复，与 HexMod 的过度施法相同
+ *
+ * 只有实现 Cacheable 的容器参与缓存，其他容器仍然直接读写物品
+ */
+public final class MediaJournal implements CastingEnvironmentComponent.PostExecution, CastingEnvironmentComponent.PostCast {
+    public static final CastingEnvironmentComponent.Key<MediaJournal> KEY = new CastingEnvironmentComponent.Key<MediaJournal>() {};
+    // 有登记、尚未写回的缓存，只在服务器线程上访问
+    private static final List<MediaJournal> OPEN = new ArrayList<>();
+
+    private final MediaLedger ledger = new MediaLedger();
+    // 上次登记时的索引和版本，背包没有变化时不再遍历媒体源
+    @Nullable
+    private MediaSourceIndex trackedIndex;
+    private int trackedVersion;
+
+    @Override
+    public @NotNull Key<MediaJournal> getKey() {
+        return KEY;
+    }
+
+    /**
+     * 获取施法环境上的缓存，没有时创建并挂载
+     */
+    public static MediaJournal of(CastingEnvironment environment) {
+        MediaJournal journal = environment.getExtension(KEY);
+        if (journal == null) {
+            journal = new MediaJournal();
+            environment.addExtension(journal);
+        }
+        return journal;
+    }
+
+    public static void register() {
+        ServerTickEvents.END_SERVER_TICK.register(server -> flushAll());
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> flushAll());
+    }
+
+    /**
+     * 写回所有尚未写回的缓存
+     */
+    private static void flushAll() {
+        while (!OPEN.isEmpty()) {
+            OPEN.get(OPEN.size() - 1).flush();
+        }
+    }
+
+    /**
+     * 登记背包中所有可以缓存的容器，在提取之前调用
+     * 背包自上次登记以来没有变化时直接返回
+     */
+    public void track(MediaSourceIndex index) {
+        MediaSourceIndex.Source[] sources = index.allSources();
+        if (index == trackedIndex && index.getVersion() == trackedVersion) {
+            return;
+        }
+        for (MediaSourceIndex.Source source : sources) {
+            if (source.holder() instanceof Cacheable holder && holder.isCacheable()) {
+                enroll(holder);
+            }
+        }
+        trackedIndex = index;
+        trackedVersion = index.getVersion();
+    }
+
+    private void enroll(Cacheable holder) {
+        Entry current = holder.journalEntry();
+        if (current != null) {
+            if (current.journal == this) {
+                return;
+            }
+            // 仍登记在另一次施法中（例如嵌套的施法环境），先把它的值写回，再由本次施法接管
+            current.writeBack();
+        }
+        Entry entry = new Entry(this, holder, holder.readStoredMedia());
+        if (ledger.cachedCount() == 0) {
+            OPEN.add(this);
+        }
+        ledger.add(entry);
+        holder.attachJournal(entry);
+    }
+
+    /**
+     * 在真实提取之前保存媒体源的状态，iota 失败时恢复
+     */
+    public void save(MediaSource source) {
+        ledger.save(source);
+    }
+
+    /**
+     * 保存分配中所有媒体源的状态，在应用分配之前调用
+     */
+    public void save(MediaAllocation allocation) {
+        ledger.save(allocation);
+    }
+
+    /**
+     * 保存所有媒体源的状态，在一次性提取全部媒体之前调用
+     */
+    public void save(MediaSource[] sources) {
+        ledger.save(sources);
+    }
+
+    /**
+     * 一个 iota 开始执行：之前的提取（包括上一个 iota 的副作用）全部提交，不再恢复
+     */
+    public void beginStep() {
+        ledger.commit();
+    }
+
+    /**
+     * 把修改过的值写回物品，保留登记，在法术执行之前调用
+     */
+    public void writeThrough() {
+        for (int i = 0; i < ledger.cachedCount(); i++) {
+            ((Entry) ledger.cached(i)).store();
+        }
+    }
+
+    /**
+     * 把修改过的值写回物品并解除所有登记
+     */
+    public void flush() {
+        for (int i = 0; i < ledger.cachedCount(); i++) {
+            ((Entry) ledger.cached(i)).writeBack();
+        }
+        if (ledger.cachedCount() > 0) {
+            OPEN.remove(this);
+        }
+        ledger.clear();
+        trackedIndex = null;
+    }
+
+    @Override
+    public void onPostExecution(CastResult result) {
+        if (ledger.isEmpty()) {
+            return;
+        }
+        boolean spell = false;
+        for (OperatorSideEffect sideEffect : result.getSideEffects()) {
+            if (sideEffect instanceof OperatorSideEffect.DoMishap) {
+                ledger.rollback();
+                spell = false;
+                break;
+            }
+            if (sideEffect instanceof OperatorSideEffect.AttemptSpell) {
+                spell = true;
+            }
+        }
+        ledger.commit();
+        if (spell) {
+            writeThrough();
+        }
+    }
+
+    @Override
+    public void onPostCast(CastingImage image) {
+        flush();
+    }
+
+    /**
+     * 一个已登记容器的缓存值
+     */
+    public static final class Entry extends CachedMedia {
+        private final MediaJournal journal;
+        private final Cacheable holder;
+
+        private Entry(MediaJournal journal, Cacheable holder, long media) {
+            super(media);
+            this.journal = journal;
+            this.holder = holder;
+        }
+
+        /**
+         * 值被修改过时写回物品；容器已经被其他施法接管时什么也不做
+         */
+        private void store() {
+            if (isDirty() && holder.journalEntry() == this) {
+                holder.writeStoredMedia(media());
+                markClean();
+            }
+        }
+
+        /**
+         * 写回并解除登记；容器已经被其他施法接管时什么也不做
+         */
+        private void writeBack() {
+            if (holder.journalEntry() != this) {
+                return;
+            }
+            store();
+            holder.attachJournal(null);
+        }
+    }
+
+    /**
+     * 可以在施法期间缓存媒体量的容器
+     * 登记期间 getMedia/setMedia/withdrawMedia/insertMedia 应当读写 journalEntry() 中的值
+     */
+    public interface Cacheable {
+        /**
+         * 容器的提取和插入逻辑只依赖媒体量时才能缓存
+         */
+        boolean isCacheable();
+
+        @Nullable
+        Entry journalEntry();
+
+        void attachJournal(@Nullable Entry entry);
+
+        /**
+         * 从物品读取媒体量
+         */
+        long readStoredMedia();
+
+        /**
+         * 把媒体量写入物品
+         */
+        void writeStoredMedia(long media);
+    }
+}
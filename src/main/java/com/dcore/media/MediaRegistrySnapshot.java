@@ -0,0 +1,178 @@
+package com.dcore.media;
+
+import at.petrak.hexcasting.common.lib.HexRegistries;
+import com.dcore.media.core.HealthConversion;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * 媒体类型注册表的不可变快照
+ * 由 MediaTypeRegistry 通过一个 volatile 引用整体发布，读取时无锁、不分配对象
+ * - 血量扣除比例保存在以媒体类型编号为下标的 double[] 中
+ * - 动作需求（MediaRequirement）和物品类型保存在以 ResourceLocation 为键的开放寻址表中
+ * - 动作需求另外按 ResourceKey 引用建一张表，施法时由 PatternShapeMatch 的键直接查找，
+ *   不受 d-core 管理的动作（绝大多数）只需一次引用比较的探测就能确定
+ */
+public final class MediaRegistrySnapshot {
+    /**
+     * 未配置时的血量扣除比例（10000 媒体 = 1 血量）
+     */
+    public static final double DEFAULT_HEALTH_RATE = HealthConversion.DEFAULT_HEALTH_RATE;
+
+    public static final MediaRegistrySnapshot EMPTY = new Builder().build();
+
+    private final ResourceLocationTable<MediaType> itemTypes;
+    private final ResourceLocationTable<MediaRequirement> actionTypes;
+    private final IdentityTable<ResourceKey<?>, MediaRequirement> actionKeys;
+    private final double[] healthRates;
+
+    private MediaRegistrySnapshot(Builder builder) {
+        this.itemTypes = new ResourceLocationTable<>(builder.itemTypes);
+        this.actionTypes = new ResourceLocationTable<>(builder.actionTypes);
+        this.actionKeys = new IdentityTable<>(resolveActionKeys(builder.actionTypes));
+        this.healthRates = new double[MediaType.count()];
+        Arrays.fill(this.healthRates, DEFAULT_HEALTH_RATE);
+        for (Map.Entry<MediaType, Double> entry : builder.healthRates.entrySet()) {
+            this.healthRates[entry.getKey().index()] = entry.getValue();
+        }
+    }
+
+    public MediaType getItemMediaType(ResourceLocation itemId) {
+        MediaType type = itemTypes.get(itemId);
+        return type != null ? type : MediaType.STANDARD;
+    }
+
+    /**
+     * 获取动作的媒体需求
+     * @return 媒体需求，null 表示动作不受类型化媒体管理
+     */
+    @Nullable
+    public MediaRequirement getActionRequirement(ResourceLocation actionId) {
+        return actionTypes.get(actionId);
+    }
+
+    /**
+     * 按图案查找结果中的 ResourceKey 获取动作的媒体需求
+     * ResourceKey 由 Minecraft 驻留，快照持有同一批键的强引用，因此可以只比较引用
+     * @return 媒体需求，null 表示动作不受类型化媒体管理
+     */
+    @Nullable
+    public MediaRequirement getActionRequirement(ResourceKey<?> actionKey) {
+        return actionKeys.get(actionKey);
+    }
+    
+    /**
+     * 获取动作需要的主要媒体类型（成本向量的第一个分量）
+     */
+    @Nullable
+    public MediaType getActionRequiredType(ResourceLocation actionId) {
+        MediaRequirement requirement = actionTypes.get(actionId);
+        return requirement != null ? requirement.primaryType() : null;
+    }
+
+    public double getMediaTypeHealthRate(MediaType mediaType) {
+        // 快照之后才注册的类型使用默认比例
+        return HealthConversion.rate(healthRates, mediaType.index());
+    }
+
+    /**
+     * 以类型编号为下标的血量扣除比例，交给 media-core 结算
+     * 返回的数组由快照持有，调用者不应修改
+     */
+    double[] healthRatesByIndex() {
+        return healthRates;
+    }
+
+    /**
+     * 预先生成动作在 HexMod 动作注册表和特殊图案注册表中的键
+     * 两个注册表的键互不相同，同一个 ID 两边都登记，查找时不需要区分图案种类
+     */
+    private static Map<ResourceKey<?>, MediaRequirement> resolveActionKeys(Map<ResourceLocation, MediaRequirement> actions) {
+        Map<ResourceKey<?>, MediaRequirement> keys = new IdentityHashMap<>(actions.size() * 2);
+        for (Map.Entry<ResourceLocation, MediaRequirement> entry : actions.entrySet()) {
+            keys.put(ResourceKey.create(HexRegistries.ACTION, entry.getKey()), entry.getValue());
+            keys.put(ResourceKey.create(HexRegistries.SPECIAL_HANDLER, entry.getKey()), entry.getValue());
+        }
+        return keys;
+    }
+
+    public int actionCount() {
+        return actionTypes.size();
+    }
+
+    public int itemCount() {
+        return itemTypes.size();
+    }
+
+    /**
+     * 快照构建器（可变，只在构建新快照时使用）
+     * 后写入的值覆盖先写入的值
+     */
+    public static final class Builder {
+        private final Map<ResourceLocation, MediaType> itemTypes = new HashMap<>();
+        private final Map<ResourceLocation, MediaRequirement> actionTypes = new HashMap<>();
+        private final Map<MediaType, Double> healthRates = new HashMap<>();
+
+        public Builder item(ResourceLocation itemId, MediaType mediaType) {
+            itemTypes.put(itemId, mediaType);
+            return this;
+        }
+
+        /**
+         * @param requiredType 需要的媒体类型，null 表示不限制（移除已有的需求）
+         */
+        public Builder action(ResourceLocation actionId, @Nullable MediaType requiredType) {
+            return action(actionId, requiredType != null ? MediaRequirement.of(requiredType) : null);
+        }
+
+        /**
+         * @param requirement 媒体需求，null 表示不限制（移除已有的需求）
+         */
+        public Builder action(ResourceLocation actionId, @Nullable MediaRequirement requirement) {
+            if (requirement == null) {
+                actionTypes.remove(actionId);
+            } else {
+                actionTypes.put(actionId, requirement);
+            }
+            return this;
+        }
+
+        public Builder healthRate(MediaType mediaType, double healthRate) {
+            healthRates.put(mediaType, healthRate);
+            return this;
+        }
+
+        /**
+         * 合并另一个构建器的内容，other 中的值优先
+         */
+        public Builder putAll(Builder other) {
+            itemTypes.putAll(other.itemTypes);
+            actionTypes.putAll(other.actionTypes);
+            healthRates.putAll(other.healthRates);
+            return this;
+        }
+
+        public Map<ResourceLocation, MediaType> items() {
+            return Collections.unmodifiableMap(itemTypes);
+        }
+
+        public Map<ResourceLocation, MediaRequirement> actions() {
+            return Collections.unmodifiableMap(actionTypes);
+        }
+
+        public Map<MediaType, Double> healthRates() {
+            return Collections.unmodifiableMap(healthRates);
+        }
+
+        public MediaRegistrySnapshot build() {
+            return new MediaRegistrySnapshot(this);
+        }
+    }
+}
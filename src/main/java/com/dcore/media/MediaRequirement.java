@@ -0,0 +1,147 @@
+package com.dcore.media;
+
+import com.dcore.media.core.CostVector;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 动作的媒体需求（成本向量）
+ * 由若干个媒体类型分量组成，分两种模式：
+ * - SPLIT：按权重拆分成本，例如 60% SPECIAL + 40% STANDARD，每个分量只能由对应类型支付
+ * - ANY_OF：按偏好顺序使用任一类型，前一个类型不足的部分由下一个类型补足
+ * 两种模式下最终仍不足的部分都合并为一次血量扣除
+ *
+ * 实例不可变，保存在 MediaRegistrySnapshot 中，可以用引用比较判断是否为同一份配置；
+ * equals 比较模式、类型和权重，重新加载配置时用来判断需求是否真的变化
+ * 实际结算使用 media-core 中的 CostVector
+ */
+public final class MediaRequirement {
+    private final MediaType[] types;
+    private final CostVector vector;
+
+    private MediaRequirement(MediaType[] types, CostVector vector) {
+        this.types = types;
+        this.vector = vector;
+    }
+
+    /**
+     * 只需要一种媒体类型
+     */
+    public static MediaRequirement of(MediaType type) {
+        return anyOf(type);
+    }
+
+    /**
+     * 按偏好顺序使用任一类型
+     */
+    public static MediaRequirement anyOf(MediaType... types) {
+        MediaType[] copy = types.clone();
+        return new MediaRequirement(copy, CostVector.anyOf(indices(copy)));
+    }
+
+    /**
+     * 按权重拆分成本，权重不需要加起来等于 1
+     */
+    public static MediaRequirement split(MediaType[] types, double[] weights) {
+        MediaType[] copy = types.clone();
+        return new MediaRequirement(copy, CostVector.split(indices(copy), weights));
+    }
+
+    private static int[] indices(MediaType[] types) {
+        int[] indices = new int[types.length];
+        for (int i = 0; i < types.length; i++) {
+            indices[i] = types[i].index();
+        }
+        return indices;
+    }
+
+    /**
+     * 对应的成本向量（以类型编号表示），交给 media-core 结算
+     */
+    public CostVector vector() {
+        return vector;
+    }
+
+    public CostVector.Mode mode() {
+        return vector.mode();
+    }
+
+    public int size() {
+        return types.length;
+    }
+
+    public MediaType type(int component) {
+        return types[component];
+    }
+
+    /**
+     * 主要媒体类型（第一个分量），血量扣除比例和兼容旧接口时使用
+     */
+    public MediaType primaryType() {
+        return types[0];
+    }
+
+    /**
+     * 所有分量的媒体类型位掩码
+     */
+    public long mask() {
+        return vector.mask();
+    }
+
+    public boolean involves(MediaType type) {
+        return (vector.mask() & type.bit()) != 0;
+    }
+
+    /**
+     * 只需要 STANDARD 类型，行为与 HexMod 原有的媒体提取相同
+     */
+    public boolean isStandardOnly() {
+        return vector.mask() == MediaType.STANDARD.bit();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MediaRequirement other)
+            || vector.mode() != other.vector.mode()
+            || !Arrays.equals(types, other.types)) {
+            return false;
+        }
+        for (int i = 0; i < types.length; i++) {
+            if (Double.compare(vector.weight(i), other.vector.weight(i)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 31 * vector.mode().hashCode() + Arrays.hashCode(types);
+        for (int i = 0; i < types.length; i++) {
+            hash = 31 * hash + Double.hashCode(vector.weight(i));
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        if (types.length == 1) {
+            return types[0].toString();
+        }
+        StringBuilder builder = new StringBuilder(vector.mode().name().toLowerCase(Locale.ROOT)).append('[');
+        for (int i = 0; i < types.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(types[i]);
+            if (vector.mode() == CostVector.Mode.SPLIT) {
+                builder.append('=').append(vector.weight(i));
+            }
+        }
+        return builder.append(']').toString();
+    }
+}
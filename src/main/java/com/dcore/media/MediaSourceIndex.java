@@ -0,0 +1,335 @@
+package com.dcore.media;
+
+import at.petrak.hexcasting.api.addldata.ADMediaHolder;
+import at.petrak.hexcasting.xplat.IXplatAbstractions;
+import com.dcore.media.core.MediaSource;
+import com.dcore.media.core.MediaSourceBuckets;
+import com.dcore.media.core.PriorityBuckets;
+import com.dcore.media.core.RestorableSource;
+import net.minecraft.world.entity.player.Inventory;
+import net.minecraft.world.item.ItemStack;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * 玩家背包的类型化媒体源索引
+ * 记录背包中所有含媒体的槽位，按媒体类型编号分桶，并预先按消耗优先级排序
+ * 一个容器可以提供多种类型时，会出现在其位掩码中每个类型的桶里
+ * 背包变更时（见 InventoryMixin）标记失效，下次查找时重建一次；
+ * 其他模组和漏斗可能直接改写槽位列表，不经过任何被注入的方法，所以每个 tick 第一次查找时还会逐个槽位比较
+ * 堆栈的引用和是否为空，与上次重建时不同就重建；同一 tick 内之后的查找只做常数次检查，开销与背包大小无关
+ * 背包未变化时查找不分配任何对象
+ */
+public class MediaSourceIndex implements MediaSourceBuckets {
+    private static final Source[] EMPTY = new Source[0];
+
+    // 媒体物品查找表或媒体注册表变化时递增，所有索引在下次查找时重建，不沿用已有的 Source
+    private static volatile int generation;
+
+    private final Inventory inventory;
+    private final PriorityBuckets buckets = new PriorityBuckets(Source[]::new);
+    private Source[] all = EMPTY;
+    // 以下数组在重建之间复用，只在背包大小变化时重新分配
+    private Source[] slotSources = EMPTY;
+    // 上次重建时每个槽位的堆栈和它是否非空，用于发现绕过失效通知的改写
+    private ItemStack[] slotStacks = new ItemStack[0];
+    private boolean[] slotFilled = new boolean[0];
+    private Source[] scratch = EMPTY;
+    private boolean dirty = true;
+    private int builtGeneration;
+    // 上次逐个槽位比较（或重建）时的游戏时间
+    private long scannedAt = Long.MIN_VALUE;
+    // 每次失效时递增，用于判断两次查找之间背包是否发生过变化
+    private int version;
+
+    public MediaSourceIndex(Inventory inventory) {
+        this.inventory = inventory;
+    }
+
+    /**
+     * 获取背包对应的索引（由 InventoryMixin 挂载在背包上）
+     */
+    public static MediaSourceIndex of(Inventory inventory) {
+        return ((Holder) inventory).dcore$getMediaSourceIndex();
+    }
+
+    /**
+     * 使所有索引失效，媒体物品的标签或数据包条目重新解析、媒体注册表变化时调用
+     */
+    public static void invalidateAll() {
+        generation++;
+    }
+
+    static int generation() {
+        return generation;
+    }
+
+    /**
+     * 标记索引失效，由背包变更通知调用
+     */
+    public void invalidate() {
+        dirty = true;
+        version++;
+    }
+
+    /**
+     * 索引的版本号，本 tick 还没有检查过时先检查背包是否在没有失效通知的情况下被改写过
+     */
+    public int getVersion() {
+        ensureFresh();
+        return version;
+    }
+
+    /**
+     * 获取指定类型的媒体源，已按消耗优先级从高到低排序
+     * 返回的数组由索引持有，调用者不应修改
+     */
+    public Source[] sources(MediaType type) {
+        return sources(type.index());
+    }
+
+    @Override
+    public Source[] sources(int typeIndex) {
+        ensureFresh();
+        return (Source[]) buckets.sources(typeIndex);
+    }
+
+    /**
+     * 获取所有媒体源（按槽位顺序）
+     */
+    public Source[] allSources() {
+        ensureFresh();
+        return all;
+    }
+
+    private void ensureFresh() {
+        if (builtGeneration != generation) {
+            // 物品的媒体容器可能已经不同，不能沿用上次的 Source
+            Arrays.fill(slotSources, null);
+            invalidate();
+        } else if (!dirty) {
+            long gameTime = inventory.player.level().getGameTime();
+            if (gameTime != scannedAt) {
+                scannedAt = gameTime;
+                if (changedSinceRebuild()) {
+                    invalidate();
+                }
+            }
+        }
+        if (dirty) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 逐个槽位比较堆栈的引用和是否为空，每个 tick 最多一次
+     * 空槽位被直接写入新堆栈、堆栈被替换、或者同一个堆栈从 0 个变回非空，都会被发现；
+     * 只比较引用和是否为空，每个槽位的开销是一次数组读取
+     * 同一 tick 内绕过通知的改写要到下一个 tick 才发现：被替换的旧堆栈仍然按实际数量提取，差额并入不足部分
+     */
+    private boolean changedSinceRebuild() {
+        int size = inventory.getContainerSize();
+        if (size != slotStacks.length) {
+            return true;
+        }
+        for (int i = 0; i < size; i++) {
+            ItemStack stack = inventory.getItem(i);
+            if (stack != slotStacks[i] || stack.isEmpty() == slotFilled[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 重建索引
+     * 槽位中的物品堆栈没有被替换时沿用上次的 Source（以及其中的包装对象），不重新查找媒体容器
+     * 各类型的桶由 PriorityBuckets 按优先级做计数排序
+     */
+    private void rebuild() {
+        builtGeneration = generation;
+        scannedAt = inventory.player.level().getGameTime();
+        int size = inventory.getContainerSize();
+        if (slotSources.length != size) {
+            slotSources = new Source[size];
+            scratch = new Source[size];
+            slotStacks = new ItemStack[size];
+            slotFilled = new boolean[size];
+        }
+
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            ItemStack stack = inventory.getItem(i);
+            Source source = slotSources[i];
+            slotStacks[i] = stack;
+            slotFilled[i] = !stack.isEmpty();
+            if (stack.isEmpty()) {
+                slotSources[i] = null;
+                continue;
+            }
+            if (source == null || source.stack() != stack) {
+                source = createSource(stack, i);
+                slotSources[i] = source;
+                if (source == null) continue;
+            }
+
+            scratch[count++] = source;
+        }
+
+        all = count == all.length && sameSources(all, count) ? all : Arrays.copyOf(scratch, count);
+        buckets.rebuild(scratch, count, MediaType.count());
+        // 不再持有已经离开背包的物品
+        Arrays.fill(scratch, count, scratch.length, null);
+        dirty = false;
+    }
+
+    private boolean sameSources(Source[] previous, int count) {
+        for (int i = 0; i < count; i++) {
+            if (previous[i] != scratch[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 为物品堆栈创建媒体源，物品没有媒体容器时为 null（法术环的索引也使用，见 CircleMediaIndex）
+     */
+    @Nullable
+    static Source createSource(ItemStack stack, int slot) {
+        // 标签条目和数据包条目选中的物品没有注册组件，由 MediaHolderLookupMixin 补上
+        ADMediaHolder holder = IXplatAbstractions.INSTANCE.findMediaHolder(stack);
+        if (holder == null) {
+            return null;
+        }
+        TypedMediaHolder typedHolder = holder instanceof TypedMediaHolder typed
+            ? typed
+            : new StandardMediaWrapper(holder);
+        return new Source(typedHolder, stack, slot, typedHolder.getProvidedTypeMask(), holder.getConsumptionPriority());
+    }
+
+    /**
+     * 索引中的一个媒体源，同时是 media-core 结算使用的 MediaSource
+     * stack 用于检测槽位是否被替换；物品已用完或容器不能提供媒体时，模拟提取返回 0
+     * 恢复时先恢复物品数（消耗品按物品提取），再恢复容器中的媒体量（不能修改媒体量的容器会忽略）
+     */
+    public record Source(
+        TypedMediaHolder holder,
+        ItemStack stack,
+        int slot,
+        long typeMask,
+        int priority
+    ) implements MediaSource, RestorableSource {
+        @Override
+        public long simulateWithdraw(long amount) {
+            if (stack.isEmpty() || !holder.canProvide()) {
+                return 0;
+            }
+            return holder.withdrawMedia(amount, true);
+        }
+
+        @Override
+        public long withdraw(long amount) {
+            return holder.withdrawMedia(amount, false);
+        }
+
+        @Override
+        public long withdrawAll() {
+            if (stack.isEmpty() || !holder.canProvide()) {
+                return 0;
+            }
+            return holder.withdrawAllMedia();
+        }
+
+        @Override
+        public int countState() {
+            return stack.getCount();
+        }
+
+        @Override
+        public long mediaState() {
+            return holder.getMedia();
+        }
+
+        @Override
+        public void restoreState(int count, long media) {
+            if (stack.getCount() != count) {
+                stack.setCount(count);
+            }
+            if (holder.getMedia() != media) {
+                holder.setMedia(media);
+            }
+        }
+    }
+
+    /**
+     * 由 InventoryMixin 实现，用于在背包上挂载索引
+     */
+    public interface Holder {
+        MediaSourceIndex dcore$getMediaSourceIndex();
+    }
+
+    /**
+     * 将普通 ADMediaHolder 包装为 STANDARD 类型的 TypedMediaHolder
+     * 这样可以让普通容器在需要 STANDARD 类型时被使用
+     */
+    private static class StandardMediaWrapper implements TypedMediaHolder {
+        private final ADMediaHolder delegate;
+
+        public StandardMediaWrapper(ADMediaHolder delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public MediaType getMediaType() {
+            return MediaType.STANDARD;
+        }
+
+        @Override
+        public long getMedia() {
+            return delegate.getMedia();
+        }
+
+        @Override
+        public long getMaxMedia() {
+            return delegate.getMaxMedia();
+        }
+
+        @Override
+        public void setMedia(long media) {
+            delegate.setMedia(media);
+        }
+
+        @Override
+        public boolean canRecharge() {
+            return delegate.canRecharge();
+        }
+
+        @Override
+        public boolean canProvide() {
+            return delegate.canProvide();
+        }
+
+        @Override
+        public int getConsumptionPriority() {
+            return delegate.getConsumptionPriority();
+        }
+
+        @Override
+        public boolean canConstructBattery() {
+            return delegate.canConstructBattery();
+        }
+
+        @Override
+        public long withdrawMedia(long cost, boolean simulate) {
+            return delegate.withdrawMedia(cost, simulate);
+        }
+
+        @Override
+        public long insertMedia(long amount, boolean simulate) {
+            return delegate.insertMedia(amount, simulate);
+        }
+    }
+}
@@ -2,69 +2,242 @@ package com.dcore.media;
 
 import net.minecraft.resources.ResourceLocation;
 import com.dcore.DCore;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 /**
- * 媒体类型枚举
+ * 媒体类型
  * 定义不同的媒体类型，例如普通媒体和特殊媒体
+ *
+ * 除了内置的 STANDARD 和 SPECIAL，其他类型由 media_types.json 的 media_types 部分定义，无需重新编译
+ * 每个类型分配一个从 0 开始的紧凑整数编号，可以直接作为数组下标，并对应位掩码中的一位
+ * 本地类型只增不减，编号在一次游戏运行中保持不变；
+ * 客户端从服务器同步来的类型（registerRemote）排在本地类型之后，断开连接时由 releaseRemote 释放
  */
-public enum MediaType {
+public final class MediaType {
+    /**
+     * 最多支持的媒体类型数量（受 long 位掩码限制）
+     */
+    public static final int MAX_TYPES = Long.SIZE;
+
+    // 写入时整体替换（copy-on-write），读取无锁
+    private static volatile MediaType[] byIndex = new MediaType[0];
+    private static volatile Map<ResourceLocation, MediaType> byId = Map.of();
+    private static volatile Map<String, MediaType> byName = Map.of();
+    // 第一个远程类型的编号，没有远程类型时为 -1；只在持有类锁时访问
+    private static int remoteStart = -1;
+
     /**
      * 默认/普通媒体类型（HexMod 原有的媒体类型）
      */
-    STANDARD(createId("standard")),
-    
+    public static final MediaType STANDARD = register(createId("standard"));
+
     /**
      * 特殊媒体类型（新的媒体类型）
      * 只能由特定的物品提供，不能存储在普通容器中
      */
-    SPECIAL(createId("special"));
+    public static final MediaType SPECIAL = register(createId("special"));
 
     private final ResourceLocation id;
+    private final int index;
+    private final long bit;
 
-    MediaType(ResourceLocation id) {
+    private MediaType(ResourceLocation id, int index) {
         this.id = id;
+        this.index = index;
+        this.bit = 1L << index;
     }
 
     public ResourceLocation getId() {
         return id;
     }
 
+    /**
+     * 紧凑的整数编号，可以作为数组下标
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * 此类型在位掩码中对应的位
+     */
+    public long bit() {
+        return bit;
+    }
+
     public String getTranslationKey() {
-        return "media_type." + DCore.MOD_ID + "." + id.getPath();
+        return "media_type." + id.getNamespace() + "." + id.getPath();
+    }
+
+    @Override
+    public String toString() {
+        return id.toString();
     }
 
     private static ResourceLocation createId(String path) {
         return new ResourceLocation(DCore.MOD_ID, path);
     }
 
+    /**
+     * 注册媒体类型，如果已经注册过则返回已有的类型
+     * @throws IllegalStateException 类型数量超过 {@link #MAX_TYPES}
+     */
+    public static synchronized MediaType register(ResourceLocation id) {
+        MediaType existing = byId.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        if (remoteStart >= 0) {
+            // 远程类型释放后编号会被回收，本地类型不能排在它们之后
+            throw new IllegalStateException("Cannot register local media type " + id + " while connected to a server");
+        }
+        return append(id);
+    }
+
+    /**
+     * 注册服务器同步的媒体类型，在客户端主线程上调用；已经注册过时返回已有的类型
+     * @throws IllegalStateException 类型数量超过 {@link #MAX_TYPES}
+     */
+    public static synchronized MediaType registerRemote(ResourceLocation id) {
+        MediaType existing = byId.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        int start = byIndex.length;
+        MediaType type = append(id);
+        if (remoteStart < 0) {
+            remoteStart = start;
+        }
+        return type;
+    }
+
+    /**
+     * 释放所有远程类型，断开连接时在客户端主线程上调用
+     * 调用之前应先撤下引用这些类型的同步内容（见 MediaTypeRegistry.applyRemote）
+     */
+    public static synchronized void releaseRemote() {
+        if (remoteStart < 0) {
+            return;
+        }
+        MediaType[] kept = Arrays.copyOf(byIndex, remoteStart);
+        Map<ResourceLocation, MediaType> newById = new HashMap<>();
+        Map<String, MediaType> newByName = new HashMap<>();
+        for (MediaType type : kept) {
+            newById.put(type.id, type);
+            newByName.put(type.id.toString(), type);
+        }
+        for (MediaType type : kept) {
+            newByName.putIfAbsent(type.id.getPath(), type);
+        }
+        byId = Map.copyOf(newById);
+        byName = Map.copyOf(newByName);
+        byIndex = kept;
+        remoteStart = -1;
+    }
+
+    private static MediaType append(ResourceLocation id) {
+        MediaType[] oldTypes = byIndex;
+        if (oldTypes.length >= MAX_TYPES) {
+            throw new IllegalStateException("Too many media types (max " + MAX_TYPES + "), cannot register " + id);
+        }
+
+        MediaType type = new MediaType(id, oldTypes.length);
+        MediaType[] newTypes = Arrays.copyOf(oldTypes, oldTypes.length + 1);
+        newTypes[type.index] = type;
+
+        Map<ResourceLocation, MediaType> newById = new HashMap<>(byId);
+        newById.put(id, type);
+        Map<String, MediaType> newByName = new HashMap<>(byName);
+        newByName.put(id.toString(), type);
+        // d-core 命名空间下的类型也可以只用路径引用（例如 "special"）
+        // 其他命名空间的同名类型不会覆盖已有的短名称
+        newByName.putIfAbsent(id.getPath(), type);
+
+        byId = Map.copyOf(newById);
+        byName = Map.copyOf(newByName);
+        byIndex = newTypes;
+        return type;
+    }
+
+    /**
+     * 按名称注册媒体类型，没有命名空间的名称使用 d-core 命名空间
+     */
+    public static MediaType register(String name) {
+        String normalized = name.toLowerCase(Locale.ROOT);
+        ResourceLocation id = normalized.indexOf(':') >= 0
+            ? new ResourceLocation(normalized)
+            : createId(normalized);
+        return register(id);
+    }
+
+    /**
+     * 已注册的媒体类型数量
+     */
+    public static int count() {
+        return byIndex.length;
+    }
+
+    /**
+     * 根据编号获取媒体类型
+     */
+    public static MediaType byIndex(int index) {
+        return byIndex[index];
+    }
+
+    /**
+     * 所有已注册的媒体类型（按编号排序的副本）
+     */
+    public static MediaType[] values() {
+        return byIndex.clone();
+    }
+
     /**
      * 根据 ID 查找媒体类型
+     * @return 媒体类型，未注册时返回 null
+     */
+    @Nullable
+    public static MediaType byId(ResourceLocation id) {
+        return byId.get(id);
+    }
+
+    /**
+     * 根据 ID 查找媒体类型，未注册时返回 STANDARD
      */
     public static MediaType fromId(ResourceLocation id) {
-        for (MediaType type : values()) {
-            if (type.id.equals(id)) {
-                return type;
-            }
-        }
-        return STANDARD; // 默认返回标准类型
+        MediaType type = byId.get(id);
+        return type != null ? type : STANDARD; // 默认返回标准类型
     }
-    
+
     /**
-     * 根据字符串名称查找媒体类型（不区分大小写）
-     * 用于从配置文件解析
+     * 根据名称查找媒体类型（不区分大小写）
+     * 名称可以是完整 ID（"d-core:special"），也可以是 d-core 命名空间下的路径（"special"）
+     * @return 媒体类型，未注册时返回 null
      */
-    public static MediaType fromString(String name) {
+    @Nullable
+    public static MediaType byName(@Nullable String name) {
         if (name == null) {
-            return STANDARD;
+            return null;
         }
-        String lowerName = name.toLowerCase();
-        for (MediaType type : values()) {
-            if (type.name().equalsIgnoreCase(lowerName) || 
-                type.id.getPath().equalsIgnoreCase(lowerName)) {
-                return type;
-            }
+        Map<String, MediaType> names = byName;
+        MediaType type = names.get(name);
+        if (type == null) {
+            // 只有精确匹配失败时才转换大小写
+            type = names.get(name.toLowerCase(Locale.ROOT));
         }
-        return STANDARD; // 默认返回标准类型
+        return type;
     }
-}
 
+    /**
+     * 根据字符串名称查找媒体类型（不区分大小写），未注册时返回 STANDARD
+     * 配置解析应使用 {@link #byName} 并报告未知类型
+     */
+    public static MediaType fromString(String name) {
+        MediaType type = byName(name);
+        return type != null ? type : STANDARD; // 默认返回标准类型
+    }
+}
@@ -1,80 +1,164 @@
 package com.dcore.media;
 
-import com.dcore.DCore;
 import net.minecraft.resources.ResourceLocation;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * 媒体类型注册表
  * 用于注册和管理媒体类型与物品的映射关系
+ *
+ * 所有数据保存在不可变的 MediaRegistrySnapshot 中，通过一个 volatile 引用整体发布：
+ * 读取（施法热路径）无锁、不分配对象；写入时构建新快照后原子替换，不会出现注册表被填充一半的状态
+ * 快照由三层合成，后面的层优先：代码注册（register* 方法）、配置文件（applyConfig）、数据包（applyDatapack）
+ * 客户端连接到专用服务器时，配置文件和数据包两层由服务器同步的内容代替（applyRemote）
  */
 public class MediaTypeRegistry {
-    private static final Map<ResourceLocation, MediaType> itemToMediaType = new HashMap<>();
-    private static final Map<ResourceLocation, MediaType> actionToRequiredType = new HashMap<>();
-    
-    // 每种媒体类型的血量扣除比例（媒体量/血量）
-    // 例如：100.0 表示 100 媒体 = 1 血量
-    private static final Map<MediaType, Double> mediaTypeToHealthRate = new HashMap<>();
-    
+    private static volatile MediaRegistrySnapshot current = MediaRegistrySnapshot.EMPTY;
+
+    // 以下构建器只在持有类锁时访问
+    private static MediaRegistrySnapshot.Builder registered = new MediaRegistrySnapshot.Builder();
+    private static MediaRegistrySnapshot.Builder configured = new MediaRegistrySnapshot.Builder();
+    private static MediaRegistrySnapshot.Builder datapack = new MediaRegistrySnapshot.Builder();
+    @Nullable
+    private static MediaRegistrySnapshot.Builder remote;
+    // 当前快照合并前的内容，同步给客户端时使用
+    private static MediaRegistrySnapshot.Builder merged = new MediaRegistrySnapshot.Builder();
+
+    /**
+     * 获取当前快照
+     * 需要多次读取时应先取一次快照，保证读到的数据来自同一版本
+     */
+    public static MediaRegistrySnapshot snapshot() {
+        return current;
+    }
+
     /**
      * 注册物品的媒体类型
      * @param itemId 物品 ID
      * @param mediaType 媒体类型
      */
-    public static void registerItemMediaType(ResourceLocation itemId, MediaType mediaType) {
-        itemToMediaType.put(itemId, mediaType);
+    public static synchronized void registerItemMediaType(ResourceLocation itemId, MediaType mediaType) {
+        registered.item(itemId, mediaType);
+        republish();
     }
-    
-    public static void registerActionRequiredType(ResourceLocation actionId, @Nullable MediaType requiredType) {
-        actionToRequiredType.put(actionId, requiredType);
+
+    public static synchronized void registerActionRequiredType(ResourceLocation actionId, @Nullable MediaType requiredType) {
+        registered.action(actionId, requiredType);
+        republish();
+    }
+
+    /**
+     * 注册动作的成本向量（多种媒体类型按比例拆分，或按偏好顺序使用任一类型）
+     */
+    public static synchronized void registerActionRequirement(ResourceLocation actionId, @Nullable MediaRequirement requirement) {
+        registered.action(actionId, requirement);
+        republish();
+    }
+
+    /**
+     * 注册媒体类型的血量扣除比例
+     * @param mediaType 媒体类型
+     * @param healthRate 血量扣除比例（媒体量/血量），例如 100.0 表示 100 媒体 = 1 血量
+     */
+    public static synchronized void registerMediaTypeHealthRate(MediaType mediaType, double healthRate) {
+        registered.healthRate(mediaType, healthRate);
+        republish();
+    }
+
+    /**
+     * 批量注册，只发布一次新快照
+     */
+    public static synchronized void registerAll(MediaRegistrySnapshot.Builder additions) {
+        registered.putAll(additions);
+        republish();
     }
     
+    /**
+     * 用配置文件的内容替换配置层，并发布新快照
+     * 构建器可以在任意线程上准备好，这里只做合并和替换
+     */
+    public static synchronized void applyConfig(MediaRegistrySnapshot.Builder config) {
+        configured = config;
+        republish();
+    }
+
+    /**
+     * 用数据包的内容替换数据包层，并发布新快照
+     */
+    public static synchronized void applyDatapack(MediaRegistrySnapshot.Builder layer) {
+        datapack = layer;
+        republish();
+    }
+
+    /**
+     * 客户端：用服务器同步的内容代替配置文件层和数据包层，null 表示恢复本地内容（断开连接时）
+     */
+    public static synchronized void applyRemote(@Nullable MediaRegistrySnapshot.Builder layer) {
+        remote = layer;
+        republish();
+    }
+
+    /**
+     * 当前快照合并后的全部内容（副本）
+     */
+    public static synchronized MediaRegistrySnapshot.Builder merged() {
+        return new MediaRegistrySnapshot.Builder().putAll(merged);
+    }
+
+    private static void republish() {
+        MediaRegistrySnapshot.Builder builder = new MediaRegistrySnapshot.Builder().putAll(registered);
+        if (remote != null) {
+            builder.putAll(remote);
+        } else {
+            builder.putAll(configured).putAll(datapack);
+        }
+        merged = builder;
+        current = builder.build();
+        // 类型的数量和物品的媒体类型可能变化
+        MediaSourceIndex.invalidateAll();
+    }
+
     public static MediaType getItemMediaType(ResourceLocation itemId) {
-        return itemToMediaType.getOrDefault(itemId, MediaType.STANDARD);
+        return current.getItemMediaType(itemId);
     }
-    
+
     @Nullable
     public static MediaType getActionRequiredType(ResourceLocation actionId) {
-        return actionToRequiredType.get(actionId);
+        return current.getActionRequiredType(actionId);
     }
-    
+
+    @Nullable
+    public static MediaRequirement getActionRequirement(ResourceLocation actionId) {
+        return current.getActionRequirement(actionId);
+    }
+
     /**
      * 检查动作是否需要特定类型的媒体
      * @param actionId 动作 ID
      * @return true 如果需要特定类型，false 如果可以使用任何类型或消耗血量
      */
     public static boolean requiresSpecificMediaType(ResourceLocation actionId) {
-        return actionToRequiredType.containsKey(actionId) && actionToRequiredType.get(actionId) != null;
-    }
-    
-    /**
-     * 注册媒体类型的血量扣除比例
-     * @param mediaType 媒体类型
-     * @param healthRate 血量扣除比例（媒体量/血量），例如 100.0 表示 100 媒体 = 1 血量
-     */
-    public static void registerMediaTypeHealthRate(MediaType mediaType, double healthRate) {
-        mediaTypeToHealthRate.put(mediaType, healthRate);
+        return current.getActionRequiredType(actionId) != null;
     }
-    
+
     /**
      * 获取媒体类型的血量扣除比例
      * @param mediaType 媒体类型
      * @return 血量扣除比例，默认 10000.0（10000 媒体 = 1 血量）
      */
     public static double getMediaTypeHealthRate(MediaType mediaType) {
-        return mediaTypeToHealthRate.getOrDefault(mediaType, 10000.0);
+        return current.getMediaTypeHealthRate(mediaType);
     }
-    
+
     /**
      * 清除所有注册（主要用于测试）
      */
-    public static void clear() {
-        itemToMediaType.clear();
-        actionToRequiredType.clear();
-        mediaTypeToHealthRate.clear();
+    public static synchronized void clear() {
+        registered = new MediaRegistrySnapshot.Builder();
+        configured = new MediaRegistrySnapshot.Builder();
+        datapack = new MediaRegistrySnapshot.Builder();
+        remote = null;
+        merged = new MediaRegistrySnapshot.Builder();
+        current = MediaRegistrySnapshot.EMPTY;
     }
 }
-
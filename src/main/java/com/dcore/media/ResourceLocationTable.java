@@ -0,0 +1,69 @@
+package com.dcore.media;
+
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * 以 ResourceLocation 为键的只读开放寻址表
+ * 构建后不可修改，查找不分配对象、不加锁；线性探测，容量为 2 的幂，负载因子不超过 0.5
+ */
+final class ResourceLocationTable<V> {
+    private final ResourceLocation[] keys;
+    private final Object[] values;
+    private final int mask;
+    private final int size;
+
+    ResourceLocationTable(Map<ResourceLocation, V> source) {
+        int capacity = 4;
+        while (capacity < source.size() * 2) {
+            capacity <<= 1;
+        }
+        this.keys = new ResourceLocation[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+
+        int count = 0;
+        for (Map.Entry<ResourceLocation, V> entry : source.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            int i = slot(entry.getKey());
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = entry.getKey();
+            values[i] = entry.getValue();
+            count++;
+        }
+        this.size = count;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    V get(ResourceLocation key) {
+        int i = slot(key);
+        ResourceLocation k;
+        while ((k = keys[i]) != null) {
+            if (k == key || k.equals(key)) {
+                return (V) values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slot(ResourceLocation key) {
+        int h = key.hashCode();
+        // 打散低位，避免相近的哈希值聚集
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h & mask;
+    }
+}
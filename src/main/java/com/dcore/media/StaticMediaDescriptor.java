@@ -0,0 +1,84 @@
+package com.dcore.media;
+
+import com.dcore.media.core.ConsumableMedia;
+import net.minecraft.world.item.ItemStack;
+
+/**
+ * 固定媒体量消耗品的描述（每个物品的媒体量、消耗优先级和类型）
+ * 注册时每个物品创建一个，同一物品的所有堆栈的容器共享它；容器对象本身只持有描述和堆栈
+ *
+ * 提取按整数计算：需要的物品数 = ⌈cost / worth⌉，不经过浮点数（换算在 media-core 的 ConsumableMedia 中）
+ */
+public final class StaticMediaDescriptor {
+    private final long worth;
+    private final int priority;
+    private final MediaType type;
+
+    /**
+     * @throws IllegalArgumentException worth 不是正数
+     */
+    public StaticMediaDescriptor(long worth, int priority, MediaType type) {
+        if (worth <= 0) {
+            throw new IllegalArgumentException("Media worth must be positive: " + worth);
+        }
+        this.worth = worth;
+        this.priority = priority;
+        this.type = type;
+    }
+
+    /**
+     * 单个物品的媒体量
+     */
+    public long worth() {
+        return worth;
+    }
+
+    public int priority() {
+        return priority;
+    }
+
+    public MediaType type() {
+        return type;
+    }
+
+    /**
+     * 一堆物品的媒体量，溢出时取 Long.MAX_VALUE
+     */
+    public long media(int count) {
+        return ConsumableMedia.media(worth, count);
+    }
+
+    /**
+     * 提取 cost 需要消耗的物品数（向上取整，不超过 count）
+     */
+    public int itemsFor(long cost, int count) {
+        return ConsumableMedia.itemsFor(worth, cost, count);
+    }
+
+    /**
+     * 从堆栈中提取媒体，按需要的物品数一次性缩减堆栈
+     * @param cost 需要的媒体量，小于 0 表示全部
+     * @return 消耗的物品对应的媒体量（可能大于 cost）
+     */
+    public long withdraw(ItemStack stack, long cost, boolean simulate) {
+        if (cost < 0) {
+            return withdrawAll(stack, simulate);
+        }
+        int items = itemsFor(cost, stack.getCount());
+        if (!simulate && items > 0) {
+            stack.shrink(items);
+        }
+        return media(items);
+    }
+
+    /**
+     * 提取整个堆栈的媒体，堆栈只缩减一次
+     */
+    public long withdrawAll(ItemStack stack, boolean simulate) {
+        int count = stack.getCount();
+        if (!simulate && count > 0) {
+            stack.shrink(count);
+        }
+        return media(count);
+    }
+}
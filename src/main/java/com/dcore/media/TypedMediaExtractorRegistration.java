@@ -24,6 +24,7 @@ public class TypedMediaExtractorRegistration {
         }
         
         CastingEnvironment.addCreateEventListener(new EnvironmentCreator());
+        MediaJournal.register();
         registered = true;
     }
     
@@ -38,11 +39,17 @@ public class TypedMediaExtractorRegistration {
                 return;
             }
             
+            // 图案帧栈需要先于提取器挂载，提取器在构造时取得它的引用，之后的提取不再查找扩展
+            CastFrames.of(environment);
+            
             TypedMediaExtractor extractor = new TypedMediaExtractor(environment);
             environment.addExtension(extractor);
             
             TypedMediaExtractorPost extractorPost = new TypedMediaExtractorPost(environment);
             environment.addExtension(extractorPost);
+            
+            // 施法期间物品容器的媒体量写回缓存，施法结束时写回 NBT，图案失败时恢复提取
+            MediaJournal.of(environment);
         }
     }
 }
@@ -14,6 +14,15 @@ public interface TypedMediaHolder extends ADMediaHolder {
      */
     MediaType getMediaType();
     
+    /**
+     * 获取此容器可以提供的媒体类型位掩码（每个类型对应 MediaType.bit()）
+     * 默认只包含 getMediaType()，可以提供多种媒体的容器应覆盖此方法
+     * @return 媒体类型位掩码
+     */
+    default long getProvidedTypeMask() {
+        return getMediaType().bit();
+    }
+    
     /**
      * 检查此容器是否可以存储指定类型的媒体
      * @param type 要存储的媒体类型
@@ -29,7 +38,17 @@ public interface TypedMediaHolder extends ADMediaHolder {
      * @return 是否可以提供
      */
     default boolean canProvideMediaType(MediaType type) {
-        return getMediaType() == type && canProvide();
+        return (getProvidedTypeMask() & type.bit()) != 0 && canProvide();
+    }
+    
+    /**
+     * 提取容器中的全部媒体
+     * 默认先模拟得到可提取的量，再按这个量真实提取；可以一次取空的容器应覆盖此方法
+     * @return 实际提取的媒体量
+     */
+    default long withdrawAllMedia() {
+        long available = withdrawMedia(Long.MAX_VALUE, true);
+        return available > 0 ? withdrawMedia(available, false) : 0;
     }
 }
 
@@ -0,0 +1,46 @@
+package com.dcore.media.config;
+
+import com.dcore.DCore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 配置加载过程中发现的问题
+ * 解析和应用过程中逐条记录，结束时作为一条日志整体输出，而不是每个问题各自打印或被忽略
+ */
+public final class ConfigReport {
+    private final List<String> problems = new ArrayList<>();
+
+    public void add(String where, String reason) {
+        problems.add(where + ": " + reason);
+    }
+
+    public void add(String where, Exception e) {
+        add(where, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+    }
+
+    public void addAll(List<String> other) {
+        problems.addAll(other);
+    }
+
+    public boolean isEmpty() {
+        return problems.isEmpty();
+    }
+
+    public List<String> problems() {
+        return problems;
+    }
+
+    /**
+     * 输出所有问题，没有问题时什么也不做
+     * @param source 配置来源（通常是文件路径）
+     */
+    public void log(Object source) {
+        if (problems.isEmpty()) {
+            return;
+        }
+        DCore.LOGGER.warn("[MediaTypeConfig] {} 中有 {} 个问题，相关条目已跳过或使用默认值:\n  - {}",
+            source, problems.size(), String.join("\n  - ", problems));
+    }
+}
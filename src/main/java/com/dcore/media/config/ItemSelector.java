@@ -0,0 +1,54 @@
+package com.dcore.media.config;
+
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.item.Item;
+
+/**
+ * special_media_items 中一个条目选中的物品
+ * - "spectrum:amethyst_powder"：单个物品
+ * - "#c:gems"：物品标签
+ * - "spectrum:*"：命名空间下的所有物品
+ * 同一物品被多个条目选中时，单个物品优先于命名空间，命名空间优先于标签；同类条目按文件中的顺序取第一个
+ */
+public sealed interface ItemSelector {
+    /**
+     * @throws net.minecraft.ResourceLocationException ID 或标签格式无效
+     * @throws IllegalArgumentException 命名空间为空
+     */
+    static ItemSelector parse(String key) {
+        if (key.startsWith("#")) {
+            return new Tag(TagKey.create(Registries.ITEM, new ResourceLocation(key.substring(1))));
+        }
+        if (key.endsWith(":*")) {
+            String namespace = key.substring(0, key.length() - 2);
+            if (namespace.isEmpty() || !ResourceLocation.isValidNamespace(namespace)) {
+                throw new IllegalArgumentException("Invalid namespace: " + namespace);
+            }
+            return new Namespace(namespace);
+        }
+        return new Exact(new ResourceLocation(key));
+    }
+
+    record Exact(ResourceLocation id) implements ItemSelector {
+        @Override
+        public String toString() {
+            return id.toString();
+        }
+    }
+
+    record Tag(TagKey<Item> tag) implements ItemSelector {
+        @Override
+        public String toString() {
+            return "#" + tag.location();
+        }
+    }
+
+    record Namespace(String namespace) implements ItemSelector {
+        @Override
+        public String toString() {
+            return namespace + ":*";
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.dcore.media.config;
+
+import com.dcore.media.MediaRegistrySnapshot;
+import com.dcore.media.MediaRequirement;
+import com.dcore.media.MediaType;
+import net.minecraft.resources.ResourceLocation;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * media_types.json 解析后的内容
+ * 文件只解析一次（见 MediaTypeConfig），物品组件注册和媒体注册表使用同一个实例
+ * 实例不可变；无效的条目在解析时已经跳过，原因记录在 problems() 中
+ */
+public final class MediaConfig {
+    public static final MediaConfig EMPTY = new MediaConfig(List.of(), List.of(), Map.of(), Map.of(), Map.of(), false, false, List.of(), true);
+
+    /**
+     * 固定媒体量的消耗品
+     * @param selector 选中的物品（单个物品、标签或命名空间）
+     * @param amount 单个物品的媒体量（正数）
+     */
+    public record Item(ItemSelector selector, long amount, int priority, MediaType type) {
+    }
+
+    private final List<MediaType> mediaTypes;
+    private final List<Item> items;
+    private final Map<ResourceLocation, MediaRequirement> actions;
+    private final Map<MediaType, Double> healthRates;
+    private final Map<String, Map<String, String>> formulas;
+    private final boolean deferredDamage;
+    private final boolean circleContainerSources;
+    private final List<String> problems;
+    private final boolean readable;
+
+    MediaConfig(List<MediaType> mediaTypes, List<Item> items, Map<ResourceLocation, MediaRequirement> actions,
+                Map<MediaType, Double> healthRates, Map<String, Map<String, String>> formulas,
+                boolean deferredDamage, boolean circleContainerSources, List<String> problems, boolean readable) {
+        this.mediaTypes = List.copyOf(mediaTypes);
+        this.items = List.copyOf(items);
+        this.actions = Map.copyOf(actions);
+        this.healthRates = Map.copyOf(healthRates);
+        this.formulas = Map.copyOf(formulas);
+        this.deferredDamage = deferredDamage;
+        this.circleContainerSources = circleContainerSources;
+        this.problems = List.copyOf(problems);
+        this.readable = readable;
+    }
+
+    /**
+     * media_types 部分定义的媒体类型（解析时已经注册）
+     */
+    public List<MediaType> mediaTypes() {
+        return mediaTypes;
+    }
+
+    /**
+     * special_media_items 部分，按文件中的顺序
+     */
+    public List<Item> items() {
+        return items;
+    }
+
+    /**
+     * special_media_actions 部分
+     */
+    public Map<ResourceLocation, MediaRequirement> actions() {
+        return actions;
+    }
+
+    /**
+     * media_type_health_rates 部分
+     */
+    public Map<MediaType, Double> healthRates() {
+        return healthRates;
+    }
+
+    /**
+     * action_formulas 部分：动作 ID → (公式名 → 表达式)，表达式在应用时编译
+     */
+    public Map<String, Map<String, String>> formulas() {
+        return formulas;
+    }
+
+    public boolean deferredDamage() {
+        return deferredDamage;
+    }
+
+    /**
+     * spell_circle 部分：法术环是否从激发器相邻的容器方块中提取媒体物品
+     */
+    public boolean circleContainerSources() {
+        return circleContainerSources;
+    }
+
+    /**
+     * 解析时发现的问题（位置: 原因）
+     */
+    public List<String> problems() {
+        return problems;
+    }
+
+    /**
+     * 文件是否成功读取为 JSON
+     * 为 false 时配置只包含问题说明，重新加载时不应当用它替换正在使用的配置
+     */
+    public boolean readable() {
+        return readable;
+    }
+
+    /**
+     * 媒体注册表的配置层（物品类型、动作需求和血量扣除比例）
+     * 物品类型只包含单个物品的条目，标签和命名空间条目由 MediaItemTable 解析
+     */
+    public MediaRegistrySnapshot.Builder registryLayer() {
+        MediaRegistrySnapshot.Builder builder = new MediaRegistrySnapshot.Builder();
+        healthRates.forEach(builder::healthRate);
+        for (Item item : items) {
+            if (item.selector() instanceof ItemSelector.Exact exact) {
+                builder.item(exact.id(), item.type());
+            }
+        }
+        actions.forEach(builder::action);
+        return builder;
+    }
+}
@@ -0,0 +1,165 @@
+package com.dcore.media.config;
+
+import com.dcore.media.MediaType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 两份配置之间的差异
+ * 重新加载时只应用有变化的部分：注册表、动作公式、伤害设置和法术环设置各自独立判断，没有变化的部分保持原样
+ *
+ * 媒体物品在启动时解析为 MediaItemTable 并注册物品组件，物品条目的任何变化都只记录为"需要重启"
+ * （注册表中的物品类型层仍然同步更新）
+ */
+public final class MediaConfigDiff {
+    private final List<String> changes = new ArrayList<>();
+    private final List<String> restartRequired = new ArrayList<>();
+    private boolean registry;
+    private boolean formulas;
+    private boolean damage;
+    private boolean circle;
+
+    private MediaConfigDiff() {
+    }
+
+    /**
+     * 没有任何变化
+     */
+    public static MediaConfigDiff none() {
+        return new MediaConfigDiff();
+    }
+
+    /**
+     * 计算从 before 到 after 的差异
+     */
+    public static MediaConfigDiff between(MediaConfig before, MediaConfig after) {
+        MediaConfigDiff diff = new MediaConfigDiff();
+
+        for (MediaType type : after.mediaTypes()) {
+            if (!before.mediaTypes().contains(type)) {
+                diff.changes.add("新媒体类型 " + type);
+            }
+        }
+
+        diff.registry |= diff.compare("血量扣除比例 ", before.healthRates(), after.healthRates());
+        diff.registry |= diff.compare("动作需求 ", before.actions(), after.actions());
+        diff.compareItems(before.items(), after.items());
+
+        if (!before.formulas().equals(after.formulas())) {
+            diff.formulas = true;
+            for (String action : union(before.formulas().keySet(), after.formulas().keySet())) {
+                if (!Objects.equals(before.formulas().get(action), after.formulas().get(action))) {
+                    diff.changes.add("公式 " + action);
+                }
+            }
+        }
+
+        if (before.deferredDamage() != after.deferredDamage()) {
+            diff.damage = true;
+            diff.changes.add("合并伤害: " + before.deferredDamage() + " → " + after.deferredDamage());
+        }
+        if (before.circleContainerSources() != after.circleContainerSources()) {
+            diff.circle = true;
+            diff.changes.add("法术环容器方块: " + before.circleContainerSources() + " → " + after.circleContainerSources());
+        }
+        return diff;
+    }
+
+    /**
+     * 逐个键比较，记录新增、删除和修改的条目
+     * @return 是否有变化
+     */
+    private <K, V> boolean compare(String label, Map<K, V> before, Map<K, V> after) {
+        boolean changed = false;
+        for (K key : union(before.keySet(), after.keySet())) {
+            V old = before.get(key);
+            V now = after.get(key);
+            if (Objects.equals(old, now)) {
+                continue;
+            }
+            changed = true;
+            if (old == null) {
+                changes.add(label + key + ": 新增 " + now);
+            } else if (now == null) {
+                changes.add(label + key + ": 删除");
+            } else {
+                changes.add(label + key + ": " + old + " → " + now);
+            }
+        }
+        return changed;
+    }
+
+    private void compareItems(List<MediaConfig.Item> before, List<MediaConfig.Item> after) {
+        Map<ItemSelector, MediaConfig.Item> old = new HashMap<>();
+        for (MediaConfig.Item item : before) {
+            old.put(item.selector(), item);
+        }
+        Set<ItemSelector> seen = new LinkedHashSet<>();
+        for (MediaConfig.Item item : after) {
+            seen.add(item.selector());
+            MediaConfig.Item previous = old.get(item.selector());
+            if (previous == null) {
+                registry = true;
+                restartRequired.add("新增媒体物品 " + item.selector());
+            } else if (!previous.equals(item)) {
+                registry |= previous.type() != item.type();
+                restartRequired.add("媒体物品 " + item.selector() + " 的媒体量、优先级或类型");
+            }
+        }
+        for (MediaConfig.Item item : before) {
+            if (!seen.contains(item.selector())) {
+                registry = true;
+                restartRequired.add("删除媒体物品 " + item.selector());
+            }
+        }
+    }
+
+    private static <K> Set<K> union(Set<K> a, Set<K> b) {
+        Set<K> keys = new LinkedHashSet<>(a);
+        keys.addAll(b);
+        return keys;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty() && restartRequired.isEmpty();
+    }
+
+    /**
+     * 立即生效的变化说明
+     */
+    public List<String> changes() {
+        return changes;
+    }
+
+    /**
+     * 需要重启服务器才能生效的变化说明
+     */
+    public List<String> restartRequired() {
+        return restartRequired;
+    }
+
+    /**
+     * 媒体注册表的配置层（物品类型、动作需求、血量扣除比例）是否变化
+     */
+    public boolean registryChanged() {
+        return registry;
+    }
+
+    public boolean formulasChanged() {
+        return formulas;
+    }
+
+    public boolean damageChanged() {
+        return damage;
+    }
+
+    public boolean circleChanged() {
+        return circle;
+    }
+}
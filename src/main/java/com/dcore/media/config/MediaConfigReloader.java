@@ -0,0 +1,159 @@
+package com.dcore.media.config;
+
+import com.dcore.DCore;
+import com.dcore.network.MediaRegistrySync;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.server.MinecraftServer;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 服务器运行期间重新加载 media_types.json
+ *
+ * - 后台线程监视配置目录，文件变化后等待 DEBOUNCE_MILLIS 内没有新的事件（编辑器保存时通常连续产生多个事件）再解析
+ * - /dcore reload 在公共线程池中解析，与文件变化走同一条路径
+ * - 解析结果放入待应用槽位，下一个 tick 开始时在服务器线程上由 MediaTypeConfig.applyChanges() 只应用变化的部分；
+ *   施法永远不会看到应用到一半的配置；注册表有变化时同步给客户端（见 MediaRegistrySync）
+ * - 同一个 tick 内多次解析只应用最后一次的结果
+ */
+public final class MediaConfigReloader {
+    private static final long DEBOUNCE_MILLIS = 500;
+
+    /**
+     * 等待应用的配置
+     * @param feedback 请求重新加载的命令来源，文件变化触发时为 null
+     */
+    private record Pending(MediaConfig config, @Nullable Consumer<String> feedback) {
+    }
+
+    private static final AtomicReference<Pending> PENDING = new AtomicReference<>();
+    @Nullable
+    private static volatile Thread watcher;
+
+    private MediaConfigReloader() {
+    }
+
+    /**
+     * 注册服务器事件：启动后开始监视，停止时结束监视，每个 tick 开始时应用待应用的配置
+     */
+    public static void register() {
+        ServerLifecycleEvents.SERVER_STARTED.register(server -> startWatching());
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> stopWatching());
+        ServerTickEvents.START_SERVER_TICK.register(MediaConfigReloader::applyPending);
+    }
+
+    /**
+     * 在后台重新解析配置文件，下一个 tick 开始时应用
+     * @param feedback 应用后接收结果说明
+     */
+    public static void requestReload(Consumer<String> feedback) {
+        CompletableFuture.runAsync(() -> parseAndStage(feedback)).exceptionally(e -> {
+            DCore.LOGGER.error("[MediaConfigReloader] 重新解析配置失败", e);
+            return null;
+        });
+    }
+
+    private static void parseAndStage(@Nullable Consumer<String> feedback) {
+        Pending next = new Pending(MediaTypeConfig.read(MediaTypeConfig.path()), feedback);
+        // 新的结果替换尚未应用的旧结果，但保留旧结果的命令来源，命令总能收到回复
+        PENDING.accumulateAndGet(next, (previous, latest) ->
+            previous != null && latest.feedback() == null && previous.feedback() != null
+                ? new Pending(latest.config(), previous.feedback())
+                : latest);
+    }
+
+    private static void applyPending(MinecraftServer server) {
+        Pending pending = PENDING.getAndSet(null);
+        if (pending == null) {
+            return;
+        }
+        MediaConfigDiff diff = MediaTypeConfig.applyChanges(pending.config());
+        if (diff.registryChanged()) {
+            MediaRegistrySync.broadcastChanges(server);
+        }
+        if (pending.feedback() == null) {
+            return;
+        }
+        if (!pending.config().readable()) {
+            pending.feedback().accept("配置文件无法读取，保留当前配置，详见服务器日志");
+        } else if (diff.isEmpty()) {
+            pending.feedback().accept("配置已重新加载，没有变化");
+        } else {
+            pending.feedback().accept("配置已重新加载，" + diff.changes().size() + " 项变化"
+                + (diff.restartRequired().isEmpty() ? "" : "，" + diff.restartRequired().size() + " 项需要重启服务器"));
+        }
+    }
+
+    private static synchronized void startWatching() {
+        if (watcher != null) {
+            return;
+        }
+        // 目标平台是 Java 17，没有虚拟线程；监视线程几乎总是阻塞在 WatchService 上，使用一个守护线程即可
+        Thread thread = new Thread(() -> watch(MediaTypeConfig.path()), "d-core config watcher");
+        thread.setDaemon(true);
+        thread.start();
+        watcher = thread;
+    }
+
+    private static synchronized void stopWatching() {
+        Thread thread = watcher;
+        watcher = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        PENDING.set(null);
+    }
+
+    private static void watch(Path file) {
+        Path directory = file.getParent();
+        try (WatchService service = file.getFileSystem().newWatchService()) {
+            Files.createDirectories(directory);
+            directory.register(service,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+            while (!Thread.currentThread().isInterrupted()) {
+                if (!touches(service.take(), file)) {
+                    continue;
+                }
+                WatchKey key;
+                while ((key = service.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    touches(key, file);
+                }
+                DCore.LOGGER.info("[MediaConfigReloader] 检测到 {} 变化，重新加载", file.getFileName());
+                parseAndStage(null);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 服务器停止
+        } catch (IOException e) {
+            DCore.LOGGER.warn("[MediaConfigReloader] 无法监视 {}，文件变化不会自动重新加载（/dcore reload 仍然可用）", directory, e);
+        }
+    }
+
+    /**
+     * 取出事件并重置 key
+     * @return 事件中是否有配置文件（事件溢出时无法确定，按有处理）
+     */
+    private static boolean touches(WatchKey key, Path file) {
+        boolean touched = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                touched = true;
+            }
+        }
+        key.reset();
+        return touched;
+    }
+}
@@ -0,0 +1,108 @@
+package com.dcore.media.config;
+
+import com.dcore.DCore;
+import com.dcore.media.MediaItemTable;
+import com.dcore.media.MediaRequirement;
+import com.dcore.media.MediaType;
+import com.dcore.media.MediaTypeRegistry;
+import com.google.gson.JsonObject;
+import net.fabricmc.fabric.api.resource.IdentifiableResourceReloadListener;
+import net.fabricmc.fabric.api.resource.ResourceManagerHelper;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.PackType;
+import net.minecraft.server.packs.resources.Resource;
+import net.minecraft.server.packs.resources.ResourceManager;
+import net.minecraft.server.packs.resources.SimplePreparableReloadListener;
+import net.minecraft.util.GsonHelper;
+import net.minecraft.util.profiling.ProfilerFiller;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 从数据包加载媒体定义：data/<命名空间>/media_types/*.json
+ * 文件格式与 media_types.json 相同，但只读取 media_types、special_media_items、special_media_actions
+ * 和 media_type_health_rates 四个部分；动作公式和伤害设置只能在配置文件中修改
+ *
+ * 合并顺序：
+ * - 同一路径的文件由多个数据包提供时，优先级高的数据包生效；不同路径的文件按 ID 顺序，靠后的优先
+ * - 数据包整体作为媒体注册表中配置文件之上的一层（见 MediaTypeRegistry），按世界调整平衡不需要改配置文件
+ * - 物品条目只对没有注册媒体容器组件的物品生效（见 MediaItemTable），在标签加载后解析
+ *
+ * 文件在后台线程读取和解析，在服务器线程上一次性替换数据包层；结果由 MediaRegistrySync 同步给客户端
+ */
+public final class MediaDataLoader extends SimplePreparableReloadListener<MediaConfig> implements IdentifiableResourceReloadListener {
+    public static final ResourceLocation ID = new ResourceLocation(DCore.MOD_ID, "media_types");
+    private static final String DIRECTORY = "media_types";
+
+    public static void register() {
+        ResourceManagerHelper.get(PackType.SERVER_DATA).registerReloadListener(new MediaDataLoader());
+    }
+
+    @Override
+    public ResourceLocation getFabricId() {
+        return ID;
+    }
+
+    @Override
+    protected MediaConfig prepare(ResourceManager manager, ProfilerFiller profiler) {
+        ConfigReport report = new ConfigReport();
+        List<MediaConfig> files = new ArrayList<>();
+        for (Map.Entry<ResourceLocation, List<Resource>> entry
+            : manager.listResourceStacks(DIRECTORY, id -> id.getPath().endsWith(".json")).entrySet()) {
+            // 同一路径的文件按数据包优先级从低到高排列
+            for (Resource resource : entry.getValue()) {
+                String where = resource.sourcePackId() + ":" + entry.getKey();
+                try (Reader reader = resource.openAsReader()) {
+                    JsonObject json = GsonHelper.parse(reader);
+                    ConfigReport fileReport = new ConfigReport();
+                    files.add(MediaTypeConfig.parse(json, fileReport));
+                    for (String problem : fileReport.problems()) {
+                        report.add(where, problem);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    report.add(where, e);
+                }
+            }
+        }
+        return merge(files, report);
+    }
+
+    /**
+     * 合并各文件，靠后的文件优先
+     */
+    private static MediaConfig merge(List<MediaConfig> files, ConfigReport report) {
+        Set<MediaType> mediaTypes = new LinkedHashSet<>();
+        List<MediaConfig.Item> items = new ArrayList<>();
+        Map<ResourceLocation, MediaRequirement> actions = new HashMap<>();
+        Map<MediaType, Double> healthRates = new HashMap<>();
+        for (MediaConfig file : files) {
+            mediaTypes.addAll(file.mediaTypes());
+            actions.putAll(file.actions());
+            healthRates.putAll(file.healthRates());
+        }
+        // 物品条目同类取第一个，靠后的文件放在前面
+        for (int i = files.size() - 1; i >= 0; i--) {
+            items.addAll(files.get(i).items());
+        }
+        return new MediaConfig(List.copyOf(mediaTypes), items, actions, healthRates, Map.of(), false, false, report.problems(), true);
+    }
+
+    @Override
+    protected void apply(MediaConfig data, ResourceManager manager, ProfilerFiller profiler) {
+        MediaTypeRegistry.applyDatapack(data.registryLayer());
+        MediaItemTable.current().setDatapackItems(data.items());
+
+        ConfigReport report = new ConfigReport();
+        report.addAll(data.problems());
+        report.log("数据包 " + DIRECTORY);
+        DCore.LOGGER.info("[MediaDataLoader] 数据包定义了 {} 个媒体物品条目、{} 个动作需求、{} 个血量扣除比例",
+            data.items().size(), data.actions().size(), data.healthRates().size());
+    }
+}
@@ -1,26 +1,47 @@
 package com.dcore.media.config;
 
+import at.petrak.hexcasting.api.addldata.ADMediaHolder;
 import com.dcore.DCore;
+import com.dcore.hex.DCoreFormulas;
+import com.dcore.hex.DeferredDamage;
+import com.dcore.media.CircleMediaIndex;
+import com.dcore.media.MediaRequirement;
 import com.dcore.media.MediaType;
 import com.dcore.media.MediaTypeRegistry;
+import com.dcore.media.core.ActionFormula;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * 媒体类型配置加载器
- * 从 JSON 配置文件加载物品和动作的媒体类型配置
+ * config/d-core/media_types.json 只在这里读取和解析，结果是不可变的 MediaConfig：
+ * - Cardinal Components 注册物品组件时第一次调用 current()，解析文件（不存在时先写出默认配置）
+ * - 服务器启动时 apply() 把同一个 MediaConfig 应用到媒体注册表、动作公式、伤害设置和法术环设置，不再重新解析
+ * - 运行期间文件变化或执行 /dcore reload 时由 MediaConfigReloader 在后台重新解析，
+ *   下一个 tick 开始时 applyChanges() 只应用与当前配置不同的部分；物品组件只在启动时注册，不受重新加载影响
+ * 解析和应用中发现的问题汇总为一条日志（见 ConfigReport）
  */
 public class MediaTypeConfig {
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
-    private static Path configPath;
+    
+    @Nullable
+    private static MediaConfig current;
     
     /**
      * 获取 Gson 实例（供其他类使用）
@@ -29,32 +50,121 @@ public class MediaTypeConfig {
         return GSON;
     }
     
+    /**
+     * 配置文件路径
+     */
+    public static Path path() {
+        return FabricLoader.getInstance().getConfigDir().resolve("d-core").resolve("media_types.json");
+    }
+    
+    /**
+     * 当前配置，第一次调用时读取并解析配置文件
+     */
+    public static synchronized MediaConfig current() {
+        if (current == null) {
+            current = read(path());
+        }
+        return current;
+    }
+    
+    /**
+     * 把当前配置应用到媒体注册表、动作公式、伤害设置和法术环设置
+     */
+    public static synchronized void apply() {
+        apply(current());
+    }
+    
+    /**
+     * 在当前线程重新读取配置文件并应用变化
+     * 服务器运行期间的重新加载通过 MediaConfigReloader 进行：解析在后台线程，应用在服务器线程
+     */
+    public static MediaConfigDiff reload() {
+        return applyChanges(read(path()));
+    }
     
     /**
-     * 加载配置文件
+     * 用重新解析的配置替换当前配置，只应用有变化的部分，在服务器线程上调用
+     * 文件无法读取时（例如编辑到一半的 JSON）保留当前配置，只输出问题
+     * @return 与当前配置的差异；文件无法读取时为空
      */
-    public static void load(Path configDir) {
-        configPath = configDir.resolve("d-core").resolve("media_types.json");
+    public static synchronized MediaConfigDiff applyChanges(MediaConfig next) {
+        ConfigReport report = new ConfigReport();
+        report.addAll(next.problems());
+        if (!next.readable()) {
+            report.log(path() + "（保留当前配置）");
+            return MediaConfigDiff.none();
+        }
+        
+        MediaConfigDiff diff = MediaConfigDiff.between(current(), next);
+        current = next;
+        if (diff.registryChanged()) {
+            MediaTypeRegistry.applyConfig(next.registryLayer());
+        }
+        if (diff.formulasChanged()) {
+            DCoreFormulas.TABLE.apply(next.formulas(), (where, reason) ->
+                report.add("action_formulas/" + where, reason + "，使用默认表达式"));
+        }
+        if (diff.damageChanged()) {
+            DeferredDamage.setEnabled(next.deferredDamage());
+        }
+        if (diff.circleChanged()) {
+            CircleMediaIndex.setContainerSources(next.circleContainerSources());
+        }
+        
+        report.log(path());
+        if (diff.changes().isEmpty()) {
+            DCore.LOGGER.info("[MediaTypeConfig] 重新加载完成，没有立即生效的变化");
+        } else {
+            DCore.LOGGER.info("[MediaTypeConfig] 重新加载完成，{} 项变化:\n  - {}",
+                diff.changes().size(), String.join("\n  - ", diff.changes()));
+        }
+        if (!diff.restartRequired().isEmpty()) {
+            DCore.LOGGER.warn("[MediaTypeConfig] 以下变化需要重启服务器才能生效:\n  - {}",
+                String.join("\n  - ", diff.restartRequired()));
+        }
+        return diff;
+    }
+    
+    private static void apply(MediaConfig config) {
+        ConfigReport report = new ConfigReport();
+        report.addAll(config.problems());
         
+        MediaTypeRegistry.applyConfig(config.registryLayer());
+        DCoreFormulas.TABLE.apply(config.formulas(), (where, reason) ->
+            report.add("action_formulas/" + where, reason + "，使用默认表达式"));
+        DeferredDamage.setEnabled(config.deferredDamage());
+        CircleMediaIndex.setContainerSources(config.circleContainerSources());
+        
+        report.log(path());
+        DCore.LOGGER.info("[MediaTypeConfig] 已加载 {} 个媒体物品条目、{} 个动作需求、{} 个自定义媒体类型",
+            config.items().size(), config.actions().size(), config.mediaTypes().size());
+    }
+    
+    /**
+     * 读取并解析配置文件，文件不存在时先写出默认配置
+     * 读取或解析失败时返回只包含问题说明的空配置
+     */
+    static MediaConfig read(Path path) {
+        ConfigReport report = new ConfigReport();
+        JsonObject json;
         try {
-            if (!Files.exists(configPath)) {
-                createDefaultConfig(configPath);
+            if (!Files.exists(path)) {
+                createDefaultConfig(path);
             }
-            
-            String content = Files.readString(configPath);
-            JsonObject json = GSON.fromJson(content, JsonObject.class);
-            if (json == null) {
-                DCore.LOGGER.error("[MediaTypeConfig] 配置文件解析失败，JSON 为 null");
-                return;
-            }
-            
-            loadConfig(json);
-            
-        } catch (IOException e) {
-            DCore.LOGGER.error("[MediaTypeConfig] 加载配置文件失败: {}", configPath, e);
-        } catch (Exception e) {
-            DCore.LOGGER.error("[MediaTypeConfig] 处理配置文件时发生错误: {}", configPath, e);
+            json = GSON.fromJson(Files.readString(path), JsonObject.class);
+        } catch (IOException | JsonParseException e) {
+            report.add(path.getFileName().toString(), e);
+            return empty(report);
+        }
+        if (json == null) {
+            report.add(path.getFileName().toString(), "文件为空");
+            return empty(report);
         }
+        return parse(json, report);
+    }
+    
+    private static MediaConfig empty(ConfigReport report) {
+        return new MediaConfig(List.of(), List.of(), Map.of(), Map.of(), Map.of(), false, false, report.problems(), false);
     }
     
     /**
@@ -65,10 +175,17 @@ public class MediaTypeConfig {
         
         JsonObject config = new JsonObject();
         
+        // 自定义媒体类型
+        // 内置 standard 和 special，这里可以添加更多类型（例如按流派区分的媒体）
+        JsonObject mediaTypes = new JsonObject();
+        mediaTypes.addProperty("comment", "自定义媒体类型 - 键为类型名称（可带命名空间，如 \"addon:fire\"），值为 {}");
+        config.add("media_types", mediaTypes);
+        
         // 媒体物品配置
-        // 支持的媒体类型：standard, special（可以在 MediaType 枚举中添加更多类型）
+        // 支持的媒体类型：standard, special 以及 media_types 中定义的类型
         JsonObject items = new JsonObject();
-        items.addProperty("comment", "媒体物品配置 - type 字段支持: standard, special");
+        items.addProperty("comment", "媒体物品配置 - type 字段支持: standard, special 以及 media_types 中定义的类型");
+        items.addProperty("comment_keys", "键可以是物品 ID、物品标签（\"#c:gems\"）或命名空间（\"spectrum:*\"）；同一物品优先使用物品 ID 条目，其次命名空间，最后标签");
         JsonObject exampleItem = new JsonObject();
         exampleItem.addProperty("amount", 80000);
         exampleItem.addProperty("type", "special");
@@ -77,9 +194,13 @@ public class MediaTypeConfig {
         
         // 动作媒体类型配置
         // 值可以是字符串（媒体类型名称），如 "special", "standard"
+        // 也可以是成本向量：数组表示按偏好顺序使用任一类型，{"split": {...}} 表示按权重拆分
         JsonObject actions = new JsonObject();
-        actions.addProperty("comment", "动作媒体类型配置 - 值支持: standard, special");
+        actions.addProperty("comment", "动作媒体类型配置 - 值支持: standard, special 以及 media_types 中定义的类型");
+        actions.addProperty("comment_vector", "成本向量 - [\"special\", \"standard\"] 按顺序使用任一类型；{\"split\": {\"special\": 0.6, \"standard\": 0.4}} 按比例拆分");
         actions.addProperty("d-core:damage_entity", "special");
+        actions.addProperty("d-core:damage_entity_radius", "special");
+        actions.addProperty("d-core:damage_entity_box", "special");
         config.add("special_media_actions", actions);
         
         // 媒体类型血量扣除比例配置
@@ -90,99 +211,274 @@ public class MediaTypeConfig {
         healthRates.addProperty("special", 100.0);
         config.add("media_type_health_rates", healthRates);
         
+        // 伤害结算方式
+        JsonObject damage = new JsonObject();
+        damage.addProperty("comment", "deferred 为 true 时，同一 tick 内对同一目标、同一来源的伤害合并到 tick 结束时一次结算");
+        damage.addProperty("deferred", false);
+        config.add("damage", damage);
+        
+        // 法术环的媒体来源
+        JsonObject circle = new JsonObject();
+        circle.addProperty("comment", "container_sources 为 true 时，法术环在激发器的媒体不足时还会提取与激发器相邻的容器方块（箱子等）中的媒体物品");
+        circle.addProperty("container_sources", false);
+        config.add("spell_circle", circle);
+        
+        // 动作的伤害和消耗公式，写出全部默认表达式方便调整
+        config.add("action_formulas", defaultFormulas());
+        
         Files.writeString(path, GSON.toJson(config));
     }
     
     /**
-     * 加载配置数据
+     * 所有已登记公式的默认表达式，每条公式附带可用变量的说明
+     */
+    private static JsonObject defaultFormulas() {
+        JsonObject formulas = new JsonObject();
+        formulas.addProperty("comment", "动作的伤害和消耗公式 - 动作ID: { 公式名: 表达式 }，未写出的公式使用默认表达式");
+        formulas.addProperty("comment_syntax", "支持 + - * / % ^、比较运算（结果为 1 或 0）、min max pow abs sqrt floor ceil round exp log clamp(x, lo, hi) if(条件, 值1, 值2)；结果小于 0 时按 0 计算");
+        for (ActionFormula formula : DCoreFormulas.all()) {
+            JsonObject action = formulas.has(formula.action())
+                ? formulas.getAsJsonObject(formula.action())
+                : new JsonObject();
+            action.addProperty(formula.name(), formula.kind().defaultSource());
+            action.addProperty("comment_" + formula.name(), "可用变量: " + String.join(", ", formula.kind().variables()));
+            formulas.add(formula.action(), action);
+        }
+        return formulas;
+    }
+    
+    /**
+     * 解析整个配置
+     * 自定义媒体类型最先注册，之后的部分才能引用它们；无效的条目记录到 report 并跳过
      */
-    private static void loadConfig(JsonObject json) {
-        int itemsLoaded = 0;
-        int actionsLoaded = 0;
+    static MediaConfig parse(JsonObject json, ConfigReport report) {
+        List<MediaType> mediaTypes = parseMediaTypes(json, report);
         
-        // 加载媒体类型的血量扣除比例配置
-        if (json.has("media_type_health_rates")) {
-            JsonObject healthRates = json.getAsJsonObject("media_type_health_rates");
-            for (Map.Entry<String, JsonElement> entry : healthRates.entrySet()) {
-                String key = entry.getKey();
-                if (key.equals("comment") || key.startsWith("comment_")) {
+        Map<MediaType, Double> healthRates = new HashMap<>();
+        for (Map.Entry<String, JsonElement> entry : section(json, "media_type_health_rates", report)) {
+            String where = "media_type_health_rates/" + entry.getKey();
+            MediaType mediaType = parseMediaType(entry.getKey(), where, report);
+            if (mediaType == null) {
+                continue;
+            }
+            try {
+                double rate = entry.getValue().getAsDouble();
+                if (!(rate > 0)) {
+                    report.add(where, "血量扣除比例必须是正数");
                     continue;
                 }
-                
-                try {
-                    MediaType mediaType = MediaType.fromString(key);
-                    double rate = entry.getValue().getAsDouble();
-                    MediaTypeRegistry.registerMediaTypeHealthRate(mediaType, rate);
-                } catch (Exception e) {
-                    DCore.LOGGER.warn("[MediaTypeConfig] 无效的血量扣除比例配置: {}", key, e);
+                healthRates.put(mediaType, rate);
+            } catch (RuntimeException e) {
+                report.add(where, "血量扣除比例必须是数字");
+            }
+        }
+        
+        List<MediaConfig.Item> items = new ArrayList<>();
+        for (Map.Entry<String, JsonElement> entry : section(json, "special_media_items", report)) {
+            String where = "special_media_items/" + entry.getKey();
+            try {
+                MediaConfig.Item item = parseItem(entry.getKey(), entry.getValue(), where, report);
+                if (item != null) {
+                    items.add(item);
                 }
+            } catch (RuntimeException e) {
+                report.add(where, e);
             }
         }
         
-        if (json.has("special_media_items")) {
-            JsonObject items = json.getAsJsonObject("special_media_items");
-            
-            for (Map.Entry<String, JsonElement> entry : items.entrySet()) {
-                String key = entry.getKey();
-                if (key.equals("comment") || key.startsWith("comment_") || key.equals("example")) {
+        Map<ResourceLocation, MediaRequirement> actions = new HashMap<>();
+        for (Map.Entry<String, JsonElement> entry : section(json, "special_media_actions", report)) {
+            String where = "special_media_actions/" + entry.getKey();
+            try {
+                ResourceLocation actionId = new ResourceLocation(entry.getKey());
+                MediaRequirement requirement = parseRequirement(entry.getValue(), where, report);
+                if (requirement != null) {
+                    actions.put(actionId, requirement);
+                }
+            } catch (RuntimeException e) {
+                report.add(where, e);
+            }
+        }
+        
+        Map<String, Map<String, String>> formulas = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonElement> entry : section(json, "action_formulas", report)) {
+            String where = "action_formulas/" + entry.getKey();
+            if (!entry.getValue().isJsonObject()) {
+                report.add(where, "动作公式必须是对象");
+                continue;
+            }
+            Map<String, String> action = new LinkedHashMap<>();
+            for (Map.Entry<String, JsonElement> formula : entry.getValue().getAsJsonObject().entrySet()) {
+                if (formula.getKey().startsWith("comment")) {
                     continue;
                 }
-                
-                try {
-                    ResourceLocation itemId = new ResourceLocation(key);
-                    JsonObject itemConfig = entry.getValue().getAsJsonObject();
-                    
-                    String typeStr = itemConfig.has("type") ? itemConfig.get("type").getAsString() : "standard";
-                    MediaType mediaType = MediaType.fromString(typeStr);
-                    
-                    MediaTypeRegistry.registerItemMediaType(itemId, mediaType);
-                    itemsLoaded++;
-                } catch (Exception e) {
-                    DCore.LOGGER.warn("[MediaTypeConfig] 无效的物品配置: {}", key, e);
+                if (!formula.getValue().isJsonPrimitive()) {
+                    report.add(where + "/" + formula.getKey(), "公式必须是字符串");
+                    continue;
                 }
+                action.put(formula.getKey(), formula.getValue().getAsString());
             }
+            formulas.put(entry.getKey(), Map.copyOf(action));
         }
         
-        if (json.has("special_media_actions")) {
-            JsonElement actionsElement = json.get("special_media_actions");
-            if (actionsElement.isJsonObject()) {
-                JsonObject actions = actionsElement.getAsJsonObject();
-                
-                for (Map.Entry<String, JsonElement> entry : actions.entrySet()) {
-                    String key = entry.getKey();
-                    if (key.equals("comment") || key.startsWith("comment_") || key.equals("example")) {
-                        continue;
-                    }
-                    
-                    try {
-                        ResourceLocation actionId = new ResourceLocation(key);
-                        MediaType requiredType = MediaType.SPECIAL; // 默认值
-                        
-                        // 如果值是字符串，解析媒体类型
-                        JsonElement value = entry.getValue();
-                        if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isString()) {
-                            String typeStr = value.getAsString();
-                            requiredType = MediaType.fromString(typeStr);
-                        }
-                        // 如果是对象，可以扩展支持更多配置（目前默认 SPECIAL）
-                        
-                        MediaTypeRegistry.registerActionRequiredType(actionId, requiredType);
-                        actionsLoaded++;
-                    } catch (Exception e) {
-                        DCore.LOGGER.warn("[MediaTypeConfig] 无效的动作配置: {}", key, e);
-                    }
-                }
+        boolean deferredDamage = parseFlag(json, "damage", "deferred", report);
+        boolean circleContainerSources = parseFlag(json, "spell_circle", "container_sources", report);
+        return new MediaConfig(mediaTypes, items, actions, healthRates, formulas, deferredDamage, circleContainerSources,
+            report.problems(), true);
+    }
+    
+    /**
+     * 对象形式的配置部分，跳过说明条目（comment、comment_*、example）
+     * 没有这一部分时为空；不是对象时记录问题并视为空
+     */
+    private static List<Map.Entry<String, JsonElement>> section(JsonObject json, String name, ConfigReport report) {
+        JsonElement element = json.get(name);
+        if (element == null) {
+            return List.of();
+        }
+        if (!element.isJsonObject()) {
+            report.add(name, "必须是对象，已忽略");
+            return List.of();
+        }
+        List<Map.Entry<String, JsonElement>> entries = new ArrayList<>();
+        for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+            String key = entry.getKey();
+            if (key.equals("comment") || key.startsWith("comment_") || key.equals("example")) {
+                continue;
             }
+            entries.add(entry);
         }
+        return entries;
     }
     
     /**
-     * 重新加载配置
+     * 注册 media_types 部分定义的媒体类型
+     * 类型只增不减，重复注册同名类型返回已有的类型
      */
-    public static void reload() {
-        if (configPath != null) {
-            load(configPath.getParent().getParent());
+    private static List<MediaType> parseMediaTypes(JsonObject json, ConfigReport report) {
+        List<MediaType> types = new ArrayList<>();
+        for (Map.Entry<String, JsonElement> entry : section(json, "media_types", report)) {
+            try {
+                types.add(MediaType.register(entry.getKey()));
+            } catch (RuntimeException e) {
+                report.add("media_types/" + entry.getKey(), e);
+            }
         }
+        return types;
+    }
+    
+    /**
+     * 解析一个媒体物品条目：amount 默认 80000，type 默认 standard，priority 默认与紫水晶粉相同
+     */
+    @Nullable
+    private static MediaConfig.Item parseItem(String key, JsonElement value, String where, ConfigReport report) {
+        ItemSelector selector = ItemSelector.parse(key);
+        if (!value.isJsonObject()) {
+            report.add(where, "物品配置必须是对象");
+            return null;
+        }
+        JsonObject itemConfig = value.getAsJsonObject();
+        
+        long amount = itemConfig.has("amount") ? itemConfig.get("amount").getAsLong() : 80000L;
+        if (amount <= 0) {
+            report.add(where, "amount 必须是正数");
+            return null;
+        }
+        String typeStr = itemConfig.has("type") ? itemConfig.get("type").getAsString() : "standard";
+        MediaType mediaType = parseMediaType(typeStr, where, report);
+        if (mediaType == null) {
+            return null;
+        }
+        int priority = itemConfig.has("priority") ? itemConfig.get("priority").getAsInt() : ADMediaHolder.AMETHYST_DUST_PRIORITY;
+        return new MediaConfig.Item(selector, amount, priority, mediaType);
+    }
+    
+    /**
+     * 解析一个部分中的开关（damage/deferred、spell_circle/container_sources），没有这个开关时为 false
+     */
+    private static boolean parseFlag(JsonObject json, String section, String key, ConfigReport report) {
+        JsonElement element = json.get(section);
+        if (element == null || !element.isJsonObject() || !element.getAsJsonObject().has(key)) {
+            return false;
+        }
+        try {
+            return element.getAsJsonObject().get(key).getAsBoolean();
+        } catch (RuntimeException e) {
+            report.add(section + "/" + key, "必须是布尔值，已使用 false");
+            return false;
+        }
+    }
+    
+    /**
+     * 解析媒体类型名称，未知类型记录问题并返回 null
+     */
+    @Nullable
+    private static MediaType parseMediaType(String name, String where, ConfigReport report) {
+        MediaType type = MediaType.byName(name);
+        if (type == null) {
+            report.add(where, "未知的媒体类型 \"" + name + "\"，请先在 media_types 中定义");
+        }
+        return type;
+    }
+    
+    /**
+     * 解析动作的媒体需求
+     * - 字符串："special"，只需要一种类型
+     * - 数组：["special", "standard"]，按偏好顺序使用任一类型
+     * - 对象：{"split": {"special": 0.6, "standard": 0.4}} 按权重拆分，或 {"any_of": [...]} 同数组
+     * - null 或其他对象：默认需要 SPECIAL
+     * @return 媒体需求，包含未知类型或格式无效时返回 null（已记录问题）
+     */
+    @Nullable
+    private static MediaRequirement parseRequirement(JsonElement value, String where, ConfigReport report) {
+        if (value == null || value.isJsonNull()) {
+            return MediaRequirement.of(MediaType.SPECIAL); // 默认值
+        }
+        if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isString()) {
+            MediaType type = parseMediaType(value.getAsString(), where, report);
+            return type != null ? MediaRequirement.of(type) : null;
+        }
+        if (value.isJsonArray()) {
+            return parseAnyOf(value.getAsJsonArray(), where, report);
+        }
+        if (value.isJsonObject()) {
+            JsonObject object = value.getAsJsonObject();
+            if (object.has("split")) {
+                JsonObject split = object.getAsJsonObject("split");
+                MediaType[] types = new MediaType[split.size()];
+                double[] weights = new double[split.size()];
+                int i = 0;
+                for (Map.Entry<String, JsonElement> component : split.entrySet()) {
+                    MediaType type = parseMediaType(component.getKey(), where, report);
+                    if (type == null) {
+                        return null;
+                    }
+                    types[i] = type;
+                    weights[i] = component.getValue().getAsDouble();
+                    i++;
+                }
+                return MediaRequirement.split(types, weights);
+            }
+            if (object.has("any_of")) {
+                return parseAnyOf(object.getAsJsonArray("any_of"), where, report);
+            }
+            // 其他对象保持原来的行为，默认需要 SPECIAL
+            return MediaRequirement.of(MediaType.SPECIAL);
+        }
+        report.add(where, "无法识别的动作媒体需求格式: " + value);
+        return null;
+    }
+    
+    @Nullable
+    private static MediaRequirement parseAnyOf(JsonArray array, String where, ConfigReport report) {
+        MediaType[] types = new MediaType[array.size()];
+        for (int i = 0; i < types.length; i++) {
+            MediaType type = parseMediaType(array.get(i).getAsString(), where, report);
+            if (type == null) {
+                return null;
+            }
+            types[i] = type;
+        }
+        return MediaRequirement.anyOf(types);
     }
 }
-
@@ -3,13 +3,14 @@ package com.dcore.media.fabric;
 import at.petrak.hexcasting.api.addldata.ADMediaHolder;
 import at.petrak.hexcasting.fabric.cc.HexCardinalComponents;
 import at.petrak.hexcasting.fabric.cc.adimpl.CCMediaHolder;
+import com.dcore.media.MediaJournal;
 import com.dcore.media.MediaType;
+import com.dcore.media.StaticMediaDescriptor;
 import com.dcore.media.TypedMediaHolder;
 import com.dcore.media.TypedMediaHolderItem;
 import dev.onyxstudios.cca.api.v3.item.ItemComponent;
 import net.minecraft.world.item.ItemStack;
-
-import java.util.function.Supplier;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Fabric 平台上的类型化媒体容器实现
@@ -23,9 +24,26 @@ public abstract class TypedCCMediaHolder extends CCMediaHolder implements TypedM
 
     /**
      * 基于物品的类型化媒体容器（用于实现 MediaHolderItem 的物品）
+     * 施法期间登记到 MediaJournal 后，媒体量只读写缓存的值，施法结束时（或法术执行之前）写回 NBT；
+     * 物品自己重写了 withdrawMedia 或 insertMedia 时不参与缓存
      */
-    public static class ItemBased extends TypedCCMediaHolder {
+    public static class ItemBased extends TypedCCMediaHolder implements MediaJournal.Cacheable {
+        // 物品类是否使用 TypedMediaHolderItem 默认的提取和插入逻辑
+        private static final ClassValue<Boolean> DEFAULT_TRANSFER = new ClassValue<>() {
+            @Override
+            protected Boolean computeValue(Class<?> type) {
+                try {
+                    return type.getMethod("withdrawMedia", ItemStack.class, long.class, boolean.class).getDeclaringClass() == TypedMediaHolderItem.class
+                        && type.getMethod("insertMedia", ItemStack.class, long.class, boolean.class).getDeclaringClass() == TypedMediaHolderItem.class;
+                } catch (NoSuchMethodException e) {
+                    return false;
+                }
+            }
+        };
+
         private final TypedMediaHolderItem mediaHolder;
+        @Nullable
+        private MediaJournal.Entry journalEntry;
 
         public ItemBased(TypedMediaHolderItem mediaHolder, ItemStack stack) {
             super(stack);
@@ -39,7 +57,8 @@ public abstract class TypedCCMediaHolder extends CCMediaHolder implements TypedM
 
         @Override
         public long getMedia() {
-            return this.mediaHolder.getMedia(this.stack);
+            MediaJournal.Entry entry = this.journalEntry;
+            return entry != null ? entry.media() : this.mediaHolder.getMedia(this.stack);
         }
 
         @Override
@@ -49,7 +68,12 @@ public abstract class TypedCCMediaHolder extends CCMediaHolder implements TypedM
 
         @Override
         public void setMedia(long media) {
-            this.mediaHolder.setMedia(this.stack, media);
+            MediaJournal.Entry entry = this.journalEntry;
+            if (entry != null) {
+                entry.setMedia(media);
+            } else {
+                this.mediaHolder.setMedia(this.stack, media);
+            }
         }
 
         @Override
@@ -74,7 +98,19 @@ public abstract class TypedCCMediaHolder extends CCMediaHolder implements TypedM
 
         @Override
         public long withdrawMedia(long cost, boolean simulate) {
-            return this.mediaHolder.withdrawMedia(this.stack, cost, simulate);
+            MediaJournal.Entry entry = this.journalEntry;
+            if (entry == null) {
+                return this.mediaHolder.withdrawMedia(this.stack, cost, simulate);
+            }
+            // 与 TypedMediaHolderItem.withdrawMedia 相同，只是读写缓存的值
+            long mediaHere = entry.media();
+            if (cost < 0) {
+                cost = mediaHere;
+            }
+            if (!simulate) {
+                entry.setMedia(mediaHere - cost);
+            }
+            return Math.min(cost, mediaHere);
         }
 
         @Override
@@ -83,33 +119,72 @@ public abstract class TypedCCMediaHolder extends CCMediaHolder implements TypedM
             MediaType stackType = this.mediaHolder.getMediaType(this.stack);
             // 这里我们需要知道要插入的媒体类型，但 ADMediaHolder 接口没有类型信息
             // 所以我们需要通过其他方式验证，或者信任调用者
-            return this.mediaHolder.insertMedia(this.stack, amount, simulate);
+            MediaJournal.Entry entry = this.journalEntry;
+            if (entry == null) {
+                return this.mediaHolder.insertMedia(this.stack, amount, simulate);
+            }
+            // 与 TypedMediaHolderItem.insertMedia 相同，只是读写缓存的值
+            long mediaHere = entry.media();
+            long emptySpace = this.mediaHolder.getMaxMedia(this.stack) - mediaHere;
+            if (emptySpace <= 0) {
+                return 0;
+            }
+            if (amount < 0) {
+                amount = emptySpace;
+            }
+            long inserting = Math.min(amount, emptySpace);
+            if (!simulate) {
+                entry.setMedia(mediaHere + inserting);
+            }
+            return inserting;
+        }
+
+        @Override
+        public boolean isCacheable() {
+            return DEFAULT_TRANSFER.get(this.mediaHolder.getClass());
+        }
+
+        @Override
+        public @Nullable MediaJournal.Entry journalEntry() {
+            return this.journalEntry;
+        }
+
+        @Override
+        public void attachJournal(@Nullable MediaJournal.Entry entry) {
+            this.journalEntry = entry;
+        }
+
+        @Override
+        public long readStoredMedia() {
+            return this.mediaHolder.getMedia(this.stack);
+        }
+
+        @Override
+        public void writeStoredMedia(long media) {
+            this.mediaHolder.setMedia(this.stack, media);
         }
     }
 
     /**
      * 静态类型化媒体容器（用于固定提供媒体量的消耗品）
+     * 媒体量、优先级和类型来自物品共享的 StaticMediaDescriptor，每个堆栈的容器只持有描述和堆栈
      */
     public static class Static extends TypedCCMediaHolder {
-        private final Supplier<Long> baseWorth;
-        private final int consumptionPriority;
-        private final MediaType mediaType;
+        private final StaticMediaDescriptor descriptor;
 
-        public Static(Supplier<Long> baseWorth, int consumptionPriority, MediaType mediaType, ItemStack stack) {
+        public Static(StaticMediaDescriptor descriptor, ItemStack stack) {
             super(stack);
-            this.baseWorth = baseWorth;
-            this.consumptionPriority = consumptionPriority;
-            this.mediaType = mediaType;
+            this.descriptor = descriptor;
         }
 
         @Override
         public MediaType getMediaType() {
-            return mediaType;
+            return descriptor.type();
         }
 
         @Override
         public long getMedia() {
-            return baseWorth.get() * stack.getCount();
+            return descriptor.media(stack.getCount());
         }
 
         @Override
@@ -134,7 +209,7 @@ public abstract class TypedCCMediaHolder extends CCMediaHolder implements TypedM
 
         @Override
         public int getConsumptionPriority() {
-            return consumptionPriority;
+            return descriptor.priority();
         }
 
         @Override
@@ -144,17 +219,15 @@ public abstract class TypedCCMediaHolder extends CCMediaHolder implements TypedM
 
         @Override
         public long withdrawMedia(long cost, boolean simulate) {
-            long worth = baseWorth.get();
-            if (cost < 0) {
-                cost = worth * stack.getCount();
-            }
-            double itemsRequired = cost / (double) worth;
-            int itemsUsed = Math.min((int) Math.ceil(itemsRequired), stack.getCount());
-            if (!simulate) {
-                stack.shrink(itemsUsed);
-            }
-            return itemsUsed * worth;
+            return descriptor.withdraw(stack, cost, simulate);
+        }
+
+        /**
+         * 整堆提取：不需要先模拟，堆栈只缩减一次
+         */
+        @Override
+        public long withdrawAllMedia() {
+            return descriptor.withdrawAll(stack, false);
         }
     }
 }
-
@@ -2,10 +2,15 @@ package com.dcore.mixin;
 
 import at.petrak.hexcasting.api.casting.iota.PatternIota;
 import at.petrak.hexcasting.api.casting.PatternShapeMatch;
-import com.dcore.media.ActionContext;
-import com.dcore.DCore;
-import net.minecraft.resources.ResourceLocation;
+import com.dcore.media.CastFrameOwner;
+import com.dcore.media.CastFrames;
+import com.dcore.media.MediaRequirement;
+import com.dcore.media.MediaTypeRegistry;
+import com.dcore.trace.DCoreTrace;
+import com.dcore.trace.TraceEvent;
+import net.minecraft.resources.ResourceKey;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
@@ -13,14 +18,24 @@ import org.spongepowered.asm.mixin.injection.callback.LocalCapture;
 
 /**
  * Mixin 到 PatternIota 的动作执行处，用于追踪当前动作 ID
- * 在动作执行前设置动作上下文，执行后清除
+ * precheck 之后按动作的 ResourceKey 查找媒体需求：受管理的动作在施法环境的帧栈上压入新帧，返回时出栈；
+ * 其他动作（绝大多数）只做一次查表，不访问帧栈
  */
 @Mixin(PatternIota.class)
-public class ActionContextMixin {
+public class ActionContextMixin implements CastFrameOwner {
+    
+    // 该图案压入且尚未弹出的帧数（同一个图案对象可能递归执行）
+    @Unique
+    private int dcore$pushedFrames;
+    
+    @Override
+    public boolean dcore$hasCastFrame() {
+        return dcore$pushedFrames > 0;
+    }
     
     /**
-     * 在 precheckAction 之后设置当前动作 ID
-     * 此时 lookup 已经确定，可以从 lookup 提取动作 ID
+     * 在 precheckAction 之后设置当前动作
+     * 此时 lookup 已经确定，可以从 lookup 取得动作的 ResourceKey
      */
     @Inject(
         method = "execute",
@@ -40,39 +55,60 @@ public class ActionContextMixin {
         java.util.function.Supplier<?> castedName,
         PatternShapeMatch lookup
     ) {
-        ResourceLocation actionId = extractActionId(lookup);
-        if (actionId != null) {
-            ActionContext.setCurrentAction(actionId);
+        ResourceKey<?> actionKey = extractActionKey(lookup);
+        if (actionKey == null) {
+            return;
+        }
+        if (DCoreTrace.enabled) {
+            DCoreTrace.enterAction(vm.getEnv().getCastingEntity(), actionKey.location());
+        }
+        
+        MediaRequirement requirement = MediaTypeRegistry.snapshot().getActionRequirement(actionKey);
+        if (requirement == null) {
+            if (DCoreTrace.recording) DCoreTrace.record(TraceEvent.ACTION_UNGOVERNED);
+            return;
         }
+        
+        CastFrames.of(vm.getEnv()).push(this).setAction(actionKey.location(), requirement);
+        dcore$pushedFrames++;
     }
     
     /**
-     * 在方法返回时清除（延迟清除，给 extractMedia 更多时间）
-     * 注意：不在 execute 方法中直接清除，而是在 TypedMediaExtractor 中处理完媒体后再清除
-     * 这里只作为备用清除，防止 ActionContext 泄漏
+     * 在方法返回时弹出该图案压入的帧，没有压入帧的图案直接返回
+     * 取消标记随帧一起丢弃，不会影响下一个图案的执行；
+     * 动作 ID 保留在刚返回的帧上，供随后的 ConsumeMedia 副作用提交媒体（见 CastFrames）
      */
     @Inject(
         method = "execute",
         at = @At("RETURN")
     )
-    private void onAfterActionExecute(CallbackInfoReturnable<?> cir) {
-        // 在 PatternIota.execute() 返回时，清除取消标记，确保不影响下一个图案的执行
-        // 这样即使当前图案被取消，也不会影响后续图案的执行
-        com.dcore.media.SpellCancellationContext.clear();
-        com.dcore.DCore.LOGGER.info("[ActionContextMixin] PatternIota.execute() 返回，清除取消标记");
+    private void onAfterActionExecute(
+        at.petrak.hexcasting.api.casting.eval.vm.CastingVM vm,
+        net.minecraft.server.level.ServerLevel world,
+        at.petrak.hexcasting.api.casting.eval.vm.SpellContinuation continuation,
+        CallbackInfoReturnable<?> cir
+    ) {
+        if (dcore$pushedFrames == 0) {
+            return;
+        }
+        dcore$pushedFrames--;
+        CastFrames frames = CastFrames.of(vm.getEnv());
+        frames.pop(this);
+        if (DCoreTrace.recording) DCoreTrace.record(TraceEvent.PATTERN_RETURN, frames.depth());
     }
     
     /**
-     * 从 PatternShapeMatch 提取动作 ID
+     * 从 PatternShapeMatch 取得动作的 ResourceKey（由 Minecraft 驻留，可以按引用查表）
      */
-    private ResourceLocation extractActionId(PatternShapeMatch lookup) {
+    @Unique
+    private static ResourceKey<?> extractActionKey(PatternShapeMatch lookup) {
         if (lookup instanceof PatternShapeMatch.Normal normal) {
-            return normal.key.location();
+            return normal.key;
         } else if (lookup instanceof PatternShapeMatch.PerWorld perWorld) {
-            return perWorld.key.location();
+            return perWorld.key;
         } else if (lookup instanceof PatternShapeMatch.Special special) {
             // Special handler 使用其 key
-            return special.key.location();
+            return special.key;
         }
         return null;
     }
@@ -0,0 +1,32 @@
+package com.dcore.mixin;
+
+import at.petrak.hexcasting.api.casting.eval.vm.CastingVM;
+import com.dcore.media.MediaJournal;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * Mixin 到施法虚拟机的执行循环，在每一步（任意 iota，包括 precheck 失败的图案和非图案 iota）执行之前
+ * 提交媒体写回缓存的检查点（见 MediaJournal）
+ * 上一步的副作用（ConsumeMedia 等）在它的 PostExecution 之后才执行，只有在这里提交，
+ * 之后一步失败时才不会退回上一步已经花费的媒体
+ */
+@Mixin(CastingVM.class)
+public class CastingVMMixin {
+
+    @Inject(
+        method = "queueExecuteAndWrapIotas",
+        at = @At(
+            value = "INVOKE",
+            target = "Lat/petrak/hexcasting/api/casting/eval/vm/ContinuationFrame;evaluate(Lat/petrak/hexcasting/api/casting/eval/vm/SpellContinuation;Lnet/minecraft/server/level/ServerLevel;Lat/petrak/hexcasting/api/casting/eval/vm/CastingVM;)Lat/petrak/hexcasting/api/casting/eval/CastResult;"
+        )
+    )
+    private void onBeforeEvaluate(CallbackInfoReturnable<?> cir) {
+        MediaJournal journal = ((CastingVM) (Object) this).getEnv().getExtension(MediaJournal.KEY);
+        if (journal != null) {
+            journal.beginStep();
+        }
+    }
+}
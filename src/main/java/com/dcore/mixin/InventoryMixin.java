@@ -0,0 +1,55 @@
+package com.dcore.mixin;
+
+import com.dcore.media.MediaSourceIndex;
+import net.minecraft.world.entity.player.Inventory;
+import net.minecraft.world.item.ItemStack;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * Mixin 到玩家背包，挂载类型化媒体源索引，并在背包内容变化时通知索引失效
+ * 只需要关心"新物品进入槽位"的路径；物品被取走时索引中的旧条目会在使用时被跳过
+ * 这些注入只是让常见路径立即失效；直接改写槽位列表（items.set 等）不经过这里，
+ * 由索引在每个 tick 第一次查找时逐个槽位比较堆栈兜底（见 MediaSourceIndex）
+ */
+@Mixin(Inventory.class)
+public abstract class InventoryMixin implements MediaSourceIndex.Holder {
+
+    @Unique
+    private MediaSourceIndex dcore$mediaSourceIndex;
+
+    @Override
+    public MediaSourceIndex dcore$getMediaSourceIndex() {
+        if (dcore$mediaSourceIndex == null) {
+            dcore$mediaSourceIndex = new MediaSourceIndex((Inventory) (Object) this);
+        }
+        return dcore$mediaSourceIndex;
+    }
+
+    @Inject(
+        method = {"setItem", "setChanged", "setPickedItem", "replaceWith", "load", "clearContent"},
+        at = @At("TAIL")
+    )
+    private void dcore$onContentsChanged(CallbackInfo ci) {
+        if (dcore$mediaSourceIndex != null) {
+            dcore$mediaSourceIndex.invalidate();
+        }
+    }
+
+    /**
+     * add 会直接写入槽位列表，不经过 setItem
+     */
+    @Inject(
+        method = "add(ILnet/minecraft/world/item/ItemStack;)Z",
+        at = @At("RETURN")
+    )
+    private void dcore$onAdd(int slot, ItemStack stack, CallbackInfoReturnable<Boolean> cir) {
+        if (dcore$mediaSourceIndex != null) {
+            dcore$mediaSourceIndex.invalidate();
+        }
+    }
+}
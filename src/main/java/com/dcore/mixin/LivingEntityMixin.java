@@ -0,0 +1,59 @@
+package com.dcore.mixin;
+
+import com.dcore.hex.NegativeEffectSummary;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.effect.MobEffectInstance;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.LivingEntity;
+import org.jetbrains.annotations.Nullable;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Mixin 到 LivingEntity，挂载负面效果汇总，并在效果变化时维护它
+ * 汇总只在第一次被读取时创建，从未被法术选为目标的生物不会有额外开销
+ */
+@Mixin(LivingEntity.class)
+public abstract class LivingEntityMixin implements NegativeEffectSummary.Holder {
+
+    @Unique
+    private NegativeEffectSummary dcore$negativeEffectSummary;
+
+    @Override
+    public NegativeEffectSummary dcore$getNegativeEffectSummary() {
+        if (dcore$negativeEffectSummary == null) {
+            dcore$negativeEffectSummary = new NegativeEffectSummary((LivingEntity) (Object) this);
+        }
+        return dcore$negativeEffectSummary;
+    }
+
+    @Inject(method = "onEffectAdded", at = @At("TAIL"))
+    private void dcore$onEffectAdded(MobEffectInstance effect, @Nullable Entity source, CallbackInfo ci) {
+        if (dcore$negativeEffectSummary != null) {
+            dcore$negativeEffectSummary.onEffectAdded(effect);
+        }
+    }
+
+    /**
+     * 效果等级或时长被更新（旧的等级已被覆盖），以及效果被移除或到期
+     */
+    @Inject(method = {"onEffectUpdated", "onEffectRemoved"}, at = @At("TAIL"))
+    private void dcore$onEffectChanged(CallbackInfo ci) {
+        if (dcore$negativeEffectSummary != null) {
+            dcore$negativeEffectSummary.invalidate();
+        }
+    }
+
+    /**
+     * 从存档读取时效果直接写入效果表，不经过 onEffectAdded
+     */
+    @Inject(method = "readAdditionalSaveData", at = @At("TAIL"))
+    private void dcore$onLoad(CompoundTag tag, CallbackInfo ci) {
+        if (dcore$negativeEffectSummary != null) {
+            dcore$negativeEffectSummary.invalidate();
+        }
+    }
+}
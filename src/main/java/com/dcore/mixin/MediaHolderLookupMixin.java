@@ -0,0 +1,36 @@
+package com.dcore.mixin;
+
+import at.petrak.hexcasting.api.addldata.ADMediaHolder;
+import com.dcore.media.MediaItemTable;
+import com.dcore.media.StaticMediaDescriptor;
+import com.dcore.media.fabric.TypedCCMediaHolder;
+import net.minecraft.world.item.ItemStack;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * Mixin 到 HexMod 的媒体容器查找
+ * 标签条目和数据包条目选中的物品在物品组件注册时还不能确定，没有 MEDIA_HOLDER 组件；
+ * 物品没有组件时按 MediaItemTable 最近一次标签加载的结果补上一个消耗品容器，
+ * HexMod 自己的提取、充能和提示与 DCore 的索引看到同样的媒体物品
+ */
+@Mixin(targets = "at.petrak.hexcasting.fabric.xplat.FabricXplatImpl")
+public class MediaHolderLookupMixin {
+
+    @Inject(
+        method = "findMediaHolder(Lnet/minecraft/world/item/ItemStack;)Lat/petrak/hexcasting/api/addldata/ADMediaHolder;",
+        at = @At("RETURN"),
+        cancellable = true
+    )
+    private void dcore$findTableMediaHolder(ItemStack stack, CallbackInfoReturnable<ADMediaHolder> cir) {
+        if (cir.getReturnValue() != null || stack.isEmpty()) {
+            return;
+        }
+        StaticMediaDescriptor descriptor = MediaItemTable.current().fallbackDescriptor(stack.getItem());
+        if (descriptor != null) {
+            cir.setReturnValue(new TypedCCMediaHolder.Static(descriptor, stack));
+        }
+    }
+}
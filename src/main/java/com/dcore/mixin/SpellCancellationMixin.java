@@ -3,10 +3,11 @@ package com.dcore.mixin;
 import at.petrak.hexcasting.api.casting.eval.CastResult;
 import at.petrak.hexcasting.api.casting.eval.sideeffects.OperatorSideEffect;
 import at.petrak.hexcasting.api.casting.iota.PatternIota;
-import at.petrak.hexcasting.common.lib.hex.HexEvalSounds;
-import com.dcore.media.SpellCancellationContext;
-import net.minecraft.network.chat.Component;
-import net.minecraft.server.level.ServerPlayer;
+import com.dcore.media.CastFrame;
+import com.dcore.media.CastFrameOwner;
+import com.dcore.media.CastFrames;
+import com.dcore.trace.DCoreTrace;
+import com.dcore.trace.TraceEvent;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
@@ -41,18 +42,19 @@ public class SpellCancellationMixin {
         at.petrak.hexcasting.api.casting.eval.vm.SpellContinuation continuation,
         CallbackInfoReturnable<CastResult> cir
     ) {
+        // 不受管理的动作没有压入帧，不可能被标记取消
+        if (!((CastFrameOwner) (Object) this).dcore$hasCastFrame()) {
+            return;
+        }
+        
         // 在 operate() 调用之后检查是否需要取消法术执行（血量扣除超过最大生命值）
-        boolean shouldCancel = SpellCancellationContext.shouldCancel();
-        long mediaCost = SpellCancellationContext.getMediaCost();
+        CastFrame frame = CastFrames.current(vm.getEnv());
+        boolean shouldCancel = frame.shouldCancel();
+        long mediaCost = frame.getMediaCost();
         
-        // 获取当前动作 ID 用于调试
-        net.minecraft.resources.ResourceLocation currentActionId = com.dcore.media.ActionContext.getCurrentAction();
-        com.dcore.DCore.LOGGER.info("[SpellCancellationMixin] onAfterOperate: shouldCancel={}, mediaCost={}, currentActionId={}, thread={}", 
-            shouldCancel, mediaCost, currentActionId, Thread.currentThread().getId());
+        if (DCoreTrace.recording) DCoreTrace.record(TraceEvent.OPERATE_CHECK, DCoreTrace.bool(shouldCancel), mediaCost);
         
         if (shouldCancel && mediaCost > 0) {
-            com.dcore.DCore.LOGGER.info("[SpellCancellationMixin] operate() 执行后检测到需要取消法术，修改返回结果");
-            
             // 获取 operate() 的原始返回结果
             CastResult originalResult = cir.getReturnValue();
             if (originalResult == null) {
@@ -89,15 +91,14 @@ public class SpellCancellationMixin {
                 originalResult.getSound() // 保留原始音效
             );
             
-            com.dcore.DCore.LOGGER.info("[SpellCancellationMixin] 已修改返回结果，清空栈并设置 ERRORED，副作用数量: {}", 
-                sideEffects.size());
+            if (DCoreTrace.recording) DCoreTrace.record(TraceEvent.OPERATE_CANCELLED, sideEffects.size());
             
             cir.setReturnValue(cancelledResult);
             return; // 直接返回，不再执行后续代码
         } else if (shouldCancel && mediaCost == 0) {
             // 如果 mediaCost 为 0，清除标记但不取消执行（可能是异常情况）
             com.dcore.DCore.LOGGER.warn("[SpellCancellationMixin] 检测到取消标记但 mediaCost=0，清除标记并允许继续执行");
-            SpellCancellationContext.clear();
+            frame.clearCancellation();
         }
     }
 }
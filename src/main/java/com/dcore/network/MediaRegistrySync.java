@@ -0,0 +1,334 @@
+package com.dcore.network;
+
+import com.dcore.DCore;
+import com.dcore.media.MediaRegistrySnapshot;
+import com.dcore.media.MediaRequirement;
+import com.dcore.media.MediaType;
+import com.dcore.media.MediaTypeRegistry;
+import com.dcore.media.core.CostVector;
+import io.netty.handler.codec.DecoderException;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.item.Item;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 媒体注册表同步包（服务端 -> 客户端）
+ * 玩家加入时发送一次完整内容，之后注册表变化时（数据包 /reload、配置文件重新加载）只发送变化的条目
+ *
+ * 包内容为二进制，不是 JSON：
+ * - 媒体类型表：服务器的类型 ID 按编号排列，之后的类型都以编号（varint）表示，客户端按 ID 映射到本地类型，
+ *   本地没有的类型注册为远程类型，断开连接时释放
+ * - 物品：物品的数字 ID（varint，由注册表同步保证两端一致）→ 类型编号
+ * - 动作：动作 ID → 模式、类型编号和（按比例拆分时的）权重
+ * - 血量扣除比例：类型编号 → double
+ * 差量包在每一部分前面额外写出被删除的键
+ */
+public final class MediaRegistrySync {
+    public static final ResourceLocation ID = new ResourceLocation(DCore.MOD_ID, "media_registry_sync");
+
+    private static final byte FULL = 0;
+    private static final byte DELTA = 1;
+
+    // 最近一次广播的内容，用于计算差量；只在服务器线程上访问
+    @Nullable
+    private static MediaRegistrySnapshot.Builder lastSent;
+
+    private MediaRegistrySync() {
+    }
+
+    public static void register() {
+        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
+            MediaRegistrySnapshot.Builder current = MediaTypeRegistry.merged();
+            if (lastSent == null) {
+                lastSent = current;
+            }
+            FriendlyByteBuf buf = PacketByteBufs.create();
+            write(buf, null, current);
+            sender.sendPacket(ID, buf);
+        });
+        ServerLifecycleEvents.END_DATA_PACK_RELOAD.register((server, resources, success) -> {
+            if (success) {
+                broadcastChanges(server);
+            }
+        });
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> lastSent = null);
+    }
+
+    /**
+     * 把上次广播以来的变化发送给所有玩家，在服务器线程上调用
+     * 玩家在变化之后、广播之前加入时会重复收到同一批条目，差量只包含绝对值，重复应用没有影响
+     */
+    public static void broadcastChanges(MinecraftServer server) {
+        MediaRegistrySnapshot.Builder current = MediaTypeRegistry.merged();
+        MediaRegistrySnapshot.Builder previous = lastSent;
+        lastSent = current;
+        if (previous == null || sameContent(previous, current)) {
+            return;
+        }
+        List<ServerPlayer> players = server.getPlayerList().getPlayers();
+        if (players.isEmpty()) {
+            return;
+        }
+        FriendlyByteBuf buf = PacketByteBufs.create();
+        write(buf, previous, current);
+        for (ServerPlayer player : players) {
+            // 每个玩家需要独立的缓冲区
+            ServerPlayNetworking.send(player, ID, PacketByteBufs.copy(buf));
+        }
+    }
+
+    private static boolean sameContent(MediaRegistrySnapshot.Builder a, MediaRegistrySnapshot.Builder b) {
+        return a.items().equals(b.items()) && a.actions().equals(b.actions()) && a.healthRates().equals(b.healthRates());
+    }
+
+    /**
+     * @param previous 差量的基准，null 表示写出完整内容
+     */
+    private static void write(FriendlyByteBuf buf, @Nullable MediaRegistrySnapshot.Builder previous, MediaRegistrySnapshot.Builder current) {
+        buf.writeByte(previous == null ? FULL : DELTA);
+        int typeCount = MediaType.count();
+        buf.writeVarInt(typeCount);
+        for (int i = 0; i < typeCount; i++) {
+            buf.writeResourceLocation(MediaType.byIndex(i).getId());
+        }
+
+        Map<Integer, MediaType> items = itemsById(current.items());
+        if (previous != null) {
+            Map<Integer, MediaType> before = itemsById(previous.items());
+            writeRemoved(buf, before, items, FriendlyByteBuf::writeVarInt);
+            items = changed(before, items);
+        }
+        buf.writeVarInt(items.size());
+        items.forEach((id, type) -> {
+            buf.writeVarInt(id);
+            buf.writeVarInt(type.index());
+        });
+
+        Map<ResourceLocation, MediaRequirement> actions = current.actions();
+        if (previous != null) {
+            writeRemoved(buf, previous.actions(), actions, FriendlyByteBuf::writeResourceLocation);
+            actions = changed(previous.actions(), actions);
+        }
+        buf.writeVarInt(actions.size());
+        actions.forEach((id, requirement) -> {
+            buf.writeResourceLocation(id);
+            writeRequirement(buf, requirement);
+        });
+
+        Map<MediaType, Double> rates = current.healthRates();
+        if (previous != null) {
+            writeRemoved(buf, previous.healthRates(), rates, (out, type) -> out.writeVarInt(type.index()));
+            rates = changed(previous.healthRates(), rates);
+        }
+        buf.writeVarInt(rates.size());
+        rates.forEach((type, rate) -> {
+            buf.writeVarInt(type.index());
+            buf.writeDouble(rate);
+        });
+    }
+
+    private static Map<Integer, MediaType> itemsById(Map<ResourceLocation, MediaType> items) {
+        Map<Integer, MediaType> byId = new HashMap<>();
+        items.forEach((id, type) -> BuiltInRegistries.ITEM.getOptional(id)
+            .ifPresent(item -> byId.put(BuiltInRegistries.ITEM.getId(item), type)));
+        return byId;
+    }
+
+    private static <K, V> void writeRemoved(FriendlyByteBuf buf, Map<K, V> before, Map<K, V> after, FriendlyByteBuf.Writer<K> writer) {
+        List<K> removed = new ArrayList<>();
+        for (K key : before.keySet()) {
+            if (!after.containsKey(key)) {
+                removed.add(key);
+            }
+        }
+        buf.writeCollection(removed, writer);
+    }
+
+    private static <K, V> Map<K, V> changed(Map<K, V> before, Map<K, V> after) {
+        Map<K, V> changed = new HashMap<>();
+        after.forEach((key, value) -> {
+            if (!Objects.equals(before.get(key), value)) {
+                changed.put(key, value);
+            }
+        });
+        return changed;
+    }
+
+    private static void writeRequirement(FriendlyByteBuf buf, MediaRequirement requirement) {
+        CostVector vector = requirement.vector();
+        buf.writeEnum(vector.mode());
+        buf.writeVarInt(requirement.size());
+        for (int i = 0; i < requirement.size(); i++) {
+            buf.writeVarInt(requirement.type(i).index());
+        }
+        if (vector.mode() == CostVector.Mode.SPLIT) {
+            for (int i = 0; i < requirement.size(); i++) {
+                buf.writeDouble(vector.weight(i));
+            }
+        }
+    }
+
+    /**
+     * 读取同步包，在网络线程上调用
+     * 这里只解码类型 ID 和编号，类型在客户端主线程上应用时才注册（见 Update.applyTo）
+     */
+    public static Update read(FriendlyByteBuf buf) {
+        boolean full = buf.readByte() == FULL;
+        ResourceLocation[] types = new ResourceLocation[readCount(buf, MediaType.MAX_TYPES)];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = buf.readResourceLocation();
+        }
+        Update update = new Update(full, types);
+
+        if (!full) {
+            for (int i = buf.readVarInt(); i > 0; i--) {
+                update.removedItems.add(itemKey(buf.readVarInt()));
+            }
+        }
+        for (int i = buf.readVarInt(); i > 0; i--) {
+            ResourceLocation item = itemKey(buf.readVarInt());
+            int type = readType(buf, types);
+            if (item != null) {
+                update.items.put(item, type);
+            }
+        }
+
+        if (!full) {
+            for (int i = buf.readVarInt(); i > 0; i--) {
+                update.removedActions.add(buf.readResourceLocation());
+            }
+        }
+        for (int i = buf.readVarInt(); i > 0; i--) {
+            update.actions.put(buf.readResourceLocation(), readRequirement(buf, types));
+        }
+
+        if (!full) {
+            for (int i = buf.readVarInt(); i > 0; i--) {
+                update.removedRates.add(readType(buf, types));
+            }
+        }
+        for (int i = buf.readVarInt(); i > 0; i--) {
+            update.healthRates.put(readType(buf, types), buf.readDouble());
+        }
+        return update;
+    }
+
+    private static int readCount(FriendlyByteBuf buf, int max) {
+        int count = buf.readVarInt();
+        if (count < 0 || count > max) {
+            throw new DecoderException("Invalid media type count " + count);
+        }
+        return count;
+    }
+
+    private static int readType(FriendlyByteBuf buf, ResourceLocation[] types) {
+        int type = buf.readVarInt();
+        if (type < 0 || type >= types.length) {
+            throw new DecoderException("Invalid media type index " + type);
+        }
+        return type;
+    }
+
+    @Nullable
+    private static ResourceLocation itemKey(int id) {
+        Item item = BuiltInRegistries.ITEM.byId(id);
+        return item != null ? BuiltInRegistries.ITEM.getKey(item) : null;
+    }
+
+    private static RemoteRequirement readRequirement(FriendlyByteBuf buf, ResourceLocation[] types) {
+        CostVector.Mode mode = buf.readEnum(CostVector.Mode.class);
+        int[] components = new int[readCount(buf, types.length)];
+        for (int i = 0; i < components.length; i++) {
+            components[i] = readType(buf, types);
+        }
+        double[] weights = null;
+        if (mode == CostVector.Mode.SPLIT) {
+            weights = new double[components.length];
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = buf.readDouble();
+            }
+        }
+        return new RemoteRequirement(mode, components, weights);
+    }
+
+    /**
+     * 解码后的动作需求，类型以同步包中的编号表示
+     */
+    private record RemoteRequirement(CostVector.Mode mode, int[] types, @Nullable double[] weights) {
+        MediaRequirement resolve(MediaType[] resolved) {
+            MediaType[] components = new MediaType[types.length];
+            for (int i = 0; i < components.length; i++) {
+                components[i] = resolved[types[i]];
+            }
+            return weights == null ? MediaRequirement.anyOf(components) : MediaRequirement.split(components, weights);
+        }
+    }
+
+    /**
+     * 一个同步包的内容，由客户端应用到服务器同步层
+     */
+    public static final class Update {
+        private final boolean full;
+        private final ResourceLocation[] types;
+        private final List<ResourceLocation> removedItems = new ArrayList<>();
+        private final List<ResourceLocation> removedActions = new ArrayList<>();
+        private final List<Integer> removedRates = new ArrayList<>();
+        private final Map<ResourceLocation, Integer> items = new HashMap<>();
+        private final Map<ResourceLocation, RemoteRequirement> actions = new HashMap<>();
+        private final Map<Integer, Double> healthRates = new HashMap<>();
+
+        private Update(boolean full, ResourceLocation[] types) {
+            this.full = full;
+            this.types = types;
+        }
+
+        /**
+         * 注册包中的类型并应用到之前同步的内容上，在客户端主线程上调用
+         * 本地没有的类型注册为远程类型，断开连接时释放（见 MediaType.releaseRemote）
+         * @param base 之前同步的内容，没有时为 null
+         * @return 新的内容
+         */
+        public MediaRegistrySnapshot.Builder applyTo(@Nullable MediaRegistrySnapshot.Builder base) {
+            MediaType[] resolved = new MediaType[types.length];
+            for (int i = 0; i < types.length; i++) {
+                resolved[i] = MediaType.registerRemote(types[i]);
+            }
+
+            Map<ResourceLocation, MediaType> mergedItems = new HashMap<>();
+            Map<MediaType, Double> mergedRates = new HashMap<>();
+            MediaRegistrySnapshot.Builder result = new MediaRegistrySnapshot.Builder();
+            if (!full && base != null) {
+                mergedItems.putAll(base.items());
+                mergedRates.putAll(base.healthRates());
+                base.actions().forEach(result::action);
+            }
+            removedItems.forEach(mergedItems::remove);
+            for (int type : removedRates) {
+                mergedRates.remove(resolved[type]);
+            }
+            for (ResourceLocation action : removedActions) {
+                result.action(action, (MediaRequirement) null);
+            }
+            items.forEach((item, type) -> mergedItems.put(item, resolved[type]));
+            healthRates.forEach((type, rate) -> mergedRates.put(resolved[type], rate));
+            mergedItems.forEach(result::item);
+            actions.forEach((action, requirement) -> result.action(action, requirement.resolve(resolved)));
+            mergedRates.forEach(result::healthRate);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.dcore.network;
+
+import at.petrak.hexcasting.api.casting.ParticleSpray;
+import at.petrak.hexcasting.api.pigment.FrozenPigment;
+import at.petrak.hexcasting.common.msgs.MsgCastParticleS2C;
+import at.petrak.hexcasting.xplat.IXplatAbstractions;
+import com.dcore.DCore;
+import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.phys.Vec3;
+
+/**
+ * 合并的粒子爆发网络包（服务端 -> 客户端）
+ * 一次施法对多个目标产生的粒子效果共用同一个染色和参数，只发送各目标的位置，
+ * 客户端逐个还原为 ParticleSpray.burst，交给 HexMod 的粒子处理绘制
+ * 没有安装本模组的客户端不能接收这个包，改为逐个发送 HexMod 自己的施法粒子包
+ */
+public final class ParticleBurstBatch {
+    public static final ResourceLocation ID = new ResourceLocation(DCore.MOD_ID, "particle_burst_batch");
+    
+    /**
+     * 发送范围，与 HexMod 发送施法粒子时使用的范围一致
+     */
+    public static final double SEND_RADIUS = 128.0;
+    
+    private final FrozenPigment pigment;
+    private final double spread;
+    private final int count;
+    // 依次存放每个爆发中心的 x、y、z
+    private final double[] positions;
+    
+    public ParticleBurstBatch(FrozenPigment pigment, double spread, int count, double[] positions) {
+        this.pigment = pigment;
+        this.spread = spread;
+        this.count = count;
+        this.positions = positions;
+    }
+    
+    public FrozenPigment pigment() {
+        return pigment;
+    }
+    
+    public int size() {
+        return positions.length / 3;
+    }
+    
+    /**
+     * 第 i 个爆发对应的 ParticleSpray
+     */
+    public ParticleSpray spray(int i) {
+        return ParticleSpray.burst(new Vec3(positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2]), spread, count);
+    }
+    
+    public void write(FriendlyByteBuf buf) {
+        buf.writeNbt(pigment.serializeToNBT());
+        buf.writeDouble(spread);
+        buf.writeVarInt(count);
+        buf.writeVarInt(size());
+        for (double value : positions) {
+            buf.writeDouble(value);
+        }
+    }
+    
+    public static ParticleBurstBatch read(FriendlyByteBuf buf) {
+        FrozenPigment pigment = FrozenPigment.fromNBT(buf.readNbt());
+        double spread = buf.readDouble();
+        int count = buf.readVarInt();
+        double[] positions = new double[buf.readVarInt() * 3];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = buf.readDouble();
+        }
+        return new ParticleBurstBatch(pigment, spread, count, positions);
+    }
+    
+    /**
+     * 发送给距离任一爆发中心 SEND_RADIUS 以内的玩家，每个玩家只收到一个包；
+     * 不能接收合并包的玩家改为收到附近每个爆发各一个 MsgCastParticleS2C（与 env.produceParticles 相同）
+     */
+    public void sendNear(ServerLevel level) {
+        if (positions.length == 0) {
+            return;
+        }
+        
+        // 先用包围盒粗筛，再逐个位置检查距离
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < positions.length; i += 3) {
+            minX = Math.min(minX, positions[i]);
+            maxX = Math.max(maxX, positions[i]);
+            minY = Math.min(minY, positions[i + 1]);
+            maxY = Math.max(maxY, positions[i + 1]);
+            minZ = Math.min(minZ, positions[i + 2]);
+            maxZ = Math.max(maxZ, positions[i + 2]);
+        }
+        
+        FriendlyByteBuf buf = null;
+        double radiusSqr = SEND_RADIUS * SEND_RADIUS;
+        for (ServerPlayer player : level.players()) {
+            double x = player.getX(), y = player.getY(), z = player.getZ();
+            if (x < minX - SEND_RADIUS || x > maxX + SEND_RADIUS
+                || y < minY - SEND_RADIUS || y > maxY + SEND_RADIUS
+                || z < minZ - SEND_RADIUS || z > maxZ + SEND_RADIUS) {
+                continue;
+            }
+            if (!isNearAny(x, y, z, radiusSqr)) {
+                continue;
+            }
+            if (!ServerPlayNetworking.canSend(player, ID)) {
+                sendEachNear(player, radiusSqr);
+                continue;
+            }
+            if (buf == null) {
+                buf = PacketByteBufs.create();
+                write(buf);
+            }
+            // 每个玩家需要独立的缓冲区
+            ServerPlayNetworking.send(player, ID, PacketByteBufs.copy(buf));
+        }
+    }
+    
+    /**
+     * 逐个发送 HexMod 的施法粒子包，只发送玩家附近的爆发；客户端连 HexMod 的包也不能接收时不发送
+     */
+    private void sendEachNear(ServerPlayer player, double radiusSqr) {
+        if (!ServerPlayNetworking.canSend(player, MsgCastParticleS2C.ID)) {
+            return;
+        }
+        for (int i = 0; i < size(); i++) {
+            if (isNear(i * 3, player.getX(), player.getY(), player.getZ(), radiusSqr)) {
+                IXplatAbstractions.INSTANCE.sendPacketToPlayer(player, new MsgCastParticleS2C(spray(i), pigment));
+            }
+        }
+    }
+    
+    private boolean isNearAny(double x, double y, double z, double radiusSqr) {
+        for (int i = 0; i < positions.length; i += 3) {
+            if (isNear(i, x, y, z, radiusSqr)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private boolean isNear(int offset, double x, double y, double z, double radiusSqr) {
+        double dx = positions[offset] - x;
+        double dy = positions[offset + 1] - y;
+        double dz = positions[offset + 2] - z;
+        return dx * dx + dy * dy + dz * dz <= radiusSqr;
+    }
+}
@@ -0,0 +1,210 @@
+package com.dcore.trace;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.entity.Entity;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * d-core 施法追踪
+ * 替代施法热路径上的 INFO 日志：默认关闭，可按玩家或按动作在运行时开启
+ * 开启后把定长的二进制记录写入预分配的环形缓冲区（不装箱、不格式化），只有导出时才渲染成文本
+ *
+ * 调用方式：{@code if (DCoreTrace.recording) DCoreTrace.record(...)}，关闭时热路径只有这一次分支判断
+ * 只在服务端线程上读写
+ */
+public final class DCoreTrace {
+    // 每条记录 4 个 long：时间戳、事件/玩家/动作、参数 1、参数 2
+    private static final int RECORD_WORDS = 4;
+    private static final int CAPACITY = 1 << 14;
+
+    /**
+     * 当前图案是否需要记录（热路径只检查此字段）
+     */
+    public static boolean recording;
+
+    /**
+     * 是否开启了任何追踪（全局或带过滤条件），在每个图案开始时检查
+     */
+    public static boolean enabled;
+
+    private static boolean traceAll;
+    private static final Set<UUID> players = new HashSet<>();
+    private static final Set<ResourceLocation> actions = new HashSet<>();
+
+    private static long[] buffer;
+    private static long written;
+
+    // 玩家和动作在记录中只保存编号，导出时再换回名字
+    private static final Object2IntOpenHashMap<UUID> playerIds = new Object2IntOpenHashMap<>();
+    private static final List<String> playerNames = new ArrayList<>();
+    private static final Object2IntOpenHashMap<ResourceLocation> actionIds = new Object2IntOpenHashMap<>();
+    private static final List<ResourceLocation> actionNames = new ArrayList<>();
+    private static int currentPlayer = -1;
+    private static int currentAction = -1;
+
+    static {
+        playerIds.defaultReturnValue(-1);
+        actionIds.defaultReturnValue(-1);
+    }
+
+    private DCoreTrace() {
+    }
+
+    /**
+     * 追踪所有玩家和所有动作
+     */
+    public static void enableAll() {
+        traceAll = true;
+        refreshEnabled();
+    }
+
+    /**
+     * 只追踪指定玩家（可以和动作过滤同时使用，两者都满足才记录）
+     */
+    public static void tracePlayer(UUID player) {
+        players.add(player);
+        refreshEnabled();
+    }
+
+    /**
+     * 只追踪指定动作（可以和玩家过滤同时使用，两者都满足才记录）
+     */
+    public static void traceAction(ResourceLocation actionId) {
+        actions.add(actionId);
+        refreshEnabled();
+    }
+
+    /**
+     * 关闭追踪并清除所有过滤条件（缓冲区中的记录保留，仍然可以导出）
+     */
+    public static void disable() {
+        traceAll = false;
+        players.clear();
+        actions.clear();
+        refreshEnabled();
+    }
+
+    /**
+     * 清空缓冲区
+     */
+    public static void clearBuffer() {
+        written = 0;
+    }
+
+    private static void refreshEnabled() {
+        enabled = traceAll || !players.isEmpty() || !actions.isEmpty();
+        if (enabled && buffer == null) {
+            buffer = new long[CAPACITY * RECORD_WORDS];
+        }
+        if (!enabled) {
+            recording = false;
+        }
+    }
+
+    /**
+     * 图案开始执行时调用，根据过滤条件决定本图案是否记录
+     * 调用方应先检查 {@link #enabled}
+     */
+    public static void enterAction(@Nullable Entity caster, ResourceLocation actionId) {
+        UUID uuid = caster != null ? caster.getUUID() : null;
+        boolean match = traceAll
+            || ((players.isEmpty() || (uuid != null && players.contains(uuid)))
+                && (actions.isEmpty() || actions.contains(actionId)));
+        recording = enabled && match;
+        if (recording) {
+            currentPlayer = caster != null ? internPlayer(uuid, caster.getName().getString()) : -1;
+            currentAction = internAction(actionId);
+        }
+    }
+
+    public static void record(TraceEvent event, long a, long b) {
+        int base = (int) (written & (CAPACITY - 1)) * RECORD_WORDS;
+        buffer[base] = System.nanoTime();
+        buffer[base + 1] = ((long) event.ordinal() << 48)
+            | ((long) (currentPlayer & 0xFFFF) << 32)
+            | (currentAction & 0xFFFFFFFFL);
+        buffer[base + 2] = a;
+        buffer[base + 3] = b;
+        written++;
+    }
+
+    public static void record(TraceEvent event, long a) {
+        record(event, a, 0L);
+    }
+
+    public static void record(TraceEvent event) {
+        record(event, 0L, 0L);
+    }
+
+    public static void recordDouble(TraceEvent event, double a, long b) {
+        record(event, Double.doubleToRawLongBits(a), b);
+    }
+
+    /**
+     * 布尔参数的编码
+     */
+    public static long bool(boolean value) {
+        return value ? 1L : 0L;
+    }
+
+    /**
+     * 将缓冲区中最近的记录渲染成文本（从旧到新）
+     * @param max 最多导出的记录数
+     */
+    public static List<String> render(int max) {
+        List<String> lines = new ArrayList<>();
+        if (buffer == null || written == 0) {
+            return lines;
+        }
+        long available = Math.min(written, CAPACITY);
+        long count = Math.min(available, max);
+        long first = written - count;
+        long startNanos = buffer[(int) (first & (CAPACITY - 1)) * RECORD_WORDS];
+
+        TraceEvent[] events = TraceEvent.values();
+        for (long i = first; i < written; i++) {
+            int base = (int) (i & (CAPACITY - 1)) * RECORD_WORDS;
+            long header = buffer[base + 1];
+            TraceEvent event = events[(int) (header >>> 48)];
+            int player = (short) (header >>> 32);
+            int action = (int) header;
+
+            String message = event.format
+                .replaceFirst("\\{}", event.first.render(buffer[base + 2]))
+                .replaceFirst("\\{}", event.second.render(buffer[base + 3]));
+            lines.add(String.format("[+%.3fms] %s %s %s",
+                (buffer[base] - startNanos) / 1_000_000.0,
+                player >= 0 && player < playerNames.size() ? playerNames.get(player) : "-",
+                action >= 0 && action < actionNames.size() ? actionNames.get(action) : "-",
+                message));
+        }
+        return lines;
+    }
+
+    private static int internPlayer(UUID uuid, String name) {
+        int id = playerIds.getInt(uuid);
+        if (id < 0) {
+            id = playerNames.size();
+            playerNames.add(name);
+            playerIds.put(uuid, id);
+        }
+        return id;
+    }
+
+    private static int internAction(ResourceLocation actionId) {
+        int id = actionIds.getInt(actionId);
+        if (id < 0) {
+            id = actionNames.size();
+            actionNames.add(actionId);
+            actionIds.put(actionId, id);
+        }
+        return id;
+    }
+}
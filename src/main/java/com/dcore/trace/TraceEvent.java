@@ -0,0 +1,52 @@
+package com.dcore.trace;
+
+/**
+ * 追踪事件类型
+ * 每个事件最多携带两个参数，参数类型决定导出时如何解码
+ */
+public enum TraceEvent {
+    EXTRACT_BEGIN("extract cost={} simulate={}", ArgKind.LONG, ArgKind.BOOL),
+    EXTRACT_NO_ACTION("extract skipped: no governed action, cost={}", ArgKind.LONG, ArgKind.NONE),
+    ACTION_UNGOVERNED("action has no typed requirement, no frame pushed", ArgKind.NONE, ArgKind.NONE),
+    EXTRACT_RETURN("extract return remaining={} shouldCancel={}", ArgKind.LONG, ArgKind.BOOL),
+    PLAN_CREATED("plan extracted={} healthRemainder={}", ArgKind.LONG, ArgKind.LONG),
+    PLAN_HEALTH("plan healthCost={} cancel={}", ArgKind.DOUBLE, ArgKind.BOOL),
+    PLAN_REBUILT("plan stale, rebuilt for cost={}", ArgKind.LONG, ArgKind.NONE),
+    PLAN_SHORTFALL("sources yielded less than planned, shortfall={}", ArgKind.LONG, ArgKind.NONE),
+    HEALTH_CANCEL("health cost exceeds max health, amount={} extracted={}", ArgKind.LONG, ArgKind.LONG),
+    HEALTH_DEDUCT("health deducted, newHealth={} extracted={}", ArgKind.DOUBLE, ArgKind.LONG),
+    CANCEL_MESSAGE_SENT("cancellation message sent", ArgKind.NONE, ArgKind.NONE),
+    PATTERN_RETURN("pattern returned, frame popped depth={}", ArgKind.LONG, ArgKind.NONE),
+    OPERATE_CHECK("after operate shouldCancel={} mediaCost={}", ArgKind.BOOL, ArgKind.LONG),
+    OPERATE_CANCELLED("result replaced with cancelled result, sideEffects={}", ArgKind.LONG, ArgKind.NONE),
+    OP_COST("op media cost={}", ArgKind.LONG, ArgKind.NONE),
+    OP_SIMULATED("op simulate remaining={} shouldCancel={}", ArgKind.LONG, ArgKind.BOOL),
+    OP_CANCELLED("op cancelled before execute, mediaCost={}", ArgKind.LONG, ArgKind.NONE),
+    OP_DAMAGE("op damage={}", ArgKind.DOUBLE, ArgKind.NONE);
+
+    final String format;
+    final ArgKind first;
+    final ArgKind second;
+
+    TraceEvent(String format, ArgKind first, ArgKind second) {
+        this.format = format;
+        this.first = first;
+        this.second = second;
+    }
+
+    enum ArgKind {
+        NONE,
+        LONG,
+        DOUBLE,
+        BOOL;
+
+        String render(long raw) {
+            return switch (this) {
+                case NONE -> "";
+                case LONG -> Long.toString(raw);
+                case DOUBLE -> Double.toString(Double.longBitsToDouble(raw));
+                case BOOL -> Boolean.toString(raw != 0);
+            };
+        }
+    }
+}